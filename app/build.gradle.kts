@@ -25,7 +25,12 @@ android {
     }
 
     androidResources {
-        noCompress += listOf("filamat")
+        noCompress += listOf("filamat", "igc")
+    }
+
+    // testes JVM (app/src/test) usam o test.igc dos assets; Log etc. devolvem o padrão
+    testOptions {
+        unitTests.isReturnDefaultValues = true
     }
 
     // Se quiser ActivityMainBinding, descomente:
@@ -45,6 +50,8 @@ dependencies {
     implementation(libs.core.ktx)
     implementation ("io.reactivex.rxjava3:rxjava:3.1.10")
     implementation ("io.reactivex.rxjava3:rxandroid:3.0.2")
+
+    testImplementation(libs.junit)
 }
 
 
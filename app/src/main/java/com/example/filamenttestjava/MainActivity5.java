@@ -1,29 +1,54 @@
 package com.example.filamenttestjava;
 
 import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.util.Log;
 import android.view.Choreographer;
+import android.view.Gravity;
 import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.Surface;
 import android.view.SurfaceView;
+import android.view.ViewGroup;
 import android.view.WindowManager;
+import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import com.example.filamenttestjava.filament.utils.AssetLinePublisher;
-import com.example.filamenttestjava.filament.utils.CalculoDistancias;
+import com.example.filamenttestjava.filament.utils.AltitudeFilter;
 import com.example.filamenttestjava.filament.utils.CorUtil;
-import com.example.filamenttestjava.filament.utils.IgcParser;
+import com.example.filamenttestjava.filament.utils.FlightLibraryIndex;
+import com.example.filamenttestjava.filament.utils.FlightPhaseClassifier;
+import com.example.filamenttestjava.filament.utils.FlightStats;
+import com.example.filamenttestjava.filament.utils.FlightTrack;
+import com.example.filamenttestjava.filament.utils.IgcBinaryCache;
+import com.example.filamenttestjava.filament.utils.IgcCompressedReader;
+import com.example.filamenttestjava.filament.utils.IgcMappedReader;
+import com.example.filamenttestjava.filament.utils.IgcParallelParser;
+import com.example.filamenttestjava.filament.utils.IgcTailReader;
+import com.example.filamenttestjava.filament.utils.ProjecaoLocal;
+import com.example.filamenttestjava.filament.utils.ReplayScheduler;
+import com.example.filamenttestjava.filament.utils.SegmentGrid;
+import com.example.filamenttestjava.filament.utils.TimeIndex;
+import com.example.filamenttestjava.filament.utils.TrackPyramid;
+import com.example.filamenttestjava.filament.utils.WindEstimator;
+import com.example.filamenttestjava.filament.utils.XcOptimizer;
 import com.example.filamenttestjava.filament.app.FilamentApp;
-import com.example.filamenttestjava.filament.app.Geometry;
+import com.example.filamenttestjava.filament.app.InstancedPrimitives;
+import com.example.filamenttestjava.filament.app.TrackLod;
 import com.google.android.filament.android.DisplayHelper;
 import com.google.android.filament.android.UiHelper;
 
-import java.text.DecimalFormat;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
 
+import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import io.reactivex.rxjava3.subjects.PublishSubject;
 
@@ -37,6 +62,8 @@ public class MainActivity5 extends Activity {
         }
     }
 
+    private static final String TAG = "MainActivity5";
+
     /*public static final float dxInicial = -3.6491666667f;
     public static final float dyInicial = 37.7518666667f;*/
 
@@ -52,14 +79,69 @@ public class MainActivity5 extends Activity {
 
     private PublishSubject<Boolean> volumeAjustado = PublishSubject.create();
 
-    private final AssetLinePublisher publisher = new AssetLinePublisher();
-
-    private final PublishSubject<double[]> latLonSubject = PublishSubject.create();
-    private final PublishSubject<double[]> pixelModeloSubject = PublishSubject.create();
-
-    private final PublishSubject<double[]> altitudeGpsPublisher = PublishSubject.create();
-
-    public static final long sleep = 100;
+    private Disposable leituraIgc;
+
+    // fixos em colunas primitivas; o replay entrega faixas de índices por quadro
+    private final FlightTrack track = new FlightTrack(16 * 1024);
+    private ReplayScheduler replay;
+    /** Posição/rumo interpolados no relógio do replay (só a thread do Choreographer usa). */
+    private final TimeIndex indiceTempo = new TimeIndex(track);
+    private final double[] posicaoCamera = new double[3], tmpRumo = new double[3];
+    private Handler geometriaHandler;
+
+    private IgcTailReader aoVivo;
+    /** Origem da projeção no modo ao vivo (fixada no primeiro fixo; só a thread de geometria usa). */
+    private ProjecaoLocal projecao;
+    /**
+     * Vario/velocidade/planeio incrementais (alimentados na thread de geometria); o painel
+     * lê uma cópia na thread de UI.
+     */
+    private final FlightStats estatisticas = new FlightStats();
+    /** Resumo do voo sobre o mapa (thread de UI). */
+    private TextView painel;
+    private final FlightStats.Snapshot resumo = new FlightStats.Snapshot();
+    private long ultimoPainelNanos;
+    private static final long INTERVALO_PAINEL_NS = 500_000_000L;
+    /** Baro + GNSS fundidos: vario liso para a cor (modo ao vivo, fixo a fixo). */
+    private final AltitudeFilter filtroAltitude = new AltitudeFilter();
+    /** Vario suavizado para frente e para trás (replay: calculado uma vez na carga). */
+    private volatile float[] varioSuavizado;
+    /**
+     * Simplificação da trilha carregada (replay, na thread de IO): a fita de longe só recebe
+     * os fixos da visão geral. Null até a carga terminar e ao vivo: aí ela recebe todos.
+     */
+    private volatile TrackPyramid piramide;
+    /** Posições [de, até) do lote no nível da visão geral (thread de geometria). */
+    private final int[] faixaVisaoGeral = new int[2];
+    /** Solo/térmica/planeio/pousado por fixo (thread de geometria); a fase decide a cor do tubo. */
+    private final FlightPhaseClassifier fases = new FlightPhaseClassifier(null);
+    /** Vento pela deriva nas térmicas (thread de geometria): cada estimativa move a seta. */
+    private final WindEstimator vento = new WindEstimator(this::mostraVento);
+    /** Seta do vento (haste + ponta, instâncias; -1 = ainda sem estimativa). */
+    private int hasteVento = -1, pontaVento = -1;
+    /** A seta mostra a deriva deste tempo (s): 10 m/s viram 200 m. */
+    private static final double SEGUNDOS_SETA_VENTO = 20;
+    private static final double[] COR_VENTO = {0.3, 0.75, 1.0, 1.0};
+    /** Segmentos já desenhados (só em voo), para achar o fixo tocado (escrita só na thread de geometria). */
+    private final SegmentGrid grade = new SegmentGrid(track);
+    /** Esfera no fixo tocado (-1 = nenhum ainda). */
+    private int marcaToque = -1;
+    /** Até quantos metros do ponto tocado um fixo ainda conta. */
+    private static final double RAIO_TOQUE = 150;
+    private static final double[] COR_TOQUE = {1.0, 1.0, 1.0, 1.0};
+    /** Cor do fixo anterior: é o segmento que chega nele que o tubo fecha no fixo seguinte. */
+    private double[] corTubo;
+
+    /** Pasta (em getFilesDir) com os IGCs do piloto; sem pedido explícito, o replay pega o mais recente. */
+    public static final String PASTA_VOOS = "voos";
+    /** IGC para o replay em vez do asset: .igc, .igc.gz ou pacote .zip de prova. */
+    public static final String EXTRA_IGC_ARQUIVO = "igcArquivo";
+    /** Caminho de um IGC ainda sendo gravado; quando presente, segue o arquivo em vez do replay. */
+    public static final String EXTRA_IGC_AO_VIVO = "igcAoVivo";
+    private static final long INTERVALO_AO_VIVO_MS = 1000;
+
+    /** Segundos de voo por segundo de tela (1x..500x). */
+    public static final double velocidadeReplay = 10;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -71,101 +153,88 @@ public class MainActivity5 extends Activity {
 
         HandlerThread  ht= new HandlerThread("MarioFilamentThread");
         ht.start();
-        Handler currentHandler = new Handler(ht.getLooper());
+        geometriaHandler = new Handler(ht.getLooper());
 
         app = new FilamentApp(this , 300000, volumeAjustado);
 
-        publisher.lines()
-                .filter(l -> l != null && l.startsWith("B"))
-                .subscribeOn(Schedulers.io())
-                .subscribe(
-                line -> {
-                    // cada linha do arquivo
-                    // ex.: log/atualiza UI
-
-                    double[] latLon = IgcParser.parseBRecordLatLon(line);
-                    //System.out.println("latitude e longitude = " + new DecimalFormat("0.00000").format(latLon[0]) + " lon " + new DecimalFormat("0.00000").format(latLon[1]));
-                    Thread.sleep(sleep);
-                    int altitudeGpsMetros = IgcParser.parseBRecordGpsAltitudeMeters(line);
-                    latLonSubject.onNext(new double[] {latLon[0], latLon[1], (double) altitudeGpsMetros});
-                },
-                throwable -> {
-                    // tratar erro de leitura
-                },
-                () -> {
-                    // terminou de ler
+        String caminhoAoVivo = getIntent().getStringExtra(EXTRA_IGC_AO_VIVO);
+        if (caminhoAoVivo != null) {
+            // modo ao vivo: cada poll lê só os bytes novos do arquivo que o vario está gravando
+            aoVivo = new IgcTailReader(new File(caminhoAoVivo), track, new IgcTailReader.Listener() {
+                @Override
+                public void onNewFixes(int from, int toExclusive) {
+                    projetaFixos(track, from, toExclusive);
+                    adicionaSegmentos(from, toExclusive);
                 }
-        );
-
-
 
-        publisher.read(this, "test.igc");
-
-        latLonSubject
-                .subscribeOn(Schedulers.io())
-                .subscribe( latLon -> {
+                @Override
+                public void onReset() {
+                    // arquivo reescrito: a trilha já foi esvaziada, a origem sai do novo 1º fixo
+                    reiniciaEstado();
+                    projecao = null;
+                }
+            });
+            aoVivo.start(geometriaHandler, INTERVALO_AO_VIVO_MS);
+        } else {
+            // o relógio de replay roda no doFrame e só repassa o lote para a thread de geometria
+            replay = new ReplayScheduler(track, velocidadeReplay, new ReplayScheduler.Listener() {
+                @Override
+                public void onFixes(int from, int toExclusive) {
+                    geometriaHandler.post(() -> adicionaSegmentos(from, toExclusive));
+                }
 
-                });
-        final AtomicReference<double[]> latLonInicial = new AtomicReference<>(null);
-        latLonSubject
-                .subscribeOn(Schedulers.io())
-                .subscribe( latLon -> {
-                    System.out.println("latitude e longitude = " + new DecimalFormat("0.0000000000").format(latLon[0]) + " lon " + new DecimalFormat("0.0000000000").format(latLon[1]));
-                    if (latLonInicial.get() == null) {
-                        double[] tmp = new double[] {latLon[0], latLon[1]};
-                        latLonInicial.set(tmp);
-                        pixelModeloSubject.onNext(new double[] {0, 0, latLon[2]});
+                @Override
+                public void onSeek(int nextIndex) {
+                    // para trás: refaz trilha e estado incremental até o novo ponto
+                    geometriaHandler.post(() -> {
+                        reiniciaEstado();
+                        adicionaSegmentos(0, nextIndex);
+                    });
+                }
+            });
+
+            // carrega o IGC inteiro (cache .igcb se houver, em faixas; senão mapeado, em
+            // paralelo, ou descompactado em stream); o replay dita o ritmo da exibição
+            String caminhoReplay = getIntent().getStringExtra(EXTRA_IGC_ARQUIVO);
+            leituraIgc = Schedulers.io().scheduleDirect(() -> {
+                try {
+                    if (caminhoReplay != null) {
+                        carregaArquivo(new File(caminhoReplay));
                     } else {
-                        double[] modelo = CalculoDistancias.getPixelModelo(latLonInicial.get()[0],
-                                latLonInicial.get()[1],
-                                latLon[0],
-                                latLon[1]);
-                        pixelModeloSubject.onNext(new double[] {modelo[0], modelo[1], latLon[2]});
+                        // sem arquivo pedido: o voo mais recente da biblioteca, ou o do APK
+                        FlightLibraryIndex.Entry recente = vooMaisRecente();
+                        if (recente != null) carregaArquivo(new File(recente.path));
+                        else carregaAsset("test.igc");
                     }
-                });
-
-        currentHandler.postDelayed(() -> {
-
-            pixelModeloSubject
-                    .subscribeOn(Schedulers.io())
-                    .buffer(2, 1)
-                    .filter(list -> list.size() == 2)
-                    .subscribe( listaModelo -> {
-                        double[] modelo = listaModelo.get(1);
-                        //app.atualizaNovaPosicaoCamera(modelo);
-                        float[] eyeTo = new float[] {(float) modelo[0], (float) modelo[0], 100};
-                        float[] centerTo = new float[] {(float) modelo[0], (float) modelo[0], (float) modelo[0]};
-
-                    });
-        }, 0);
-
-        currentHandler.postDelayed(() -> {
-            pixelModeloSubject
-                    .subscribeOn(Schedulers.io())
-                    .buffer(2, 1)
-                    .filter(list -> list.size() == 2)
-                    .subscribe( listaModelo -> {
-
-                        double maxVarioCor = 5;
-                        double vario = listaModelo.get(1)[2] - listaModelo.get(0)[2];
-                        double[] corVario2 = CorUtil.getCorVarioErico(false, 255, vario, -3d, maxVarioCor, 0d, maxVarioCor / 3f, (maxVarioCor * 2f) / 3f);
-
-                        final List<double[]> cube2 = Geometry.makeCylinderTris(listaModelo.get(0), listaModelo.get(1), 4, 8, 8, true);
-                        System.out.println("vai adicionar triangulo: ");
-                        app.addTriangles(cube2, 1, corVario2);
-                        System.out.println("concluiu vai adicionar triangulo: ");
-
-
-                        app.atualizaNovaPosicaoCamera(listaModelo.get(0), listaModelo.get(1));
-
-
-                    });
-        }, 0);
-
-
+                    if (track.isEmpty()) return;
+
+                    TrackPyramid p = new TrackPyramid(track);
+                    piramide = p;
+                    XcOptimizer.Result xc = new XcOptimizer(track, p).optimize();
+                    geometriaHandler.post(() -> marcaViradas(xc));
+                } catch (IOException e) {
+                    Log.e(TAG, "falha ao ler IGC", e);
+                }
+            });
+        }
 
         surfaceView = new SurfaceView(this);
-        setContentView(surfaceView);
+        painel = new TextView(this);
+        painel.setTextColor(Color.WHITE);
+        painel.setShadowLayer(3f, 1f, 1f, Color.BLACK);
+        painel.setPadding(24, 24, 24, 24);
+        FrameLayout raiz = new FrameLayout(this);
+        raiz.addView(surfaceView);
+        raiz.addView(painel, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.START));
+        setContentView(raiz);
+        surfaceView.setOnTouchListener((v, e) -> {
+            if (e.getActionMasked() == MotionEvent.ACTION_UP) {
+                v.performClick();
+                tocou(e.getX(), e.getY());
+            }
+            return true;
+        });
 
         choreographer = Choreographer.getInstance();
         displayHelper = new DisplayHelper(this);
@@ -202,6 +271,7 @@ public class MainActivity5 extends Activity {
         super.onResume();
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         app.start(); // animação etc.
+        if (replay != null) replay.play();
         choreographer.postFrameCallback(frameCallback);
     }
 
@@ -210,22 +280,345 @@ public class MainActivity5 extends Activity {
         super.onPause();
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         choreographer.removeFrameCallback(frameCallback);
+        if (replay != null) replay.pause();
         app.stop();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (leituraIgc != null) leituraIgc.dispose();
+        if (aoVivo != null) aoVivo.close();
         uiHelper.detach();
         app.destroy();
     }
 
+    /**
+     * Atualiza o índice da pasta de voos (só arquivos novos ou alterados são lidos) e devolve
+     * o voo mais recente, ou null com a pasta vazia (thread de IO).
+     */
+    private FlightLibraryIndex.Entry vooMaisRecente() {
+        File pasta = new File(getFilesDir(), PASTA_VOOS);
+        if (!pasta.isDirectory()) return null;
+        FlightLibraryIndex biblioteca = new FlightLibraryIndex(new File(getFilesDir(), PASTA_VOOS + ".indice"));
+        try {
+            biblioteca.load();
+            biblioteca.scan(pasta, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        } catch (IOException e) {
+            Log.w(TAG, "falha ao indexar a biblioteca de voos", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return biblioteca.mostRecent();
+    }
+
+    /** IGC do APK; o cache fica válido até o app ser atualizado (thread de IO). */
+    private void carregaAsset(String asset) throws IOException {
+        ByteBuffer igc = IgcMappedReader.map(this, asset);
+        long tamanho = igc.remaining();
+        // o asset só muda com o APK: a data de atualização faz o papel do lastModified
+        long versao = versaoDosAssets();
+        File arquivoCache = new File(getCacheDir(), nomeSemExtensao(asset) + IgcBinaryCache.EXTENSION);
+
+        IgcBinaryCache.Cache cache = IgcBinaryCache.openIfFresh(arquivoCache, tamanho, versao);
+        if (cache != null) {
+            IgcMappedReader.release(igc);
+            carregaDoCache(cache);
+            return;
+        }
+        FlightTrack carregada = IgcParallelParser.parse(igc);
+        IgcMappedReader.release(igc);
+        IgcBinaryCache.write(carregada, arquivoCache, tamanho, versao);
+        entregaTrilha(carregada);
+    }
+
+    /**
+     * IGC em arquivo: .igc mapeado e em paralelo; .igc.gz ou pacote .zip descompactado em
+     * stream, sem cópia extraída (do pacote fica a primeira trilha). Cache pelo tamanho e
+     * lastModified do arquivo (thread de IO).
+     */
+    private void carregaArquivo(File arquivo) throws IOException {
+        File arquivoCache = new File(getCacheDir(), arquivo.getName() + IgcBinaryCache.EXTENSION);
+        IgcBinaryCache.Cache cache = IgcBinaryCache.openIfFresh(arquivoCache, arquivo.length(), arquivo.lastModified());
+        if (cache != null) {
+            carregaDoCache(cache);
+            return;
+        }
+        FlightTrack carregada;
+        if (arquivo.getName().toLowerCase(Locale.ROOT).endsWith(".igc")) {
+            ByteBuffer igc = IgcMappedReader.map(arquivo);
+            carregada = IgcParallelParser.parse(igc);
+            IgcMappedReader.release(igc);
+        } else {
+            FlightTrack[] lida = new FlightTrack[1];
+            IgcCompressedReader.read(arquivo, new IgcCompressedReader.EntryListener() {
+                @Override
+                public FlightTrack newTrack(String name) {
+                    return lida[0] == null ? IgcCompressedReader.EntryListener.super.newTrack(name) : null;
+                }
+
+                @Override
+                public void onTrack(String name, FlightTrack t, int badRecords) {
+                    if (badRecords > 0) Log.w(TAG, name + ": " + badRecords + " B-records ruins");
+                    lida[0] = t;
+                }
+            });
+            carregada = lida[0];
+            if (carregada == null) {
+                Log.w(TAG, "nenhum .igc em " + arquivo);
+                return;
+            }
+        }
+        IgcBinaryCache.write(carregada, arquivoCache, arquivo.length(), arquivo.lastModified());
+        entregaTrilha(carregada);
+    }
+
+    /** Projeta, suaviza o vario e só então entrega a trilha lida de uma vez ao replay. */
+    private void entregaTrilha(FlightTrack carregada) {
+        projetaTrilha(carregada);
+        float[] vario = new float[carregada.size()];
+        AltitudeFilter.smooth(carregada, carregada.size(), null, vario);
+        varioSuavizado = vario; // antes do append: o replay só entrega depois
+        track.appendAll(carregada);
+    }
+
+    private static String nomeSemExtensao(String nome) {
+        int ponto = nome.lastIndexOf('.');
+        return ponto > 0 ? nome.substring(0, ponto) : nome;
+    }
+
+    /** Fixos decodificados do cache por vez: o replay começa sem esperar o arquivo todo. */
+    private static final int FAIXA_CACHE = 4096;
+
+    /**
+     * Decodifica o cache em faixas, projeta cada uma com a origem gravada nele e já entrega à
+     * trilha (thread de IO). O vario suavizado precisa da trilha inteira e chega no fim; até
+     * lá a cor usa o filtro contínuo.
+     */
+    private void carregaDoCache(IgcBinaryCache.Cache cache) {
+        ProjecaoLocal p = cache.projecao();
+        IgcBinaryCache.Decoder d = cache.decoder();
+        FlightTrack faixa = new FlightTrack(Math.min(FAIXA_CACHE, Math.max(1, cache.getFixCount())));
+        while (d.remaining() > 0) {
+            faixa.clear();
+            d.decodeInto(faixa, FAIXA_CACHE);
+            p.projeta(faixa, 0, faixa.size());
+            track.appendAll(faixa);
+        }
+        int n = track.size();
+        float[] vario = new float[n];
+        AltitudeFilter.smooth(track, n, null, vario);
+        varioSuavizado = vario;
+    }
+
+    /** Data da última instalação/atualização do APK (0 se não der para ler). */
+    private long versaoDosAssets() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0L;
+        }
+    }
+
+    /** Projeta todos os fixos em metros a partir do primeiro fixo da trilha (carga em lote). */
+    private static void projetaTrilha(FlightTrack t) {
+        if (t.isEmpty()) return;
+        ProjecaoLocal.origemEm(t).projetaParalelo(t);
+    }
+
+    /** Projeta os fixos [from, to) em metros a partir do primeiro fixo da trilha. */
+    private void projetaFixos(FlightTrack t, int from, int to) {
+        if (t.isEmpty()) return;
+        if (projecao == null) projecao = ProjecaoLocal.origemEm(t);
+        projecao.projeta(t, from, to);
+    }
+
+    /** Estende o tubo com os fixos [from, to) (thread de geometria) e move a câmera uma vez. */
+    private void adicionaSegmentos(int from, int to) {
+        if (from == 0 && to > 0) {
+            estatisticas.update(track, 0);
+            filtroAltitude.update(track, 0);
+            fases.update(track, 0);
+        }
+        // fixos do lote que estão na visão geral, por horário (um só passo junto com i)
+        TrackPyramid p = piramide;
+        int[] geral = null;
+        int g = 0, gFim = 0;
+        if (p != null && from < to && to <= p.getFixCount()) {
+            int nivel = p.levelForTolerance(TrackPyramid.VISAO_GERAL);
+            p.range(nivel, track.time(from), track.time(to - 1), faixaVisaoGeral);
+            geral = p.level(nivel);
+            g = faixaVisaoGeral[0];
+            gFim = faixaVisaoGeral[1];
+        }
+        for (int i = Math.max(1, from); i < to; i++) {
+            while (g < gFim && geral[g] < i) g++;
+            boolean visaoGeral = geral == null || (g < gFim && geral[g] == i);
+            estatisticas.update(track, i);
+            filtroAltitude.update(track, i);
+            // tempo no chão (antes da decolagem / depois do pouso) não vira geometria
+            int fase = fases.update(track, i);
+            vento.update(track, i, fase == FlightPhaseClassifier.TERMICA);
+            if (!FlightPhaseClassifier.isAirborne(fase)) {
+                fechaTubo();
+                continue;
+            }
+
+            double maxVarioCor = 5;
+            float[] suavizado = varioSuavizado;
+            double vario = suavizado != null && i < suavizado.length ? suavizado[i] : filtroAltitude.getVario();
+            // térmica na escala de cores do vario; planeio em cinza, para as térmicas se destacarem
+            boolean planeio = fase == FlightPhaseClassifier.PLANEIO;
+            double[] corVario2 = CorUtil.getCorVarioErico(planeio, 255, vario, -3d, maxVarioCor, 0d, maxVarioCor / 3f, (maxVarioCor * 2f) / 3f);
+
+            // o tubo emite o segmento i-2 → i-1 (cor do fixo i-1) quando recebe o fixo i
+            TrackLod trilha = app.getTrilha();
+            double[] cor = corTubo != null ? corTubo : corVario2;
+            if (trilha.isEmpty()) trilha.addPoint(track.x(i - 1), track.y(i - 1), track.gnssAltitude(i - 1), cor);
+            trilha.addPoint(track.x(i), track.y(i), track.gnssAltitude(i), cor, visaoGeral);
+            grade.add(i - 1);
+            corTubo = corVario2;
+        }
+        // um envio por trecho tocado no lote, não por fixo (e a seta do vento, se mudou)
+        app.getTrilha().flush();
+        app.getPrimitivas().flush();
+        // no replay a câmera segue o relógio a cada quadro (FrameCallback); ao vivo, o fixo novo
+        if (replay == null && to >= 2) {
+            app.atualizaNovaPosicaoCamera(pontoModelo(to - 2), pontoModelo(to - 1));
+        }
+    }
+
+    /**
+     * Melhor triângulo (FAI se pontuar mais que o plano): pilão + esfera em cada virada e as
+     * três pernas entre elas, por instância (thread de geometria).
+     */
+    private void marcaViradas(XcOptimizer.Result xc) {
+        FlightTrack t = track;
+        boolean fai = xc.faiFixes != null && xc.faiScore() >= xc.flatScore();
+        int[] fixos = fai ? xc.faiFixes : xc.flatFixes;
+        if (fixos == null) return;
+        double[] cor = fai ? new double[] {1.0, 0.2, 0.2, 1.0} : new double[] {1.0, 0.85, 0.0, 1.0};
+        InstancedPrimitives primitivas = app.getPrimitivas();
+        for (int k = 0; k < 3; k++) {
+            int i = fixos[k];
+            primitivas.addCylinder(t.x(i), t.y(i), 0, t.x(i), t.y(i), t.gnssAltitude(i), 6f, cor);
+            primitivas.addSphere(t.x(i), t.y(i), t.gnssAltitude(i), 25f, cor);
+            int j = fixos[(k + 1) % 3];
+            primitivas.addCylinder(t.x(i), t.y(i), t.gnssAltitude(i), t.x(j), t.y(j), t.gnssAltitude(j), 3f, cor);
+        }
+        primitivas.flush();
+    }
+
+    /**
+     * Seta a partir do fixo da estimativa, na altitude dela, apontando para onde o vento
+     * leva (thread de geometria).
+     */
+    private void mostraVento(int i, int time, int altitude, float wx, float wy) {
+        double x = track.x(i), y = track.y(i);
+        double px = x + wx * SEGUNDOS_SETA_VENTO, py = y + wy * SEGUNDOS_SETA_VENTO;
+        InstancedPrimitives primitivas = app.getPrimitivas();
+        if (hasteVento < 0) {
+            hasteVento = primitivas.addCylinder(x, y, altitude, px, py, altitude, 3f, COR_VENTO);
+            pontaVento = primitivas.addSphere(px, py, altitude, 8f, COR_VENTO);
+        } else {
+            primitivas.setCylinder(hasteVento, x, y, altitude, px, py, altitude, 3f);
+            primitivas.moveTo(pontaVento, px, py, altitude);
+        }
+    }
+
+    /** Volta trilha e estado incremental ao início (thread de geometria). */
+    private void reiniciaEstado() {
+        app.getTrilha().clear();
+        grade.clear();
+        if (marcaToque >= 0) {
+            app.getPrimitivas().remove(marcaToque);
+            marcaToque = -1;
+        }
+        if (hasteVento >= 0) {
+            app.getPrimitivas().remove(hasteVento);
+            app.getPrimitivas().remove(pontaVento);
+            hasteVento = pontaVento = -1;
+        }
+        estatisticas.reset();
+        filtroAltitude.reset();
+        fases.reset();
+        vento.reset();
+        corTubo = null;
+        app.getPrimitivas().flush();
+    }
+
+    /** Fecha o tubo em andamento (último segmento + tampa). */
+    private void fechaTubo() {
+        if (corTubo == null) return;
+        app.getTrilha().finish(corTubo);
+        corTubo = null;
+    }
+
+    /** Câmera no ponto interpolado da trilha no horário atual do replay. */
+    private void seguePelaReplay(long frameTimeNanos) {
+        double t = replay.getTrackTime();
+        if (Double.isNaN(t) || !indiceTempo.positionAt(t, posicaoCamera)) return;
+        app.seguePosicao(posicaoCamera, indiceTempo.headingAt(t, tmpRumo), frameTimeNanos);
+    }
+
+    /**
+     * Toque na tela (thread de UI): acha o fixo desenhado mais perto do ponto tocado, marca
+     * com uma esfera e mostra horário e altitude dele.
+     */
+    private void tocou(float px, float py) {
+        double[] p = new double[3];
+        if (!app.toqueNoPlano(px, py, p)) return;
+        geometriaHandler.post(() -> {
+            int i = grade.nearestFix(p[0], p[1], RAIO_TOQUE);
+            if (i < 0) return;
+            InstancedPrimitives primitivas = app.getPrimitivas();
+            if (marcaToque < 0) marcaToque = primitivas.addSphere(track.x(i), track.y(i), track.gnssAltitude(i), 12f, COR_TOQUE);
+            else primitivas.moveTo(marcaToque, track.x(i), track.y(i), track.gnssAltitude(i));
+            primitivas.flush();
+            int seg = track.time(i) % 86400;
+            String texto = String.format(Locale.ROOT, "%02d:%02d:%02d UTC, %d m",
+                    seg / 3600, seg / 60 % 60, seg % 60, track.gnssAltitude(i));
+            runOnUiThread(() -> Toast.makeText(this, texto, Toast.LENGTH_SHORT).show());
+        });
+    }
+
+    /** Ponto {x, y, altitude GNSS} do fixo i no espaço do modelo. */
+    private double[] pontoModelo(int i) {
+        return new double[] {track.x(i), track.y(i), track.gnssAltitude(i)};
+    }
+
     private class FrameCallback implements Choreographer.FrameCallback {
         @Override public void doFrame(long frameTimeNanos) {
             choreographer.postFrameCallback(this);
+            if (replay != null) {
+                replay.onFrame(frameTimeNanos);
+                seguePelaReplay(frameTimeNanos);
+            }
+            atualizaPainel(frameTimeNanos);
             app.render(frameTimeNanos);
         }
     }
+
+    /**
+     * Altitude, vario, velocidade, planeio, distância e ganho no painel (thread de UI), no
+     * máximo a cada {@link #INTERVALO_PAINEL_NS}; médias na janela de 30 s.
+     */
+    private void atualizaPainel(long frameTimeNanos) {
+        if (frameTimeNanos - ultimoPainelNanos < INTERVALO_PAINEL_NS) return;
+        ultimoPainelNanos = frameTimeNanos;
+        estatisticas.snapshot(resumo);
+        if (resumo.fixes == 0) {
+            painel.setText("");
+            return;
+        }
+        float planeio = resumo.avgGlide[FlightStats.J30];
+        painel.setText(String.format(Locale.ROOT,
+                "%d m  %+.1f m/s (30 s: %+.1f)\n%.0f km/h  L/D %s\n%.1f km  ganho %.0f m",
+                resumo.altitude, resumo.climbRate, resumo.avgClimb[FlightStats.J30],
+                resumo.avgSpeed[FlightStats.J30] * 3.6,
+                Float.isNaN(planeio) ? "-" : String.format(Locale.ROOT, "%.0f", planeio),
+                resumo.distance / 1000, resumo.totalGain));
+    }
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
         if (keyCode == KeyEvent.KEYCODE_VOLUME_UP) {
@@ -13,6 +13,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -21,8 +22,25 @@ import java.util.List;
  * Índices de 32 bits (UINT). IB é estático (0..N-1). Os vértices são gravados em
  * slots fixos com ring buffer: quando atinge a capacidade, os novos triângulos
  * sobrescrevem os mais antigos. AABB é fixo (aplique no renderable uma vez).
+ *
+ * Também é um {@link MeshSink}: {@link #setOrigin} + {@link #triangle} (direto da
+ * {@link Geometry}) e {@link #flush} no fim do lote, sem lista nem array por triângulo.
+ * Vértices com normal própria ({@link #vertex}) ficam num estágio do lote e são expandidos
+ * para os três slots do triângulo em {@link #triangle(int, int, int)}; aqui os ids só valem
+ * até o fim do lote (a {@link #generation} muda a cada flush).
+ *
+ * Modo indexado (construtor com {@code maxVertices}): vértices únicos + índices, sem a
+ * expansão 3 vértices/triângulo. A capacidade é dividida em páginas de no máximo
+ * {@link #VERTICES_POR_PAGINA_MAX} vértices (quantas o {@code maxVertices} pedir), cada uma
+ * com VB próprio e IB USHORT, e as regiões de vértices e de índices de cada página enchem de
+ * forma independente. Os ids de vértice valem de um lote para o outro enquanto a página for
+ * a mesma: o gerador reaproveita, por exemplo, o anel do segmento anterior. Quando a página
+ * acaba, o grupo reservado ({@link #reserve}) começa na seguinte do anel, que é descartada
+ * inteira (o trecho mais antigo some de uma vez, uma página por vez), e a geração muda. Cada
+ * página é uma primitiva do renderable ({@link #getPageCount}) e o upload manda só as faixas
+ * escritas desde o último.
  */
-public class DynamicTriangleMesh {
+public class DynamicTriangleMesh implements MeshSink {
 
     // --- layout ---
     private static final int FLOAT_SIZE = 4;
@@ -33,6 +51,25 @@ public class DynamicTriangleMesh {
     private final int maxVertices;
     private final int maxIndices;
 
+    // --- modo indexado ---
+    /** Vértices por página no modo indexado: cabe em índice USHORT. */
+    public static final int VERTICES_POR_PAGINA_MAX = 65535;
+    private final boolean indexada;
+    private final int paginas, verticesPorPagina, indicesPorPagina;
+    private VertexBuffer[] vbs;
+    private IndexBuffer[] ibs;
+    private final ByteBuffer[] paginaVertices, paginaIndices;
+    // ocupação de cada página e faixa suja (ainda não enviada), em vértices / índices
+    private final int[] usadosV, usadosI;
+    private final int[] sujoV0, sujoV1, sujoI0, sujoI1;
+    /** Id do primeiro vértice de cada página: id = baseId + posição na página. */
+    private final int[] baseId;
+    private int pagina = 0;
+    // início do grupo em andamento (último reserve/flush) na página atual
+    private int loteV0 = 0, loteI0 = 0;
+    /** Muda quando ids já devolvidos deixam de valer (ver {@link MeshSink#generation}). */
+    private int geracao = 0;
+
     // GPU
     private VertexBuffer vb;
     private IndexBuffer ib;
@@ -51,6 +88,15 @@ public class DynamicTriangleMesh {
     private int filledTris = 0;   // quantos slots já preenchidos
     private boolean wrapped = false;
 
+    // origem do lote em andamento (subtraída em double antes do cast)
+    private double ox, oy, oz;
+    // rascunho do frame tangente (thread de geometria)
+    private final float[] tangente = new float[3], bitangente = new float[3], quat = new float[4];
+    // estágio dos vértices do lote ({@link #vertex}): x, y, z, qx, qy, qz, qw
+    private static final int ESTAGIO_FLOATS = 7;
+    private float[] estagio = new float[64 * ESTAGIO_FLOATS];
+    private int estagioVertices = 0;
+
     // cor atual (UBYTE)
     private byte cr = (byte)255, cg = (byte)255, cb = (byte)255, ca = (byte)255;
 
@@ -71,11 +117,29 @@ public class DynamicTriangleMesh {
     public DynamicTriangleMesh(int maxTriangles,
                                float cx, float cy, float cz,
                                float hx, float hy, float hz) {
+        this(false, maxTriangles, maxTriangles * 3, cx, cy, cz, hx, hy, hz);
+    }
+
+    /**
+     * Modo indexado: até {@code maxTriangles} triângulos sobre até {@code maxVertices}
+     * vértices únicos, em páginas USHORT (ver a descrição da classe).
+     */
+    public DynamicTriangleMesh(int maxTriangles, int maxVertices,
+                               float cx, float cy, float cz,
+                               float hx, float hy, float hz) {
+        this(true, maxTriangles, maxVertices, cx, cy, cz, hx, hy, hz);
+    }
+
+    private DynamicTriangleMesh(boolean indexada, int maxTriangles, int maxVertices,
+                                float cx, float cy, float cz,
+                                float hx, float hy, float hz) {
         this.engine = null;
         this.engineHandler = null;
         if (maxTriangles <= 0) throw new IllegalArgumentException("maxTriangles must be > 0");
+        if (maxVertices <= 0) throw new IllegalArgumentException("maxVertices must be > 0");
+        this.indexada = indexada;
         this.maxTriangles = maxTriangles;
-        this.maxVertices  = maxTriangles * 3;
+        this.maxVertices  = maxVertices;
         this.maxIndices   = maxTriangles * 3;
 
         this.fixedCx = cx; this.fixedCy = cy; this.fixedCz = cz;
@@ -83,8 +147,33 @@ public class DynamicTriangleMesh {
         this.fixedHy = Math.max(1e-4f, hy);
         this.fixedHz = Math.max(1e-4f, hz);
 
-        vertexShadow = ByteBuffer.allocateDirect(maxVertices * STRIDE).order(ByteOrder.nativeOrder());
-        indexShadow  = ByteBuffer.allocateDirect(maxIndices * 4).order(ByteOrder.nativeOrder());
+        if (!indexada) {
+            paginas = 1;
+            verticesPorPagina = maxVertices;
+            indicesPorPagina = maxIndices;
+            vertexShadow = ByteBuffer.allocateDirect(maxVertices * STRIDE).order(ByteOrder.nativeOrder());
+            indexShadow  = ByteBuffer.allocateDirect(maxIndices * 4).order(ByteOrder.nativeOrder());
+            paginaVertices = paginaIndices = null;
+            usadosV = usadosI = sujoV0 = sujoV1 = sujoI0 = sujoI1 = baseId = null;
+            return;
+        }
+
+        paginas = (maxVertices + VERTICES_POR_PAGINA_MAX - 1) / VERTICES_POR_PAGINA_MAX;
+        verticesPorPagina = (maxVertices + paginas - 1) / paginas;
+        indicesPorPagina = (maxTriangles + paginas - 1) / paginas * 3;
+        vertexShadow = indexShadow = null;
+        paginaVertices = new ByteBuffer[paginas];
+        paginaIndices = new ByteBuffer[paginas];
+        for (int p = 0; p < paginas; p++) {
+            paginaVertices[p] = ByteBuffer.allocateDirect(verticesPorPagina * STRIDE).order(ByteOrder.nativeOrder());
+            paginaIndices[p]  = ByteBuffer.allocateDirect(indicesPorPagina * 2).order(ByteOrder.nativeOrder());
+        }
+        usadosV = new int[paginas];
+        usadosI = new int[paginas];
+        sujoV0 = new int[paginas]; sujoV1 = new int[paginas];
+        sujoI0 = new int[paginas]; sujoI1 = new int[paginas];
+        baseId = new int[paginas];
+        for (int p = 0; p < paginas; p++) limpaSujo(p);
     }
 
     private static float autoHalfExtent(int maxTriangles) {
@@ -99,17 +188,20 @@ public class DynamicTriangleMesh {
 
     public void inicializaBuffers(Engine engine, Handler engineHandler) {
         setEngineHandler(engine, engineHandler);
-        vb = new VertexBuffer.Builder()
-                .bufferCount(1)
-                .vertexCount(maxVertices)
-                .attribute(VertexBuffer.VertexAttribute.POSITION, 0,
-                        VertexBuffer.AttributeType.FLOAT3, 0, STRIDE)
-                .attribute(VertexBuffer.VertexAttribute.TANGENTS, 0,
-                        VertexBuffer.AttributeType.FLOAT4, 3 * FLOAT_SIZE, STRIDE)
-                .attribute(VertexBuffer.VertexAttribute.COLOR, 0,
-                        VertexBuffer.AttributeType.UBYTE4, 7 * FLOAT_SIZE, STRIDE)
-                .normalized(VertexBuffer.VertexAttribute.COLOR)
-                .build(engine);
+        if (indexada) {
+            // páginas começam vazias (count 0 no renderable): nada a enviar ainda
+            vbs = new VertexBuffer[paginas];
+            ibs = new IndexBuffer[paginas];
+            for (int p = 0; p < paginas; p++) {
+                vbs[p] = criaVertexBuffer(engine, verticesPorPagina);
+                ibs[p] = new IndexBuffer.Builder()
+                        .indexCount(indicesPorPagina)
+                        .bufferType(IndexBuffer.Builder.IndexType.USHORT)
+                        .build(engine);
+            }
+            return;
+        }
+        vb = criaVertexBuffer(engine, maxVertices);
 
         ib = new IndexBuffer.Builder()
                 .indexCount(maxIndices)
@@ -125,12 +217,44 @@ public class DynamicTriangleMesh {
         });
     }
 
+    private static VertexBuffer criaVertexBuffer(Engine engine, int vertices) {
+        return new VertexBuffer.Builder()
+                .bufferCount(1)
+                .vertexCount(vertices)
+                .attribute(VertexBuffer.VertexAttribute.POSITION, 0,
+                        VertexBuffer.AttributeType.FLOAT3, 0, STRIDE)
+                .attribute(VertexBuffer.VertexAttribute.TANGENTS, 0,
+                        VertexBuffer.AttributeType.FLOAT4, 3 * FLOAT_SIZE, STRIDE)
+                .attribute(VertexBuffer.VertexAttribute.COLOR, 0,
+                        VertexBuffer.AttributeType.UBYTE4, 7 * FLOAT_SIZE, STRIDE)
+                .normalized(VertexBuffer.VertexAttribute.COLOR)
+                .build(engine);
+    }
+
     // getters
-    public VertexBuffer getVertexBuffer() { return vb; }
-    public IndexBuffer  getIndexBuffer()  { return ib; }
+    public VertexBuffer getVertexBuffer() { return getVertexBuffer(0); }
+    public IndexBuffer  getIndexBuffer()  { return getIndexBuffer(0); }
     public int getIndexCount()            { return indexCount; }
     public int getTriangleCount()         { return triCount; }
 
+    /**
+     * Modo indexado: um lote de até {@code triangulos}/{@code vertices} ainda entra sem
+     * descartar página com conteúdo (cabe na atual ou a seguinte está vazia)?
+     */
+    public boolean cabeSemDescartar(int triangulos, int vertices) {
+        if (!indexada) return filledTris + triangulos <= maxTriangles;
+        if (usadosI[pagina] + triangulos * 3 <= indicesPorPagina
+                && usadosV[pagina] + vertices <= verticesPorPagina) return true;
+        int prox = (pagina + 1) % paginas;
+        return prox != pagina && usadosV[prox] == 0 && usadosI[prox] == 0;
+    }
+
+    /** Primitivas do renderable: 1, ou uma por página no modo indexado. */
+    public int getPageCount()             { return paginas; }
+    public boolean isIndexed()            { return indexada; }
+    public VertexBuffer getVertexBuffer(int pagina) { return indexada ? vbs[pagina] : vb; }
+    public IndexBuffer  getIndexBuffer(int pagina)  { return indexada ? ibs[pagina] : ib; }
+
     // cor atual
     public void setCurrentColorSrgb(float r, float g, float b, float a) {
         cr = toU8(r); cg = toU8(g); cb = toU8(b); ca = toU8(a);
@@ -147,49 +271,177 @@ public class DynamicTriangleMesh {
      * Quando enche, sobrescreve os mais antigos e mantém o draw sempre em maxTriangles.
      */
     public void addTriangles(List<double[]> tris) {
+        addTriangles(tris, 0.0, 0.0, 0.0);
+    }
+
+    /**
+     * Igual a {@link #addTriangles(List)}, mas grava os vértices relativos a (ox, oy, oz).
+     * A subtração é feita em double antes do cast para float: é o que mantém a precisão
+     * quando a malha é um trecho longe da origem do mundo (ver {@link TrackLod}).
+     */
+    public void addTriangles(List<double[]> tris, double ox, double oy, double oz) {
         if (tris == null || tris.isEmpty()) return;
 
+        setOrigin(ox, oy, oz);
         for (double[] t : tris) {
             if (t == null || t.length != 9)
                 throw new IllegalArgumentException("Cada triângulo deve ter 9 doubles (x0..z2).");
+            triangle(t[0], t[1], t[2], t[3], t[4], t[5], t[6], t[7], t[8]);
+        }
+        flush();
+    }
+
+    /** Origem subtraída dos próximos {@link #triangle}s (coordenadas de mundo → do bloco). */
+    public void setOrigin(double ox, double oy, double oz) {
+        // sem índice o estágio recomeça; com índice, só se a origem mudou (vértices relativos à antiga)
+        if (!indexada || ox != this.ox || oy != this.oy || oz != this.oz) geracao++;
+        this.ox = ox;
+        this.oy = oy;
+        this.oz = oz;
+        estagioVertices = 0;
+        if (indexada) iniciaLote();
+    }
+
+    @Override
+    public int vertex(double x, double y, double z, float[] q) {
+        if (indexada) {
+            if (usadosV[pagina] == verticesPorPagina) trocaPagina();
+            int v = usadosV[pagina]++;
+            writeVertexAt(paginaVertices[pagina], v,
+                    (float) (x - ox), (float) (y - oy), (float) (z - oz), q);
+            sujaV(pagina, v);
+            return baseId[pagina] + v;
+        }
+        int off = estagioVertices * ESTAGIO_FLOATS;
+        if (off + ESTAGIO_FLOATS > estagio.length) {
+            estagio = Arrays.copyOf(estagio, estagio.length * 2);
+        }
+        estagio[off]     = (float) (x - ox);
+        estagio[off + 1] = (float) (y - oy);
+        estagio[off + 2] = (float) (z - oz);
+        estagio[off + 3] = q[0];
+        estagio[off + 4] = q[1];
+        estagio[off + 5] = q[2];
+        estagio[off + 6] = q[3];
+        return estagioVertices++;
+    }
 
-            float x0=(float)t[0], y0=(float)t[1], z0=(float)t[2];
-            float x1=(float)t[3], y1=(float)t[4], z1=(float)t[5];
-            float x2=(float)t[6], y2=(float)t[7], z2=(float)t[8];
-
-            // normal CCW
-            float ux=x1-x0, uy=y1-y0, uz=z1-z0;
-            float vx=x2-x0, vy=y2-y0, vz=z2-z0;
-            float nx = uy*vz - uz*vy;
-            float ny = uz*vx - ux*vz;
-            float nz = ux*vy - uy*vx;
-            float inv = invLength(nx,ny,nz);
-            if (inv == 0f) continue;
-            nx*=inv; ny*=inv; nz*=inv;
-
-            // base T,B e quat
-            float[] T = new float[3], B = new float[3];
-            makeTangentBasis(nx,ny,nz, T,B);
-            float[] q = new float[4];
-            MathUtils.packTangentFrame(T[0],T[1],T[2], B[0],B[1],B[2], nx,ny,nz, q);
-
-            // slot do ring
-            int triSlot = writeTri;          // [0..maxTriangles-1]
-            int baseV   = triSlot * 3;
-
-            writeVertexAt(baseV,     x0,y0,z0, q);
-            writeVertexAt(baseV + 1, x1,y1,z1, q);
-            writeVertexAt(baseV + 2, x2,y2,z2, q);
-
-            writeTri = (writeTri + 1) % maxTriangles;
-
-            if (filledTris < maxTriangles) {
-                filledTris++;
-            } else {
-                wrapped = true; // já estamos sobrescrevendo
+    /** Triângulo com os vértices do estágio (normal de cada vértice preservada). */
+    @Override
+    public void triangle(int a, int b, int c) {
+        if (indexada) {
+            if (usadosI[pagina] + 3 > indicesPorPagina) trocaPagina();
+            int base = baseId[pagina], n = usadosV[pagina];
+            int la = a - base, lb = b - base, lc = c - base;
+            if (la < 0 || lb < 0 || lc < 0 || la >= n || lb >= n || lc >= n) {
+                throw new IllegalArgumentException("Vértice fora da página atual ("
+                        + a + ", " + b + ", " + c + "): emita de novo quando generation() mudar.");
             }
+            ByteBuffer ix = paginaIndices[pagina];
+            int i = usadosI[pagina];
+            ix.putShort(i * 2,       (short) la);
+            ix.putShort(i * 2 + 2,   (short) lb);
+            ix.putShort(i * 2 + 4,   (short) lc);
+            usadosI[pagina] = i + 3;
+            sujaI(pagina, i, i + 3);
+            return;
+        }
+        int baseV = writeTri * 3;
+        writeStagedAt(baseV,     a);
+        writeStagedAt(baseV + 1, b);
+        writeStagedAt(baseV + 2, c);
+        avancaSlot();
+    }
+
+    /**
+     * Grava um triângulo no próximo slot do ring, direto no buffer direto, sem alocar.
+     * Só atualiza a sombra de CPU: chame {@link #flush} no fim do lote.
+     */
+    @Override
+    public void triangle(double ax, double ay, double az,
+                         double bx, double by, double bz,
+                         double cx, double cy, double cz) {
+        float x0=(float)(ax-ox), y0=(float)(ay-oy), z0=(float)(az-oz);
+        float x1=(float)(bx-ox), y1=(float)(by-oy), z1=(float)(bz-oz);
+        float x2=(float)(cx-ox), y2=(float)(cy-oy), z2=(float)(cz-oz);
+
+        // normal CCW
+        float ux=x1-x0, uy=y1-y0, uz=z1-z0;
+        float vx=x2-x0, vy=y2-y0, vz=z2-z0;
+        float nx = uy*vz - uz*vy;
+        float ny = uz*vx - ux*vz;
+        float nz = ux*vy - uy*vx;
+        float inv = invLength(nx,ny,nz);
+        if (inv == 0f) return;
+        nx*=inv; ny*=inv; nz*=inv;
+
+        // base T,B e quat
+        float[] T = tangente, B = bitangente, q = quat;
+        makeTangentBasis(nx,ny,nz, T,B);
+        MathUtils.packTangentFrame(T[0],T[1],T[2], B[0],B[1],B[2], nx,ny,nz, q);
+
+        if (indexada) {
+            // normal plana: três vértices próprios (só o triângulo os usa)
+            reserve(3, 1);
+            int a = vertex(ax, ay, az, q);
+            int b = vertex(bx, by, bz, q);
+            int c = vertex(cx, cy, cz, q);
+            triangle(a, b, c);
+            return;
         }
 
+        // slot do ring
+        int triSlot = writeTri;          // [0..maxTriangles-1]
+        int baseV   = triSlot * 3;
+
+        writeVertexAt(vertexShadow, baseV,     x0,y0,z0, q);
+        writeVertexAt(vertexShadow, baseV + 1, x1,y1,z1, q);
+        writeVertexAt(vertexShadow, baseV + 2, x2,y2,z2, q);
+
+        avancaSlot();
+    }
+
+    private void avancaSlot() {
+        writeTri = (writeTri + 1) % maxTriangles;
+
+        if (filledTris < maxTriangles) {
+            filledTris++;
+        } else {
+            wrapped = true; // já estamos sobrescrevendo
+        }
+    }
+
+    @Override
+    public void reserve(int vertices, int triangles) {
+        if (!indexada) return; // o estágio cresce e os slots do ring não têm página
+        if (vertices > verticesPorPagina || triangles * 3 > indicesPorPagina) {
+            throw new IllegalArgumentException("Grupo maior que uma página ("
+                    + verticesPorPagina + " vértices, " + indicesPorPagina + " índices).");
+        }
+        iniciaLote();
+        if (usadosV[pagina] + vertices <= verticesPorPagina
+                && usadosI[pagina] + triangles * 3 <= indicesPorPagina) return;
+        abrePagina();
+    }
+
+    @Override
+    public int generation() {
+        return geracao;
+    }
+
+    /** Fecha o lote: atualiza os contadores desenhados e sobe a sombra para a GPU. */
+    public void flush() {
+        estagioVertices = 0;
+        if (indexada) {
+            int tris = 0;
+            for (int p = 0; p < paginas; p++) tris += usadosI[p] / 3;
+            triCount = tris;
+            indexCount = tris * 3;
+            iniciaLote();
+            if (engine != null) upload(engine);
+            return;
+        }
+        geracao++; // o estágio recomeça no próximo lote
         triCount    = filledTris;
         vertexCount = triCount * 3;
         indexCount  = triCount * 3;
@@ -202,12 +454,14 @@ public class DynamicTriangleMesh {
         if (engine != null) {
             upload(engine);
         }
-
-        
     }
 
     /** Envia VB; quando ‘wrapped’, enviamos o buffer todo (índices podem apontar para slots altos). */
     public void upload(Engine engine) {
+        if (indexada) {
+            enviaSujos(engine);
+            return;
+        }
         ByteBuffer v = vertexShadow.duplicate().order(ByteOrder.nativeOrder());
         if (!wrapped) {
             v.position(0);
@@ -222,41 +476,178 @@ public class DynamicTriangleMesh {
         });
     }
 
-    /** Atualiza a geometria do renderable (count varia conforme triCount/indexCount). */
-    public void applyToRenderable(RenderableManager rm, int renderableEntity)
-            throws UnsupportedOperationException {
+    /**
+     * Atualiza a geometria do renderable (count varia conforme triCount/indexCount). As
+     * contagens são copiadas na thread que chama, antes da postagem.
+     */
+    public void applyToRenderable(RenderableManager rm, int renderableEntity) {
+        final int[] contagens = indexada ? usadosI.clone() : null;
+        final int indices = indexCount;
         Concorrencia.postAndWait(engineHandler, () -> {
-
             int inst = rm.getInstance(renderableEntity);
-            try {
-                Method m = rm.getClass().getMethod(
-                        "setGeometryAt",
-                        int.class, int.class,
-                        RenderableManager.PrimitiveType.class,
-                        VertexBuffer.class,
-                        IndexBuffer.class,
-                        int.class, int.class
-                );
-                m.invoke(rm, inst, 0,
-                        RenderableManager.PrimitiveType.TRIANGLES,
-                        this.vb, this.ib, 0, this.indexCount);
-            } catch (Throwable t) {
-                throw new UnsupportedOperationException("setGeometryAt indisponível nesta versão.", t);
+            if (indexada) {
+                for (int p = 0; p < paginas; p++) {
+                    rm.setGeometryAt(inst, p, RenderableManager.PrimitiveType.TRIANGLES,
+                            vbs[p], ibs[p], 0, contagens[p]);
+                }
+                return;
             }
+            rm.setGeometryAt(inst, 0, RenderableManager.PrimitiveType.TRIANGLES, vb, ib, 0, indices);
         });
     }
 
     // -------------------- helpers --------------------
 
-    private void writeVertexAt(int vertexIndex, float x, float y, float z, float[] q) {
+    private void writeVertexAt(ByteBuffer destino, int vertexIndex, float x, float y, float z, float[] q) {
+        final int off = vertexIndex * STRIDE;
+        destino.putFloat(off      , x);
+        destino.putFloat(off +  4 , y);
+        destino.putFloat(off +  8 , z);
+        destino.putFloat(off + 12 , q[0]);
+        destino.putFloat(off + 16 , q[1]);
+        destino.putFloat(off + 20 , q[2]);
+        destino.putFloat(off + 24 , q[3]);
+        destino.put(     off + 28 , cr);
+        destino.put(     off + 29 , cg);
+        destino.put(     off + 30 , cb);
+        destino.put(     off + 31 , ca);
+    }
+
+    // ---- modo indexado ----
+
+    private void iniciaLote() {
+        loteV0 = usadosV[pagina];
+        loteI0 = usadosI[pagina];
+    }
+
+    /**
+     * Grupo novo na página seguinte do anel, que é descartada inteira. Os ids da página
+     * atual continuam valendo para os triângulos já gravados nela, mas não para os novos.
+     */
+    private void abrePagina() {
+        int de = pagina, para = (pagina + 1) % paginas;
+        baseId[para] = baseId[de] + usadosV[de];
+        usadosV[para] = 0;
+        usadosI[para] = 0;
+        limpaSujo(para);
+        pagina = para;
+        loteV0 = 0;
+        loteI0 = 0;
+        geracao++;
+    }
+
+    /**
+     * A página atual acabou (vértices ou índices) no meio de um grupo que não reservou
+     * espaço: o que o grupo já escreveu vai para o início da página seguinte, que é
+     * descartada inteira, e a atual volta a terminar onde o grupo começou. A base de ids da
+     * página nova é a do grupo, então os ids que o grupo já recebeu continuam valendo.
+     */
+    private void trocaPagina() {
+        int de = pagina, para = (pagina + 1) % paginas;
+        int nV = usadosV[de] - loteV0, nI = usadosI[de] - loteI0;
+        if (loteV0 == 0 && loteI0 == 0) {
+            throw new IllegalStateException("Lote maior que uma página ("
+                    + verticesPorPagina + " vértices, " + indicesPorPagina + " índices).");
+        }
+
+        // cópia para frente, de int em int: com uma página só, origem e destino se sobrepõem
+        ByteBuffer origemV = paginaVertices[de], destinoV = paginaVertices[para];
+        for (int b = 0, de0 = loteV0 * STRIDE, n = nV * STRIDE; b < n; b += 4) {
+            destinoV.putInt(b, origemV.getInt(de0 + b));
+        }
+
+        ByteBuffer origemI = paginaIndices[de], destinoI = paginaIndices[para];
+        for (int k = 0; k < nI; k++) {
+            int v = (origemI.getShort((loteI0 + k) * 2) & 0xffff) - loteV0;
+            if (v < 0) {
+                throw new IllegalStateException("Grupo usa vértice de antes dele: chame reserve() antes de emitir.");
+            }
+            destinoI.putShort(k * 2, (short) v);
+        }
+
+        baseId[para] = baseId[de] + loteV0;
+        usadosV[de] = loteV0;
+        usadosI[de] = loteI0;
+        usadosV[para] = nV;
+        usadosI[para] = nI;
+        limpaSujo(para);
+        if (nV > 0) sujaV(para, 0);
+        if (nV > 1) sujaV(para, nV - 1);
+        if (nI > 0) sujaI(para, 0, nI);
+
+        pagina = para;
+        loteV0 = 0;
+        loteI0 = 0;
+        geracao++;
+    }
+
+    private void sujaV(int p, int v) {
+        if (v < sujoV0[p]) sujoV0[p] = v;
+        if (v + 1 > sujoV1[p]) sujoV1[p] = v + 1;
+    }
+
+    private void sujaI(int p, int i0, int i1) {
+        if (i0 < sujoI0[p]) sujoI0[p] = i0;
+        if (i1 > sujoI1[p]) sujoI1[p] = i1;
+    }
+
+    private void limpaSujo(int p) {
+        sujoV0[p] = sujoI0[p] = Integer.MAX_VALUE;
+        sujoV1[p] = sujoI1[p] = 0;
+    }
+
+    /**
+     * Envia só as faixas escritas desde o último upload, página a página. As faixas são
+     * lidas e zeradas aqui, na thread de geometria, e só as fatias vão para a thread do
+     * Engine: o que for sujado depois entra no próximo upload, nada se perde no meio.
+     */
+    private void enviaSujos(Engine engine) {
+        ByteBuffer[] fatiasV = new ByteBuffer[paginas], fatiasI = new ByteBuffer[paginas];
+        int[] destinoV = new int[paginas], destinoI = new int[paginas];
+        boolean algum = false;
+        for (int p = 0; p < paginas; p++) {
+            int v0 = sujoV0[p], v1 = Math.min(sujoV1[p], usadosV[p]);
+            if (v0 < v1) {
+                ByteBuffer v = paginaVertices[p].duplicate().order(ByteOrder.nativeOrder());
+                v.limit(v1 * STRIDE).position(v0 * STRIDE);
+                fatiasV[p] = v.slice().order(ByteOrder.nativeOrder());
+                destinoV[p] = v0 * STRIDE;
+                algum = true;
+            }
+            int i0 = sujoI0[p], i1 = Math.min(sujoI1[p], usadosI[p]);
+            if (i0 < i1) {
+                ByteBuffer i = paginaIndices[p].duplicate().order(ByteOrder.nativeOrder());
+                i.limit(i1 * 2).position(i0 * 2);
+                fatiasI[p] = i.slice().order(ByteOrder.nativeOrder());
+                destinoI[p] = i0 * 2;
+                algum = true;
+            }
+            limpaSujo(p);
+        }
+        if (!algum) return;
+        Concorrencia.postAndWait(engineHandler, () -> {
+            for (int p = 0; p < paginas; p++) {
+                if (fatiasV[p] != null) {
+                    vbs[p].setBufferAt(engine, 0, fatiasV[p], destinoV[p], fatiasV[p].remaining());
+                }
+                if (fatiasI[p] != null) {
+                    ibs[p].setBuffer(engine, fatiasI[p], destinoI[p], fatiasI[p].remaining());
+                }
+            }
+        });
+    }
+
+    private void writeStagedAt(int vertexIndex, int staged) {
         final int off = vertexIndex * STRIDE;
-        vertexShadow.putFloat(off      , x);
-        vertexShadow.putFloat(off +  4 , y);
-        vertexShadow.putFloat(off +  8 , z);
-        vertexShadow.putFloat(off + 12 , q[0]);
-        vertexShadow.putFloat(off + 16 , q[1]);
-        vertexShadow.putFloat(off + 20 , q[2]);
-        vertexShadow.putFloat(off + 24 , q[3]);
+        final int e = staged * ESTAGIO_FLOATS;
+        float[] st = estagio;
+        vertexShadow.putFloat(off      , st[e]);
+        vertexShadow.putFloat(off +  4 , st[e + 1]);
+        vertexShadow.putFloat(off +  8 , st[e + 2]);
+        vertexShadow.putFloat(off + 12 , st[e + 3]);
+        vertexShadow.putFloat(off + 16 , st[e + 4]);
+        vertexShadow.putFloat(off + 20 , st[e + 5]);
+        vertexShadow.putFloat(off + 24 , st[e + 6]);
         vertexShadow.put(     off + 28 , cr);
         vertexShadow.put(     off + 29 , cg);
         vertexShadow.put(     off + 30 , cb);
@@ -268,7 +659,7 @@ public class DynamicTriangleMesh {
         return len > 0 ? (float)(1.0/len) : 0f;
     }
 
-    private static void makeTangentBasis(float nx,float ny,float nz, float[] T, float[] B) {
+    static void makeTangentBasis(float nx,float ny,float nz, float[] T, float[] B) {
         float ux, uy, uz = 0f;
         if (Math.abs(ny) < 0.999f) { ux = 0; uy = 1; } else { ux = 1; uy = 0; }
         float tx = uy*nz - uz*ny;
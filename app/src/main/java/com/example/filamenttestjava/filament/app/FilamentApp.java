@@ -7,18 +7,14 @@ import android.os.Looper;
 import android.view.Surface;
 import android.animation.ValueAnimator;
 
-import com.example.filamenttestjava.MainActivity5;
-
 import com.example.filamenttestjava.filament.utils.CalculoVetor;
 import com.example.filamenttestjava.filament.utils.CameraAnimator;
 import com.example.filamenttestjava.filament.utils.Concorrencia;
 import com.example.filamenttestjava.filament.app.eventos.NovaPosicaoCameraAtualizada;
-import com.google.android.filament.Box;
 import com.google.android.filament.Camera;
 import com.google.android.filament.Engine;
 import com.google.android.filament.Entity;
 import com.google.android.filament.EntityManager;
-import com.google.android.filament.RenderableManager;
 import com.google.android.filament.Renderer;
 import com.google.android.filament.Scene;
 import com.google.android.filament.Skybox;
@@ -56,10 +52,14 @@ public class FilamentApp {
 
 
 
-    private DynamicTriangleMesh dyn2;
+    /** Origem de render que acompanha a câmera (só a thread do Engine). */
+    private final FloatingOrigin origemRender = new FloatingOrigin();
+    /** Marcadores/pilões/cilindros por instância (moldes compartilhados). */
+    private InstancedPrimitives primitivas;
+    /** Trilha em trechos com nível de detalhe pela distância da câmera. */
+    private TrackLod trilha;
 
     @Entity private int renderable = 0;
-    @Entity private int renderablePlano = 1;
     @Entity private int sun = 0;
 
     @Entity private int camEntity = 0;
@@ -69,6 +69,11 @@ public class FilamentApp {
     Handler calculoAnimacaoHandler;
 
     private volatile double distCamera = 25;
+    /** Zoom máximo pelo volume (m do olho ao ponto seguido). */
+    private static final double DIST_CAMERA_MAX = 20000;
+
+    /** Duração de cada trecho da animação da câmera (o replay entrega lotes por quadro). */
+    private static final float DURACAO_ANIMACAO_CAMERA_MS = 90f;
 
     private PublishSubject<NovaPosicaoCameraAtualizada> novaPosicaoCameraAtualizadaPublishSubject;
 
@@ -95,8 +100,22 @@ public class FilamentApp {
                 .toFlowable(BackpressureStrategy.LATEST)
                         .observeOn(Schedulers.io(), false, 1)
                                 .subscribe(nova -> {
+                                    cameraAtual = nova;
                                     Concorrencia.postAndWait(engineHandler, () -> {
-                                        camera.lookAt(nova.getEx(), nova.getEy(), nova.getEz(), nova.getCx(), nova.getCy(), nova.getCz(), nova.getUpx(), nova.getUpy(), nova.getUpz());
+                                        // a câmera fica perto da origem de render; os trechos/lotes é que se deslocam
+                                        if (origemRender.rebaseSeNecessario(nova.getCx(), nova.getCy())) {
+                                            primitivas.setOrigemRender(origemRender.getX(), origemRender.getY());
+                                            trilha.setOrigemRender(origemRender.getX(), origemRender.getY());
+                                        }
+                                        double ox = origemRender.getX(), oy = origemRender.getY();
+                                        trilha.atualizaLod(nova.getEx(), nova.getEy(), nova.getEz());
+                                        ajustaProjecao(Math.sqrt(
+                                                sq(nova.getCx() - nova.getEx())
+                                                + sq(nova.getCy() - nova.getEy())
+                                                + sq(nova.getCz() - nova.getEz())));
+                                        camera.lookAt(nova.getEx() - ox, nova.getEy() - oy, nova.getEz(),
+                                                nova.getCx() - ox, nova.getCy() - oy, nova.getCz(),
+                                                nova.getUpx(), nova.getUpy(), nova.getUpz());
                                     });
 
                                         });
@@ -112,7 +131,9 @@ public class FilamentApp {
                 .subscribeOn(Schedulers.io())
                 .subscribe(vl -> {
                     if (vl) {
-                        distCamera *= 1.1;
+                        if (distCamera < DIST_CAMERA_MAX) {
+                            distCamera = Math.min(DIST_CAMERA_MAX, distCamera * 1.1);
+                        }
                     } else {
                         if (distCamera > 50) {
                             distCamera *= 0.9;
@@ -179,18 +200,9 @@ public class FilamentApp {
         materialInstance.setParameter("metallic", 0.5f);
         materialInstance.setParameter("roughness", 0.1f);
 
-        dyn2 = new DynamicTriangleMesh(maxTriangles);
-        dyn2.inicializaBuffers(engine, engineHandler);
-
-        // renderable inicial — count=0, AABB não-vazio minúsculo para evitar crash
-        renderablePlano = EntityManager.get().create();
-        new RenderableManager.Builder(1)
-                .boundingBox(new Box(0f, 0f, 0f, 1000000f, 1000000f, 1000000f))
-                .geometry(0, RenderableManager.PrimitiveType.TRIANGLES,
-                        dyn2.getVertexBuffer(), dyn2.getIndexBuffer(), 0, dyn2.getIndexCount())
-                .material(0, materialInstance)
-                .build(engine, renderablePlano);
-        scene.addEntity(renderablePlano);
+        // trechos da trilha e lotes de primitivas são criados sob demanda
+        primitivas = new InstancedPrimitives(engine, engineHandler, scene, context.getAssets());
+        trilha = new TrackLod(engine, engineHandler, scene, materialInstance, maxTriangles);
 
         // sol
         sun = LightFactory.createSun(engine, scene);
@@ -201,6 +213,73 @@ public class FilamentApp {
 
     }
 
+    /** Campo de visão vertical (graus): mais “GoPro”, mais cenário, mais distorção. */
+    private static final double FOV_VERTICAL = 55.0;
+
+    /** Plano próximo mínimo e limites do distante (m). */
+    private static final double NEAR_MIN = 0.2;
+    private static final double FAR_MIN = 300, FAR_MAX = 200_000;
+
+    // projeção atual (thread do Engine)
+    private double aspecto = 1, nearAtual = 0, farAtual = 0;
+
+    /**
+     * Refaz a projeção quando o recorte precisa mudar (thread do Engine): o plano distante
+     * cobre a trilha inteira ({@link TrackLod#getAlcance}) e o zoom, senão os níveis
+     * {@link TrackLod#MEIO}/{@link TrackLod#LONGE}, a mais de {@link TrackLod#DIST_MEIO} m,
+     * seriam recortados; o próximo acompanha a distância do olho para manter a precisão
+     * do depth.
+     */
+    private void ajustaProjecao(double distOlho) {
+        double far = Math.max(FAR_MIN, Math.min(FAR_MAX, Math.max(trilha.getAlcance(), distOlho * 4)));
+        double near = Math.max(NEAR_MIN, Math.min(distOlho * 0.01, 50));
+        // folga de 10%: não refaz a cada quadro por causa de poucos metros
+        if (Math.abs(far - farAtual) < farAtual * 0.1 && Math.abs(near - nearAtual) < nearAtual * 0.1) return;
+        farAtual = far;
+        nearAtual = near;
+        camera.setProjection(FOV_VERTICAL, aspecto, near, far, Camera.Fov.VERTICAL);
+    }
+
+    private static double sq(double v) { return v * v; }
+
+    // última câmera em coordenadas de mundo e tamanho da tela, para converter toques
+    private volatile NovaPosicaoCameraAtualizada cameraAtual;
+    private volatile int larguraTela, alturaTela;
+
+    /**
+     * Ponto de mundo sob o pixel (px, py): o raio da câmera atual cruzando o plano horizontal
+     * na altitude do ponto que ela olha. Falso se ainda não houve câmera/tela ou se o raio
+     * não desce até o plano.
+     */
+    public boolean toqueNoPlano(float px, float py, double[] out) {
+        NovaPosicaoCameraAtualizada c = cameraAtual;
+        int w = larguraTela, h = alturaTela;
+        if (c == null || w <= 0 || h <= 0) return false;
+        // base da câmera: F (frente), R (direita), U (cima)
+        double fx = c.getCx() - c.getEx(), fy = c.getCy() - c.getEy(), fz = c.getCz() - c.getEz();
+        double fl = Math.sqrt(fx*fx + fy*fy + fz*fz);
+        if (fl == 0) return false;
+        fx /= fl; fy /= fl; fz /= fl;
+        double rx = fy * c.getUpz() - fz * c.getUpy();
+        double ry = fz * c.getUpx() - fx * c.getUpz();
+        double rz = fx * c.getUpy() - fy * c.getUpx();
+        double rl = Math.sqrt(rx*rx + ry*ry + rz*rz);
+        if (rl == 0) return false;
+        rx /= rl; ry /= rl; rz /= rl;
+        double ux = ry * fz - rz * fy, uy = rz * fx - rx * fz, uz = rx * fy - ry * fx;
+
+        double tanV = Math.tan(Math.toRadians(FOV_VERTICAL) * 0.5);
+        double sx = (2.0 * px / w - 1) * tanV * w / h, sy = (1 - 2.0 * py / h) * tanV;
+        double dx = fx + rx * sx + ux * sy, dy = fy + ry * sx + uy * sy, dz = fz + rz * sx + uz * sy;
+        if (dz > -1e-9) return false;
+        double t = (c.getCz() - c.getEz()) / dz;
+        if (t <= 0) return false;
+        out[0] = c.getEx() + dx * t;
+        out[1] = c.getEy() + dy * t;
+        out[2] = c.getCz();
+        return true;
+    }
+
     // ——— ciclo de vida de surface / render ———
     private volatile ValueAnimator cameraAnimator = null;
 
@@ -215,6 +294,45 @@ public class FilamentApp {
         pedeAtualizarTela.onNext(Arrays.asList(posXYant, posXYatual));
 
     }
+    /** Constante de tempo (s de tela) da suavização do rumo da câmera de perseguição. */
+    private static final double SUAVIZACAO_RUMO_S = 0.6;
+    /** Elevação do olho sobre o ponto seguido (graus), a mesma da animação por fixos. */
+    private static final double ELEVACAO_CAMERA_GRAUS = 45;
+
+    // rumo suavizado (unitário) e quadro anterior de seguePosicao (thread do Choreographer)
+    private double rumoX = Double.NaN, rumoY;
+    private long quadroAnteriorNanos = -1;
+
+    /**
+     * Câmera de perseguição num ponto qualquer da trilha, chamada a cada quadro com a
+     * posição e o rumo interpolados no relógio do replay ({@link
+     * com.example.filamenttestjava.filament.utils.TimeIndex}). O olho fica atrás do rumo,
+     * {@link #ELEVACAO_CAMERA_GRAUS} acima, a {@code distCamera}; o rumo é suavizado para a
+     * câmera não girar junto com cada volta da térmica.
+     */
+    public void seguePosicao(double[] centro, double rumoGraus, long frameTimeNanos) {
+        if (Double.isNaN(rumoGraus)) return;
+        double r = Math.toRadians(rumoGraus);
+        double tx = Math.sin(r), ty = Math.cos(r);
+        if (Double.isNaN(rumoX) || quadroAnteriorNanos < 0 || frameTimeNanos < quadroAnteriorNanos) {
+            rumoX = tx;
+            rumoY = ty;
+        } else {
+            double a = 1 - Math.exp(-(frameTimeNanos - quadroAnteriorNanos) * 1e-9 / SUAVIZACAO_RUMO_S);
+            double nx = rumoX + (tx - rumoX) * a, ny = rumoY + (ty - rumoY) * a;
+            double l = Math.hypot(nx, ny);
+            // meia-volta exata: mantém o rumo anterior neste quadro
+            if (l > 1e-6) { rumoX = nx / l; rumoY = ny / l; }
+        }
+        quadroAnteriorNanos = frameTimeNanos;
+
+        double elev = Math.toRadians(ELEVACAO_CAMERA_GRAUS), d = distCamera;
+        double h = Math.cos(elev) * d;
+        novaPosicaoCameraAtualizadaPublishSubject.onNext(new NovaPosicaoCameraAtualizada(
+                centro[0] - rumoX * h, centro[1] - rumoY * h, centro[2] + Math.sin(elev) * d,
+                centro[0], centro[1], centro[2], 0, 0, 1));
+    }
+
     private synchronized void executaAtualizaNovaPosicaoCamera(double[] posXYant, double[] posXYatual, double distCamera) {
         System.out.println("vai atualizar nova posicao");
         if (cameraAnimator != null && cameraAnimator.isRunning()) {
@@ -255,7 +373,7 @@ public class FilamentApp {
                     eyeDepois,
                     centerAnt,
                     centerDepois,
-                    (float) (MainActivity5.sleep) *0.90f,
+                    DURACAO_ANIMACAO_CAMERA_MS,
                      novaPosicaoCameraAtualizadaPublishSubject);
             this.ultimoCenter = centerDepois.clone();
             this.ultimoEye = eyeDepois.clone();
@@ -296,12 +414,14 @@ public class FilamentApp {
     public void onResized(int width, int height) {
         runOnEngine(() -> {
 
-            double aspect = (double) width / (double) height;
-
-            double vfov = 55.0;             // mais “GoPro”, mais cenário, mais distorção
-            double near = 0.2;
-            double far  = 300.0;
-            camera.setProjection(vfov, aspect, near, far, Camera.Fov.VERTICAL);
+            aspecto = (double) width / (double) height;
+            if (farAtual == 0) {
+                farAtual = FAR_MIN;
+                nearAtual = NEAR_MIN;
+            }
+            camera.setProjection(FOV_VERTICAL, aspecto, nearAtual, farAtual, Camera.Fov.VERTICAL);
+            larguraTela = width;
+            alturaTela = height;
 
             view.setViewport(new Viewport(0, 0, width, height));
         });
@@ -333,11 +453,9 @@ public class FilamentApp {
         engine.destroyEntity(sun);
         engine.destroyEntity(renderable);
 
-        // destruir buffers dinâmicos
-        if (dyn2 != null) {
-            engine.destroyVertexBuffer(dyn2.getVertexBuffer());
-            engine.destroyIndexBuffer(dyn2.getIndexBuffer());
-        }
+        // destruir trechos/lotes (renderables + buffers dinâmicos)
+        if (primitivas != null) primitivas.destroy();
+        if (trilha != null) trilha.destroy();
 
         engine.destroyMaterialInstance(materialInstance);
         engine.destroyMaterial(material);
@@ -355,42 +473,13 @@ public class FilamentApp {
 
     // ——— API dinâmica ———
 
-    public void addTriangles(List<double[]> tris, int dynNumber, double[] cor) {
-      //runOnEngine(() -> {
-          executeAddTriangles(tris, dynNumber, cor);
-      //});
-
-
-
+    /** Primitivas instanciadas (thread de geometria). */
+    public InstancedPrimitives getPrimitivas() {
+        return primitivas;
     }
 
-    /**
-     * Acrescenta triângulos e atualiza a geometria/AABB.
-     * Chame SEMPRE na thread do Engine (geralmente UI) e FORA de beginFrame..endFrame.
-     */
-    private void executeAddTriangles(List<double[]> tris, int dynNumber, double[] cor) {
-
-
-        DynamicTriangleMesh dyn = this.dyn2;
-        int renderable = dynNumber == 0 ? this.renderable : this.renderablePlano;
-        if (tris == null || tris.isEmpty()) return;
-
-        dyn.setCurrentColorSrgb((float)cor[0], (float)cor[1], (float)cor[2], (float)cor[3]);
-        // 1) escreve em buffers de CPU
-
-        dyn.addTriangles(tris);
-        // 2) sobe prefixo válido para GPU
-        //dyn.upload(engine);
-
-        // 3) tenta atualizar o count desenhado sem recriar o renderable
-        RenderableManager rm = engine.getRenderableManager();
-        try {
-            dyn.applyToRenderable(rm, renderable);
-        } catch (UnsupportedOperationException ex) {
-//
-        }
-
-        // 4) atualiza o AABB de acordo com o conteúdo atual
-        //dyn.updateBoundingBox(engine.getRenderableManager(), renderable);
+    /** Trilha com LOD (thread de geometria). */
+    public TrackLod getTrilha() {
+        return trilha;
     }
 }
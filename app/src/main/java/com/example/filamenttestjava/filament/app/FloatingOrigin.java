@@ -0,0 +1,31 @@
+package com.example.filamenttestjava.filament.app;
+
+/**
+ * Origem de render para voos longos. O mundo fica em metros desde a decolagem, em double;
+ * cada renderable (trecho da {@link TrackLod}, lote da {@link InstancedPrimitives}) guarda a
+ * própria origem e é desenhado em (origem dele - origem de render), com vértices em floats
+ * pequenos. A câmera fica perto da origem de render: quando o centro dela se afasta mais de
+ * {@link #DISTANCIA_REBASE}, a origem muda e só os transforms são regravados (via
+ * {@link TransformCompat}); nenhum vértice é gerado de novo.
+ *
+ * Só a thread do Engine usa.
+ */
+public class FloatingOrigin {
+
+    /** Distância da câmera até a origem de render que dispara o rebase. */
+    public static final double DISTANCIA_REBASE = 5000.0;
+
+    private double x = 0, y = 0;
+
+    /** Muda a origem se o centro da câmera (cx, cy) se afastou demais; devolve se mudou. */
+    public boolean rebaseSeNecessario(double cx, double cy) {
+        double dx = cx - x, dy = cy - y;
+        if (dx * dx + dy * dy <= DISTANCIA_REBASE * DISTANCIA_REBASE) return false;
+        x = Math.rint(cx);
+        y = Math.rint(cy);
+        return true;
+    }
+
+    public double getX() { return x; }
+    public double getY() { return y; }
+}
@@ -13,40 +13,28 @@ public final class Geometry {
 
     /** Cubo de lado 2 centrado na origem. */
     public static List<double[]> makeUnitCubeTris(double fator, double dx, double dy, double dz) {
-        double[] p000 = {-1,-1,-1}, p001 = {-1,-1, 1};
-        double[] p010 = {-1, 1,-1}, p011 = {-1, 1, 1};
-        double[] p100 = { 1,-1,-1}, p101 = { 1,-1, 1};
-        double[] p110 = { 1, 1,-1}, p111 = { 1, 1, 1};
-
-        aplicaFator(p000, fator, dx, dy, dz);
-        aplicaFator(p010, fator, dx, dy, dz);
-        aplicaFator(p100, fator, dx, dy, dz);
-        aplicaFator(p110, fator, dx, dy, dz);
-        aplicaFator(p001, fator, dx, dy, dz);
-        aplicaFator(p011, fator, dx, dy, dz);
-        aplicaFator(p101, fator, dx, dy, dz);
-        aplicaFator(p111, fator, dx, dy, dz);
-
-        List<double[]> tris = new ArrayList<>(12);
+        Lista out = new Lista(12);
+        makeUnitCubeTris(fator, dx, dy, dz, out);
+        return out.tris;
+    }
+
+    /** Igual a {@link #makeUnitCubeTris(double, double, double, double)}, direto no sink. */
+    public static void makeUnitCubeTris(double fator, double dx, double dy, double dz, TriangleSink out) {
+        double x0 = -fator + dx, x1 = fator + dx;
+        double y0 = -fator + dy, y1 = fator + dy;
+        double z0 = -fator + dz, z1 = fator + dz;
         // -Z
-        tris.add(tri(p000, p010, p110)); tris.add(tri(p000, p110, p100));
+        out.triangle(x0,y0,z0, x0,y1,z0, x1,y1,z0); out.triangle(x0,y0,z0, x1,y1,z0, x1,y0,z0);
         // +Z
-        tris.add(tri(p001, p101, p111)); tris.add(tri(p001, p111, p011));
+        out.triangle(x0,y0,z1, x1,y0,z1, x1,y1,z1); out.triangle(x0,y0,z1, x1,y1,z1, x0,y1,z1);
         // +X
-        tris.add(tri(p100, p110, p111)); tris.add(tri(p100, p111, p101));
+        out.triangle(x1,y0,z0, x1,y1,z0, x1,y1,z1); out.triangle(x1,y0,z0, x1,y1,z1, x1,y0,z1);
         // -X
-        tris.add(tri(p001, p011, p010)); tris.add(tri(p001, p010, p000));
+        out.triangle(x0,y0,z1, x0,y1,z1, x0,y1,z0); out.triangle(x0,y0,z1, x0,y1,z0, x0,y0,z0);
         // -Y
-        tris.add(tri(p000, p100, p101)); tris.add(tri(p000, p101, p001));
+        out.triangle(x0,y0,z0, x1,y0,z0, x1,y0,z1); out.triangle(x0,y0,z0, x1,y0,z1, x0,y0,z1);
         // +Y
-        tris.add(tri(p010, p011, p111)); tris.add(tri(p010, p111, p110));
-        return tris;
-    }
-
-    private static void aplicaFator(double[] p, double fator, double dx, double dy, double dz) {
-        p[0] = p[0]*fator + dx;
-        p[1] = p[1]*fator + dy;
-        p[2] = p[2]*fator + dz;
+        out.triangle(x0,y1,z0, x0,y1,z1, x1,y1,z1); out.triangle(x0,y1,z0, x1,y1,z1, x1,y1,z0);
     }
 
     // ===========================
@@ -84,25 +72,28 @@ public final class Geometry {
      * Funciona bem para quads convexos; se for côncavo/não plano, ainda triangula.
      */
     public static List<double[]> makeQuadTrisAuto(double[] A, double[] B, double[] C, double[] D) {
+        Lista out = new Lista(2);
+        makeQuadTrisAuto(A, B, C, D, out);
+        return out.tris;
+    }
+
+    /** Igual a {@link #makeQuadTrisAuto(double[], double[], double[], double[])}, direto no sink. */
+    public static void makeQuadTrisAuto(double[] A, double[] B, double[] C, double[] D, TriangleSink out) {
         double areaAC = triArea(A,B,C) + triArea(A,C,D);
         double areaBD = triArea(B,C,D) + triArea(B,D,A);
 
-        List<double[]> tris = (areaAC >= areaBD)
-                ? new ArrayList<>(makeQuadTrisAC(A,B,C,D))
-                : new ArrayList<>(makeQuadTrisBD(A,B,C,D));
+        // (P,Q,R) e (P,R,S): diagonal P–R
+        double[] P, Q, R, S;
+        if (areaAC >= areaBD) { P = A; Q = B; R = C; S = D; }
+        else                  { P = B; Q = C; R = D; S = A; }
 
+        out.triangle(P[0],P[1],P[2], Q[0],Q[1],Q[2], R[0],R[1],R[2]);
         // Tornar normais consistentes (se necessário inverte o 2º triângulo)
-        double[] n0 = triNormal(tris.get(0));
-        double[] n1 = triNormal(tris.get(1));
-        if (dot(n0, n1) < 0.0) {
-            // inverte ordem do 2º triângulo
-            double[] t = tris.get(1);
-            double[] a = {t[0],t[1],t[2]};
-            double[] b = {t[3],t[4],t[5]};
-            double[] c = {t[6],t[7],t[8]};
-            tris.set(1, tri(a,c,b));
+        if (normalDot(P, Q, R, P, R, S) < 0.0) {
+            out.triangle(P[0],P[1],P[2], S[0],S[1],S[2], R[0],R[1],R[2]);
+        } else {
+            out.triangle(P[0],P[1],P[2], R[0],R[1],R[2], S[0],S[1],S[2]);
         }
-        return tris;
     }
 
     // ===========================
@@ -110,32 +101,38 @@ public final class Geometry {
     // ===========================
 
     private static double triArea(double[] A, double[] B, double[] C) {
-        double[] u = sub(B, A);
-        double[] v = sub(C, A);
-        double[] c = cross(u, v);
-        return 0.5 * Math.sqrt(dot(c, c));
+        double ux = B[0]-A[0], uy = B[1]-A[1], uz = B[2]-A[2];
+        double vx = C[0]-A[0], vy = C[1]-A[1], vz = C[2]-A[2];
+        double cx = uy*vz - uz*vy, cy = uz*vx - ux*vz, cz = ux*vy - uy*vx;
+        return 0.5 * Math.sqrt(cx*cx + cy*cy + cz*cz);
     }
 
-    /** Normal não normalizada do triângulo (A,B,C). */
-    private static double[] triNormal(double[] tri) {
-        double[] A = {tri[0],tri[1],tri[2]};
-        double[] B = {tri[3],tri[4],tri[5]};
-        double[] C = {tri[6],tri[7],tri[8]};
-        return cross(sub(B,A), sub(C,A));
+    /** Produto escalar das normais (não normalizadas) de (A,B,C) e (D,E,F). */
+    private static double normalDot(double[] A, double[] B, double[] C,
+                                    double[] D, double[] E, double[] F) {
+        double ux = B[0]-A[0], uy = B[1]-A[1], uz = B[2]-A[2];
+        double vx = C[0]-A[0], vy = C[1]-A[1], vz = C[2]-A[2];
+        double px = E[0]-D[0], py = E[1]-D[1], pz = E[2]-D[2];
+        double qx = F[0]-D[0], qy = F[1]-D[1], qz = F[2]-D[2];
+        return (uy*vz - uz*vy) * (py*qz - pz*qy)
+             + (uz*vx - ux*vz) * (pz*qx - px*qz)
+             + (ux*vy - uy*vx) * (px*qy - py*qx);
     }
 
-    private static double[] sub(double[] p, double[] q) {
-        return new double[]{ p[0]-q[0], p[1]-q[1], p[2]-q[2] };
-    }
-    private static double[] cross(double[] u, double[] v) {
-        return new double[]{
-                u[1]*v[2] - u[2]*v[1],
-                u[2]*v[0] - u[0]*v[2],
-                u[0]*v[1] - u[1]*v[0]
-        };
-    }
-    private static double dot(double[] u, double[] v) {
-        return u[0]*v[0] + u[1]*v[1] + u[2]*v[2];
+    /** Sink que junta os triângulos numa lista de double[9] (caminho antigo). */
+    private static final class Lista implements TriangleSink {
+        final List<double[]> tris;
+
+        Lista(int capacidade) {
+            tris = new ArrayList<>(capacidade);
+        }
+
+        @Override
+        public void triangle(double x0, double y0, double z0,
+                             double x1, double y1, double z1,
+                             double x2, double y2, double z2) {
+            tris.add(new double[]{ x0,y0,z0, x1,y1,z1, x2,y2,z2 });
+        }
     }
 
     // ===========================
@@ -153,17 +150,20 @@ public final class Geometry {
      */
     public static List<double[]> makeUvSphereTris(double[] center, double radius, int stacks, int slices) {
         if (center == null || center.length < 3) throw new IllegalArgumentException("center inválido");
+        Lista out = new Lista(Math.max(2, stacks) * Math.max(3, slices) * 2);
+        makeUvSphereTris(center[0], center[1], center[2], radius, stacks, slices, out);
+        return out.tris;
+    }
+
+    /** Igual a {@link #makeUvSphereTris(double[], double, int, int)}, direto no sink (sem alocação). */
+    public static void makeUvSphereTris(double cx, double cy, double cz, double radius,
+                                        int stacks, int slices, TriangleSink out) {
         if (radius <= 0) throw new IllegalArgumentException("radius deve ser > 0");
         if (stacks < 2) stacks = 2;
         if (slices < 3) slices = 3;
 
-        final double cx = center[0], cy = center[1], cz = center[2];
-
-        // Polos
-        final double[] southPole = new double[]{ cx, cy - radius, cz }; // φ = -π/2
-        final double[] northPole = new double[]{ cx, cy + radius, cz }; // φ = +π/2
-
-        List<double[]> out = new ArrayList<>(stacks * slices * 2);
+        // Polos: φ = ±π/2
+        final double sulY = cy - radius, norteY = cy + radius;
 
         // Para cada faixa de latitude
         for (int i = 0; i < stacks; i++) {
@@ -173,51 +173,39 @@ public final class Geometry {
             // Pré-calcula seno/cosseno
             double c0 = Math.cos(phi0), s0 = Math.sin(phi0); // y = s, raio do paralelo = c
             double c1 = Math.cos(phi1), s1 = Math.sin(phi1);
+            double y0 = cy + radius * s0, y1 = cy + radius * s1;
 
-            // Para cada fatia de longitude
+            // Para cada fatia de longitude (θ1 de uma fatia é o θ0 da próxima)
+            double ct0 = 1, st0 = 0;
             for (int j = 0; j < slices; j++) {
-                double theta0 = 2.0 * Math.PI * (double) j / (double) slices;
                 double theta1 = 2.0 * Math.PI * (double) (j + 1) / (double) slices;
+                double ct1 = Math.cos(theta1), st1 = Math.sin(theta1);
 
-                // Pontos do “quad” da faixa
-                double[] A = sphPoint(cx, cy, cz, radius, c0, s0, theta0); // (phi0, theta0)
-                double[] D = sphPoint(cx, cy, cz, radius, c0, s0, theta1); // (phi0, theta1)
-                double[] B = sphPoint(cx, cy, cz, radius, c1, s1, theta0); // (phi1, theta0)
-                double[] C = sphPoint(cx, cy, cz, radius, c1, s1, theta1); // (phi1, theta1)
+                // Pontos do “quad” da faixa: A (phi0, theta0), D (phi0, theta1),
+                // B (phi1, theta0), C (phi1, theta1)
+                double ax = cx + radius * c0 * ct0, az = cz + radius * c0 * st0;
+                double dx = cx + radius * c0 * ct1, dz = cz + radius * c0 * st1;
+                double bx = cx + radius * c1 * ct0, bz = cz + radius * c1 * st0;
+                double ccx = cx + radius * c1 * ct1, ccz = cz + radius * c1 * st1;
 
                 if (i == 0) {
                     // Sul (cap inferior): fan a partir do polo sul
                     // CCW para fora: (southPole, B, C)
-                    out.add(tri(southPole, B, C));
+                    out.triangle(cx, sulY, cz, bx, y1, bz, ccx, y1, ccz);
                 } else if (i == stacks - 1) {
                     // Norte (cap superior): fan para o polo norte
                     // CCW para fora: (A, D, northPole)
-                    out.add(tri(A, D, northPole));
+                    out.triangle(ax, y0, az, dx, y0, dz, cx, norteY, cz);
                 } else {
                     // Faixas intermediárias: 2 triângulos por quad
                     // CCW para fora: (A,B,C) e (A,C,D)
-                    out.add(tri(A, B, C));
-                    out.add(tri(A, C, D));
+                    out.triangle(ax, y0, az, bx, y1, bz, ccx, y1, ccz);
+                    out.triangle(ax, y0, az, ccx, y1, ccz, dx, y0, dz);
                 }
+                ct0 = ct1;
+                st0 = st1;
             }
         }
-        return out;
-    }
-
-    /** Conversão paramétrica (φ,θ) para XYZ. Usa:
-     * x = cx + r * cosφ * cosθ
-     * y = cy + r * sinφ
-     * z = cz + r * cosφ * sinθ
-     *
-     * Aqui passamos cosφ e sinφ já calculados (c = cosφ, s = sinφ) para eficiência.
-     */
-    private static double[] sphPoint(double cx, double cy, double cz,
-                                     double r, double c, double s, double theta) {
-        double ct = Math.cos(theta), st = Math.sin(theta);
-        double x = cx + r * c * ct;
-        double y = cy + r * s;
-        double z = cz + r * c * st;
-        return new double[]{ x, y, z };
     }
 
     // ===========================
@@ -241,82 +229,97 @@ public final class Geometry {
 
         if (baseCenter == null || baseCenter.length < 3) throw new IllegalArgumentException("baseCenter inválido");
         if (topCenter == null  || topCenter.length  < 3) throw new IllegalArgumentException("topCenter inválido");
+        int sl = Math.max(3, slices), st = Math.max(1, stacks);
+        Lista out = new Lista((st * sl * 2) + (withCaps ? 2 * sl : 0));
+        makeCylinderTris(baseCenter[0], baseCenter[1], baseCenter[2],
+                topCenter[0], topCenter[1], topCenter[2],
+                radius, slices, stacks, withCaps, out);
+        return out.tris;
+    }
+
+    /**
+     * Igual a {@link #makeCylinderTris(double[], double[], double, int, int, boolean)}, direto
+     * no sink: a base (U, V, N) e os anéis ficam em variáveis locais, nenhum array por vértice.
+     */
+    public static void makeCylinderTris(
+            double bx, double by, double bz,
+            double tx, double ty, double tz,
+            double radius, int slices, int stacks, boolean withCaps, TriangleSink out) {
+
         if (radius <= 0) throw new IllegalArgumentException("radius deve ser > 0");
         if (slices < 3)  slices = 3;
         if (stacks < 1)  stacks = 1;
 
         // eixo do cilindro
-        double[] axis = sub(topCenter, baseCenter);
-        double  axisLen = Math.sqrt(dot(axis, axis));
+        double ax = tx - bx, ay = ty - by, az = tz - bz;
+        double axisLen = Math.sqrt(ax*ax + ay*ay + az*az);
         //if (axisLen == 0) throw new IllegalArgumentException("C0 e C1 coincidem");
-        double[] N = mul(axis, 1.0 / axisLen); // normalizado
-
-        // base ortonormal (U,V,N) com U×V = N
-        double[] U, V;
-        {
-            double[] ref = (Math.abs(N[1]) < 0.999) ? new double[]{0,1,0} : new double[]{1,0,0};
-            U = normalize(cross(N, ref));
-            V = cross(N, U); // já normal
-        }
+        double inv = 1.0 / axisLen;
+        double nx = ax * inv, ny = ay * inv, nz = az * inv; // normalizado
 
-        // pré-aloca
-        List<double[]> tris = new ArrayList<>( (stacks * slices * 2) + (withCaps ? 2*slices : 0) );
+        // base ortonormal (U,V,N) com U×V = N; referência +Y (ou +X se o eixo for quase Y)
+        double rx, ry;
+        if (Math.abs(ny) < 0.999) { rx = 0; ry = 1; } else { rx = 1; ry = 0; }
+        double ux = -nz*ry, uy = nz*rx, uz = nx*ry - ny*rx;   // N × ref (ref.z = 0)
+        double ul = Math.sqrt(ux*ux + uy*uy + uz*uz);
+        if (ul == 0) { ux = uy = uz = 0; } else { ux /= ul; uy /= ul; uz /= ul; }
+        double vx = ny*uz - nz*uy, vy = nz*ux - nx*uz, vz = nx*uy - ny*ux; // já normal
 
         // anéis ao longo do eixo
         for (int i = 0; i < stacks; i++) {
             double t0 = (double) i / (double) stacks;
             double t1 = (double) (i + 1) / (double) stacks;
 
-            double[] C0 = add(baseCenter, mul(axis, t0));
-            double[] C1 = add(baseCenter, mul(axis, t1));
+            double c0x = bx + ax*t0, c0y = by + ay*t0, c0z = bz + az*t0;
+            double c1x = bx + ax*t1, c1y = by + ay*t1, c1z = bz + az*t1;
 
+            double cos0 = 1, sin0 = 0;
             for (int j = 0; j < slices; j++) {
-                double th0 = 2.0 * Math.PI * j / slices;
                 double th1 = 2.0 * Math.PI * (j + 1) / slices;
-
-                double[] r0 = add(mul(U, Math.cos(th0) * radius), mul(V, Math.sin(th0) * radius));
-                double[] r1 = add(mul(U, Math.cos(th1) * radius), mul(V, Math.sin(th1) * radius));
-
-                double[] A = add(C0, r0);
-                double[] B = add(C1, r0);
-                double[] C = add(C1, r1);
-                double[] D = add(C0, r1);
-
-                // duas faces por "quad" – CCW para fora
-                tris.add(tri(A, C, B));
-                tris.add(tri(A, D, C));
+                double cos1 = Math.cos(th1), sin1 = Math.sin(th1);
+
+                double r0x = ux*(cos0*radius) + vx*(sin0*radius);
+                double r0y = uy*(cos0*radius) + vy*(sin0*radius);
+                double r0z = uz*(cos0*radius) + vz*(sin0*radius);
+                double r1x = ux*(cos1*radius) + vx*(sin1*radius);
+                double r1y = uy*(cos1*radius) + vy*(sin1*radius);
+                double r1z = uz*(cos1*radius) + vz*(sin1*radius);
+
+                // A = C0+r0, B = C1+r0, C = C1+r1, D = C0+r1
+                // duas faces por "quad" – CCW para fora: (A,C,B) e (A,D,C)
+                out.triangle(c0x+r0x, c0y+r0y, c0z+r0z, c1x+r1x, c1y+r1y, c1z+r1z, c1x+r0x, c1y+r0y, c1z+r0z);
+                out.triangle(c0x+r0x, c0y+r0y, c0z+r0z, c0x+r1x, c0y+r1y, c0z+r1z, c1x+r1x, c1y+r1y, c1z+r1z);
+                cos0 = cos1;
+                sin0 = sin1;
             }
         }
 
         if (withCaps) {
-            // tampa inferior (base) — normal para fora é -N
-            // CCW vista de fora: (rim_j, C_base, rim_j1)
-            double[] Cb = baseCenter;
-            for (int j = 0; j < slices; j++) {
-                double th0 = 2.0 * Math.PI * j / slices;
-                double th1 = 2.0 * Math.PI * (j + 1) / slices;
-                double[] r0 = add(mul(U, Math.cos(th0) * radius), mul(V, Math.sin(th0) * radius));
-                double[] r1 = add(mul(U, Math.cos(th1) * radius), mul(V, Math.sin(th1) * radius));
-                double[] P0 = add(Cb, r0);
-                double[] P1 = add(Cb, r1);
-                tris.add(tri(P0, Cb, P1)); // ordem dá normal ~ -N
-            }
-
-            // tampa superior (topo) — normal para fora é +N
-            // CCW vista de fora: (rim_j, rim_j1, C_top)
-            double[] Ct = topCenter;
-            for (int j = 0; j < slices; j++) {
-                double th0 = 2.0 * Math.PI * j / slices;
-                double th1 = 2.0 * Math.PI * (j + 1) / slices;
-                double[] r0 = add(mul(U, Math.cos(th0) * radius), mul(V, Math.sin(th0) * radius));
-                double[] r1 = add(mul(U, Math.cos(th1) * radius), mul(V, Math.sin(th1) * radius));
-                double[] P0 = add(Ct, r0);
-                double[] P1 = add(Ct, r1);
-                tris.add(tri(P0, P1, Ct)); // ordem dá normal ~ +N
-            }
+            // tampa inferior (base) — normal para fora é -N; CCW vista de fora: (rim_j, C_base, rim_j1)
+            tampa(bx, by, bz, ux, uy, uz, vx, vy, vz, radius, slices, false, out);
+            // tampa superior (topo) — normal para fora é +N; CCW vista de fora: (rim_j, rim_j1, C_top)
+            tampa(tx, ty, tz, ux, uy, uz, vx, vy, vz, radius, slices, true, out);
         }
+    }
 
-        return tris;
+    private static void tampa(double cx, double cy, double cz,
+                              double ux, double uy, double uz, double vx, double vy, double vz,
+                              double radius, int slices, boolean topo, TriangleSink out) {
+        double cos0 = 1, sin0 = 0;
+        for (int j = 0; j < slices; j++) {
+            double th1 = 2.0 * Math.PI * (j + 1) / slices;
+            double cos1 = Math.cos(th1), sin1 = Math.sin(th1);
+            double p0x = cx + (ux*(cos0*radius) + vx*(sin0*radius));
+            double p0y = cy + (uy*(cos0*radius) + vy*(sin0*radius));
+            double p0z = cz + (uz*(cos0*radius) + vz*(sin0*radius));
+            double p1x = cx + (ux*(cos1*radius) + vx*(sin1*radius));
+            double p1y = cy + (uy*(cos1*radius) + vy*(sin1*radius));
+            double p1z = cz + (uz*(cos1*radius) + vz*(sin1*radius));
+            if (topo) out.triangle(p0x, p0y, p0z, p1x, p1y, p1z, cx, cy, cz);
+            else      out.triangle(p0x, p0y, p0z, cx, cy, cz, p1x, p1y, p1z);
+            cos0 = cos1;
+            sin0 = sin1;
+        }
     }
 
     /**
@@ -328,22 +331,4 @@ public final class Geometry {
         double[] top = new double[]{ baseCenter[0], baseCenter[1] + heightY, baseCenter[2] };
         return makeCylinderTris(baseCenter, top, radius, slices, stacks, withCaps);
     }
-
-    // ---- helpers vetoriais (reutiliza padrão da classe) ----
-    private static double[] add(double[] a, double[] b) {
-        return new double[]{ a[0]+b[0], a[1]+b[1], a[2]+b[2] };
-    }
-
-    private static double[] mul(double[] a, double s) {
-        return new double[]{ a[0]*s, a[1]*s, a[2]*s };
-    }
-
-
-    private static double[] normalize(double[] v) {
-        double len = Math.sqrt(dot(v,v));
-        if (len == 0) return new double[]{0,0,0};
-        return new double[]{ v[0]/len, v[1]/len, v[2]/len };
-    }
-
-
 }
@@ -0,0 +1,500 @@
+package com.example.filamenttestjava.filament.app;
+
+import android.content.res.AssetManager;
+import android.os.Handler;
+
+import com.google.android.filament.Engine;
+import com.google.android.filament.EntityManager;
+import com.google.android.filament.IndexBuffer;
+import com.google.android.filament.InstanceBuffer;
+import com.google.android.filament.Material;
+import com.google.android.filament.MaterialInstance;
+import com.google.android.filament.MathUtils;
+import com.google.android.filament.RenderableManager;
+import com.google.android.filament.Scene;
+import com.google.android.filament.VertexBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Primitivas repetidas (marcadores, pilões de virada, cilindros) desenhadas por instância em
+ * vez de assadas na malha da trilha: um molde por forma ({@link #CUBO}, {@link #ESFERA},
+ * {@link #CILINDRO}, em tamanho unitário, VB/IB compartilhados) e, por instância, só uma
+ * mat4 de transformação (64 bytes) num {@link InstanceBuffer}.
+ *
+ * As instâncias vão em lotes de até {@link #POR_LOTE} por forma e cor: cada lote é um
+ * renderable instanciado com um MaterialInstance do {@code lit.filamat} (a cor é o
+ * baseColor dele), então o material não precisa de nada além do lit que já vai nos assets.
+ * Mover uma instância reenvia só a matriz dela; recolorir muda a instância de lote. As
+ * instâncias vivas ficam contíguas no começo do lote (remover traz a última para o buraco) e
+ * o renderable é refeito com a contagem exata, sem instância escondida por matriz zerada; o
+ * lote vazio sai da cena. Os ids devolvidos não mudam com essas trocas.
+ *
+ * Como na {@link TrackLod}, add/move/cor/remove só gravam nas sombras de CPU; as matrizes
+ * sujas e a contagem de cada lote tocado saem em {@link #flush}, numa postagem só: chame no
+ * fim de cada lote de mudanças (o renderable é refeito uma vez por lote, não por instância).
+ *
+ * Coordenadas de mundo em double, como na {@link TrackLod}: cada lote tem uma origem (a da
+ * primeira instância) e as matrizes locais são relativas a ela; o renderable fica em
+ * (origem do lote - origem de render), atualizado em {@link #setOrigemRender}.
+ *
+ * Threads: add/move/cor/remove/{@link #flush} na thread de geometria (as chamadas ao Filament
+ * são postadas no Handler do Engine); {@link #setOrigemRender} e {@link #destroy} na thread
+ * do Engine.
+ */
+public class InstancedPrimitives {
+
+    public static final int CUBO = 0, ESFERA = 1, CILINDRO = 2;
+    private static final int FORMAS = 3;
+
+    /** Instâncias por lote (tamanho do InstanceBuffer). */
+    public static final int POR_LOTE = 256;
+
+    static final String MATERIAL = "materials/lit.filamat";
+
+    private final Engine engine;
+    private final Handler engineHandler;
+    private final Scene scene;
+    private final Material material;
+    private final Molde[] moldes = new Molde[FORMAS];
+
+    /** Lotes de cada (forma, cor), na ordem de criação (thread de geometria). */
+    private final HashMap<Long, ArrayList<Lote>> porChave = new HashMap<>();
+    /** Lotes com mudanças desde o último {@link #flush} (thread de geometria). */
+    private final ArrayList<Lote> tocados = new ArrayList<>();
+    /** Lotes já criados no Engine, preenchida só em {@link #criaLote} (thread do Engine). */
+    private final ArrayList<Lote> criados = new ArrayList<>();
+
+    // id → lote/slot (o slot muda quando o lote se compacta); ids livres para reuso
+    private Lote[] loteDoId = new Lote[64];
+    private int[] slotDoId = new int[64];
+    private int proximoId = 0;
+    private int[] livres = new int[16];
+    private int quantosLivres = 0;
+
+    private double origemRenderX = 0, origemRenderY = 0;
+    // rascunhos (thread de geometria)
+    private final float[] matriz = new float[16];
+    private final float[] base = new float[9];
+
+    private static final class Lote {
+        final int forma;
+        final long chave;
+        final float r, g, b;
+        final double ox, oy, oz;
+        final float[] transforms = new float[16 * POR_LOTE];
+        final int[] idDoSlot = new int[POR_LOTE];
+        /** Instâncias vivas: slots [0, usados). */
+        int usados = 0;
+        // faixa de slots com matriz ainda não enviada (thread de geometria)
+        boolean tocado = false;
+        int sujo0 = Integer.MAX_VALUE, sujo1 = 0;
+        int entity;
+        InstanceBuffer buffer;
+        MaterialInstance mi;
+        /** Instâncias no renderable atual (thread do Engine); 0 = fora da cena. */
+        int desenhados = 0;
+
+        Lote(int forma, long chave, float r, float g, float b, double ox, double oy, double oz) {
+            this.forma = forma;
+            this.chave = chave;
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.ox = ox;
+            this.oy = oy;
+            this.oz = oz;
+        }
+    }
+
+    /** Chame na thread do Engine (carrega o material e sobe os moldes). */
+    public InstancedPrimitives(Engine engine, Handler engineHandler, Scene scene, AssetManager assets) {
+        this.engine = engine;
+        this.engineHandler = engineHandler;
+        this.scene = scene;
+        this.material = MaterialProvider.loadFromAssets(engine, assets, MATERIAL);
+
+        Molde cubo = new Molde();
+        Geometry.makeUnitCubeTris(0.5, 0, 0, 0, cubo);              // lado 1
+        Molde esfera = new Molde();
+        Geometry.makeUvSphereTris(0, 0, 0, 1, 8, 12, esfera);       // raio 1
+        Molde cilindro = new Molde();
+        SweptTube tubo = new SweptTube(1, 8);                       // raio 1, z de 0 a 1
+        tubo.addPoint(0, 0, 0, cilindro);
+        tubo.addPoint(0, 0, 1, cilindro);
+        tubo.finish(cilindro);
+        moldes[CUBO] = cubo;
+        moldes[ESFERA] = esfera;
+        moldes[CILINDRO] = cilindro;
+        for (Molde m : moldes) m.sobe(engine);
+    }
+
+    /** Cubo de lado {@code lado} centrado em (x, y, z). */
+    public int addCube(double x, double y, double z, float lado, double[] cor) {
+        escala(lado);
+        return add(CUBO, x, y, z, cor);
+    }
+
+    /** Esfera de raio {@code raio} centrada em (x, y, z). */
+    public int addSphere(double x, double y, double z, float raio, double[] cor) {
+        escala(raio);
+        return add(ESFERA, x, y, z, cor);
+    }
+
+    /** Cilindro de raio {@code raio} de A até B (tampado nas duas pontas). */
+    public int addCylinder(double ax, double ay, double az, double bx, double by, double bz,
+                           float raio, double[] cor) {
+        eixo(bx - ax, by - ay, bz - az, raio);
+        return add(CILINDRO, ax, ay, az, cor);
+    }
+
+    /** Move a instância para (x, y, z) mantendo escala/orientação: só a matriz dela sobe. */
+    public void moveTo(int id, double x, double y, double z) {
+        Lote l = lote(id);
+        int s = slotDoId[id];
+        System.arraycopy(l.transforms, s * 16, matriz, 0, 16);
+        matriz[12] = (float) (x - l.ox);
+        matriz[13] = (float) (y - l.oy);
+        matriz[14] = (float) (z - l.oz);
+        gravaTransform(l, s, matriz);
+    }
+
+    /** Reposiciona um cilindro de A até B (mesma instância, novo eixo). */
+    public void setCylinder(int id, double ax, double ay, double az,
+                            double bx, double by, double bz, float raio) {
+        Lote l = lote(id);
+        if (l.forma != CILINDRO) throw new IllegalArgumentException("instância " + id + " não é cilindro");
+        eixo(bx - ax, by - ay, bz - az, raio);
+        monta(l, ax, ay, az);
+        gravaTransform(l, slotDoId[id], matriz);
+    }
+
+    /** Recolore: a instância passa para o lote da nova cor (mesmo id, mesma matriz de mundo). */
+    public void setColor(int id, double[] cor) {
+        Lote de = lote(id);
+        long chave = chave(de.forma, cor);
+        if (chave == de.chave) return;
+        int s = slotDoId[id];
+        float[] m = de.transforms;
+        for (int k = 0; k < 9; k++) base[k] = m[s * 16 + (k / 3) * 4 + k % 3];
+        double x = de.ox + m[s * 16 + 12], y = de.oy + m[s * 16 + 13], z = de.oz + m[s * 16 + 14];
+        tira(de, s);
+        poe(id, de.forma, chave, x, y, z, cor);
+    }
+
+    /** Tira a instância do lote (a última do lote ocupa o slot) e libera o id. */
+    public void remove(int id) {
+        Lote l = lote(id);
+        tira(l, slotDoId[id]);
+        loteDoId[id] = null;
+        if (quantosLivres == livres.length) livres = Arrays.copyOf(livres, livres.length * 2);
+        livres[quantosLivres++] = id;
+    }
+
+    /** Nova origem de render (thread do Engine): só os renderables se deslocam. */
+    public void setOrigemRender(double x, double y) {
+        if (x == origemRenderX && y == origemRenderY) return;
+        origemRenderX = x;
+        origemRenderY = y;
+        for (Lote l : criados) aplicaTransformLote(l);
+    }
+
+    /**
+     * Fim do lote de mudanças: as matrizes sujas e a contagem de cada lote tocado vão para a
+     * thread do Engine numa postagem só.
+     */
+    public void flush() {
+        int k = tocados.size();
+        if (k == 0) return;
+        Lote[] ls = new Lote[k];
+        float[][] matrizes = new float[k][];
+        int[] de = new int[k], contagens = new int[k];
+        for (int i = 0; i < k; i++) {
+            Lote l = tocados.get(i);
+            ls[i] = l;
+            if (l.sujo0 < l.sujo1) {
+                matrizes[i] = Arrays.copyOfRange(l.transforms, l.sujo0 * 16, l.sujo1 * 16);
+                de[i] = l.sujo0;
+            }
+            contagens[i] = l.usados;
+            l.tocado = false;
+            l.sujo0 = Integer.MAX_VALUE;
+            l.sujo1 = 0;
+        }
+        tocados.clear();
+        engineHandler.post(() -> {
+            for (int i = 0; i < k; i++) {
+                if (matrizes[i] != null) ls[i].buffer.setLocalTransforms(matrizes[i], de[i]);
+                redesenha(ls[i], contagens[i]);
+            }
+        });
+    }
+
+    /** Remove da cena e libera tudo (thread do Engine). */
+    public void destroy() {
+        EntityManager em = EntityManager.get();
+        for (Lote l : criados) {
+            if (l.desenhados > 0) scene.removeEntity(l.entity);
+            engine.destroyEntity(l.entity);
+            em.destroy(l.entity);
+            engine.destroyInstanceBuffer(l.buffer);
+            engine.destroyMaterialInstance(l.mi);
+        }
+        criados.clear();
+        for (Molde m : moldes) {
+            engine.destroyVertexBuffer(m.vb);
+            engine.destroyIndexBuffer(m.ib);
+        }
+        engine.destroyMaterial(material);
+    }
+
+    // -------------------- helpers --------------------
+
+    private Lote lote(int id) {
+        Lote l = id >= 0 && id < proximoId ? loteDoId[id] : null;
+        if (l == null) throw new IllegalArgumentException("instância " + id + " não existe");
+        return l;
+    }
+
+    /** Instância nova com a base 3x3 já em {@link #base}. */
+    private int add(int forma, double x, double y, double z, double[] cor) {
+        int id;
+        if (quantosLivres > 0) {
+            id = livres[--quantosLivres];
+        } else {
+            id = proximoId++;
+            if (id == loteDoId.length) {
+                loteDoId = Arrays.copyOf(loteDoId, id * 2);
+                slotDoId = Arrays.copyOf(slotDoId, id * 2);
+            }
+        }
+        poe(id, forma, chave(forma, cor), x, y, z, cor);
+        return id;
+    }
+
+    /** Põe o id no fim de um lote (forma, cor) com vaga, com a base 3x3 de {@link #base}. */
+    private void poe(int id, int forma, long chave, double x, double y, double z, double[] cor) {
+        ArrayList<Lote> daChave = porChave.get(chave);
+        if (daChave == null) {
+            daChave = new ArrayList<>();
+            porChave.put(chave, daChave);
+        }
+        Lote l = null;
+        for (Lote c : daChave) {
+            if (c.usados < POR_LOTE) { l = c; break; }
+        }
+        if (l == null) {
+            l = new Lote(forma, chave, (float) cor[0], (float) cor[1], (float) cor[2], x, y, z);
+            daChave.add(l);
+            Lote novo = l;
+            // postado antes do flush que usa o lote: o Handler mantém a ordem
+            engineHandler.post(() -> criaLote(novo));
+        }
+        int s = l.usados++;
+        l.idDoSlot[s] = id;
+        loteDoId[id] = l;
+        slotDoId[id] = s;
+        monta(l, x, y, z);
+        gravaTransform(l, s, matriz);
+    }
+
+    /** Tira o slot {@code s}: a última instância viva vai para ele e o lote encolhe. */
+    private void tira(Lote l, int s) {
+        int ultimo = l.usados - 1;
+        if (s != ultimo) {
+            System.arraycopy(l.transforms, ultimo * 16, l.transforms, s * 16, 16);
+            int movido = l.idDoSlot[ultimo];
+            l.idDoSlot[s] = movido;
+            slotDoId[movido] = s;
+            suja(l, s);
+        }
+        l.usados = ultimo;
+        toca(l);
+    }
+
+    /** Chave do lote: forma + cor em 8 bits por canal (cores iguais à vista dividem o lote). */
+    private static long chave(int forma, double[] cor) {
+        long rgb = (u8(cor[0]) << 16) | (u8(cor[1]) << 8) | u8(cor[2]);
+        return ((long) forma << 24) | rgb;
+    }
+
+    private static long u8(double v) {
+        return Math.round(Math.max(0, Math.min(1, v)) * 255);
+    }
+
+    private void escala(float e) {
+        Arrays.fill(base, 0f);
+        base[0] = base[4] = base[8] = e;
+    }
+
+    /** Base de um cilindro: colunas U·r, V·r e o eixo inteiro (o molde vai de z = 0 a 1). */
+    private void eixo(double ex, double ey, double ez, float raio) {
+        double len = Math.sqrt(ex*ex + ey*ey + ez*ez);
+        double nx = 0, ny = 0, nz = 1;
+        if (len > 0) { nx = ex / len; ny = ey / len; nz = ez / len; }
+        double rx = 0, rz = 1;
+        if (Math.abs(nz) > 0.999) { rx = 1; rz = 0; }
+        // U = ref × N (ref.y = 0), V = N × U
+        double ux = -rz*ny, uy = rz*nx - rx*nz, uz = rx*ny;
+        double ul = Math.sqrt(ux*ux + uy*uy + uz*uz);
+        ux /= ul; uy /= ul; uz /= ul;
+        double vx = ny*uz - nz*uy, vy = nz*ux - nx*uz, vz = nx*uy - ny*ux;
+        base[0] = (float) (ux * raio); base[1] = (float) (uy * raio); base[2] = (float) (uz * raio);
+        base[3] = (float) (vx * raio); base[4] = (float) (vy * raio); base[5] = (float) (vz * raio);
+        base[6] = (float) ex;          base[7] = (float) ey;          base[8] = (float) ez;
+    }
+
+    /** {@link #matriz} = base 3x3 + translação relativa à origem do lote (coluna-maior). */
+    private void monta(Lote l, double x, double y, double z) {
+        float[] m = matriz;
+        m[0] = base[0]; m[1] = base[1]; m[2]  = base[2]; m[3]  = 0;
+        m[4] = base[3]; m[5] = base[4]; m[6]  = base[5]; m[7]  = 0;
+        m[8] = base[6]; m[9] = base[7]; m[10] = base[8]; m[11] = 0;
+        m[12] = (float) (x - l.ox);
+        m[13] = (float) (y - l.oy);
+        m[14] = (float) (z - l.oz);
+        m[15] = 1;
+    }
+
+    private void gravaTransform(Lote l, int s, float[] m) {
+        System.arraycopy(m, 0, l.transforms, s * 16, 16);
+        suja(l, s);
+    }
+
+    /** Marca o slot {@code s} para o próximo {@link #flush}. */
+    private void suja(Lote l, int s) {
+        if (s < l.sujo0) l.sujo0 = s;
+        if (s + 1 > l.sujo1) l.sujo1 = s + 1;
+        toca(l);
+    }
+
+    private void toca(Lote l) {
+        if (l.tocado) return;
+        l.tocado = true;
+        tocados.add(l);
+    }
+
+    // ---- thread do Engine ----
+
+    private void criaLote(Lote l) {
+        // as matrizes chegam pelo flush (o array do lote é da thread de geometria)
+        l.buffer = new InstanceBuffer.Builder(POR_LOTE).build(engine);
+        l.mi = material.createInstance();
+        l.mi.setParameter("baseColor", l.r, l.g, l.b);
+        l.mi.setParameter("metallic", 0.5f);
+        l.mi.setParameter("roughness", 0.1f);
+        l.entity = EntityManager.get().create();
+        TransformCompat.ensure(engine, l.entity);
+        aplicaTransformLote(l);
+        criados.add(l);
+    }
+
+    /**
+     * Renderable do lote com exatamente {@code n} instâncias (as vivas, slots [0, n)); com
+     * zero o lote sai da cena. O InstanceBuffer é o mesmo: só o renderable é refeito.
+     */
+    private void redesenha(Lote l, int n) {
+        if (n == l.desenhados) return;
+        RenderableManager rm = engine.getRenderableManager();
+        if (rm.hasComponent(l.entity)) rm.destroy(l.entity);
+        if (n == 0) {
+            scene.removeEntity(l.entity);
+            l.desenhados = 0;
+            return;
+        }
+        Molde m = moldes[l.forma];
+        new RenderableManager.Builder(1)
+                .geometry(0, RenderableManager.PrimitiveType.TRIANGLES, m.vb, m.ib, 0, m.indices)
+                .material(0, l.mi)
+                .instances(n, l.buffer)
+                // instâncias espalhadas pela trilha: o AABB do molde não vale para o lote
+                .culling(false)
+                .build(engine, l.entity);
+        if (l.desenhados == 0) scene.addEntity(l.entity);
+        l.desenhados = n;
+    }
+
+    private void aplicaTransformLote(Lote l) {
+        TransformCompat.setTranslation(engine, l.entity,
+                (float) (l.ox - origemRenderX), (float) (l.oy - origemRenderY), (float) l.oz);
+    }
+
+    /**
+     * Molde de uma forma: vértices únicos (POSITION + TANGENTS, sem cor: ela vem do
+     * material do lote) e índices USHORT, montados uma vez pelo {@link MeshSink}.
+     */
+    private static final class Molde implements MeshSink {
+        private static final int STRIDE = 7 * 4;
+
+        private float[] v = new float[64 * 7];
+        private short[] i = new short[64 * 3];
+        private int vertices = 0, indices = 0;
+        private final float[] tangente = new float[3], bitangente = new float[3], q = new float[4];
+        VertexBuffer vb;
+        IndexBuffer ib;
+
+        @Override
+        public int vertex(double x, double y, double z, float[] q) {
+            if ((vertices + 1) * 7 > v.length) v = Arrays.copyOf(v, v.length * 2);
+            int o = vertices * 7;
+            v[o] = (float) x; v[o + 1] = (float) y; v[o + 2] = (float) z;
+            v[o + 3] = q[0]; v[o + 4] = q[1]; v[o + 5] = q[2]; v[o + 6] = q[3];
+            return vertices++;
+        }
+
+        @Override
+        public void triangle(int a, int b, int c) {
+            if (indices + 3 > i.length) i = Arrays.copyOf(i, i.length * 2);
+            i[indices++] = (short) a;
+            i[indices++] = (short) b;
+            i[indices++] = (short) c;
+        }
+
+        /** Triângulo plano: três vértices com a normal da face. */
+        @Override
+        public void triangle(double x0, double y0, double z0,
+                             double x1, double y1, double z1,
+                             double x2, double y2, double z2) {
+            double ux = x1 - x0, uy = y1 - y0, uz = z1 - z0;
+            double wx = x2 - x0, wy = y2 - y0, wz = z2 - z0;
+            double nx = uy*wz - uz*wy, ny = uz*wx - ux*wz, nz = ux*wy - uy*wx;
+            double len = Math.sqrt(nx*nx + ny*ny + nz*nz);
+            if (len == 0) return;
+            float fx = (float) (nx / len), fy = (float) (ny / len), fz = (float) (nz / len);
+            DynamicTriangleMesh.makeTangentBasis(fx, fy, fz, tangente, bitangente);
+            MathUtils.packTangentFrame(tangente[0], tangente[1], tangente[2],
+                    bitangente[0], bitangente[1], bitangente[2], fx, fy, fz, q);
+            int a = vertex(x0, y0, z0, q);
+            int b = vertex(x1, y1, z1, q);
+            int c = vertex(x2, y2, z2, q);
+            triangle(a, b, c);
+        }
+
+        /** Cria VB/IB e envia (thread do Engine). */
+        void sobe(Engine engine) {
+            vb = new VertexBuffer.Builder()
+                    .bufferCount(1)
+                    .vertexCount(vertices)
+                    .attribute(VertexBuffer.VertexAttribute.POSITION, 0,
+                            VertexBuffer.AttributeType.FLOAT3, 0, STRIDE)
+                    .attribute(VertexBuffer.VertexAttribute.TANGENTS, 0,
+                            VertexBuffer.AttributeType.FLOAT4, 3 * 4, STRIDE)
+                    .build(engine);
+            ib = new IndexBuffer.Builder()
+                    .indexCount(indices)
+                    .bufferType(IndexBuffer.Builder.IndexType.USHORT)
+                    .build(engine);
+
+            ByteBuffer vbuf = ByteBuffer.allocateDirect(vertices * STRIDE).order(ByteOrder.nativeOrder());
+            vbuf.asFloatBuffer().put(v, 0, vertices * 7);
+            ByteBuffer ibuf = ByteBuffer.allocateDirect(indices * 2).order(ByteOrder.nativeOrder());
+            ibuf.asShortBuffer().put(i, 0, indices);
+            vb.setBufferAt(engine, 0, vbuf);
+            ib.setBuffer(engine, ibuf);
+        }
+    }
+}
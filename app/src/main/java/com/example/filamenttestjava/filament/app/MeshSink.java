@@ -0,0 +1,39 @@
+package com.example.filamenttestjava.filament.app;
+
+/**
+ * {@link TriangleSink} que também aceita vértices com normal própria: o gerador entrega o
+ * vértice (posição de mundo em double + frame tangente em quat, como o Filament espera) e
+ * depois os triângulos por índice. É o que permite normais suaves por vértice (ex.:
+ * {@link SweptTube}) em vez da normal plana que o {@link #triangle(double, double, double,
+ * double, double, double, double, double, double)} calcula.
+ *
+ * Os índices devolvidos por {@link #vertex} continuam valendo enquanto {@link #generation}
+ * não mudar: um gerador pode guardar os ids de um anel e usá-los de novo no segmento
+ * seguinte, em outro lote. Antes de cada grupo de vértices + triângulos que precisa ficar
+ * junto, o gerador chama {@link #reserve}; se a geração mudou (ex.: a malha trocou de
+ * página), os ids antigos não valem mais e os vértices compartilhados têm de ser emitidos
+ * de novo.
+ *
+ * Sinks sem lote nem página (ids permanentes, ex.: o molde das primitivas instanciadas) não
+ * precisam sobrescrever {@link #reserve} nem {@link #generation}.
+ */
+public interface MeshSink extends TriangleSink {
+
+    /** Acrescenta um vértice; {@code q} = quat do frame tangente (x, y, z, w). Devolve o índice. */
+    int vertex(double x, double y, double z, float[] q);
+
+    /** Triângulo CCW (normal para fora) com vértices da geração atual. */
+    void triangle(int a, int b, int c);
+
+    /**
+     * Os próximos até {@code vertices} vértices e {@code triangles} triângulos vão juntos
+     * (mesma página): abre espaço agora, o que pode mudar a {@link #generation}.
+     */
+    default void reserve(int vertices, int triangles) {
+    }
+
+    /** Muda sempre que os índices devolvidos antes por {@link #vertex} deixam de valer. */
+    default int generation() {
+        return 0;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.filamenttestjava.filament.app;
+
+import com.google.android.filament.MathUtils;
+
+/**
+ * Fita horizontal varrida ao longo da trilha: o nível de detalhe de longe do tubo
+ * ({@link SweptTube}). Cada ponto vira um par de vértices nas laterais (largura 2·raio,
+ * sempre na horizontal) e cada segmento uma faixa com as duas faces, 4 triângulos, contra
+ * 2·fatias do tubo. Sem tampas.
+ *
+ * Mesmo esquema incremental do {@link SweptTube}: o par de um ponto fica na bissetriz e só
+ * sai quando o próximo ponto chega; {@link #finish} fecha o último segmento. Também como no
+ * tubo, o par de trás é o par da frente do segmento anterior e só sai de novo quando a
+ * malha trocou de geração (ver {@link MeshSink}).
+ */
+public class SweptRibbon {
+
+    private final double raio;
+    private final float[] q = new float[4];
+    private int[] idsA = new int[4], idsB = new int[4];
+    /** Onde (malha + geração) os ids de {@link #idsA} valem; null = par A ainda não emitido. */
+    private MeshSink sinkA;
+    private int geracaoA;
+
+    private int pontos = 0;
+    // par pronto: centro, lateral (horizontal) e tangente
+    private double ax, ay, az, asx, asy, atx, aty, atz;
+    // ponto pendente e direção do segmento que chega nele
+    private double bx, by, bz;
+    private double dx, dy, dz;
+
+    public SweptRibbon(double raio) {
+        if (raio <= 0) throw new IllegalArgumentException("raio deve ser > 0");
+        this.raio = raio;
+    }
+
+    /** Triângulos por segmento (as duas faces). */
+    public int getTrianglesPerSegment() { return 4; }
+
+    public boolean isEmpty() { return pontos == 0; }
+
+    /** Igual a {@link SweptTube#addPoint}: a partir do terceiro ponto emite o segmento anterior. */
+    public void addPoint(double x, double y, double z, MeshSink out) {
+        if (pontos == 0) {
+            bx = x; by = y; bz = z;
+            pontos = 1;
+            sinkA = null;
+            return;
+        }
+        double ex = x - bx, ey = y - by, ez = z - bz;
+        double len = Math.sqrt(ex*ex + ey*ey + ez*ez);
+        if (len < 1e-6) return;
+        ex /= len; ey /= len; ez /= len;
+
+        if (pontos == 1) {
+            ax = bx; ay = by; az = bz;
+            atx = ex; aty = ey; atz = ez;
+            asx = 1; asy = 0;
+            lateral(ex, ey);
+            asx = latX; asy = latY;
+        } else {
+            double tx = dx + ex, ty = dy + ey, tz = dz + ez;
+            double tl = Math.sqrt(tx*tx + ty*ty + tz*tz);
+            if (tl < 1e-6) { tx = dx; ty = dy; tz = dz; } else { tx /= tl; ty /= tl; tz /= tl; }
+            avancaPar(tx, ty, tz, out);
+        }
+        bx = x; by = y; bz = z;
+        dx = ex; dy = ey; dz = ez;
+        pontos++;
+    }
+
+    /** Fecha a fita com o último segmento. */
+    public void finish(MeshSink out) {
+        if (pontos >= 2) avancaPar(dx, dy, dz, out);
+        pontos = 0;
+        sinkA = null;
+    }
+
+    public void reset() {
+        pontos = 0;
+        sinkA = null;
+    }
+
+    // -------------------- helpers --------------------
+
+    private double latX, latY;
+
+    /** Lateral horizontal Z × T (à esquerda de quem segue a trilha); na vertical mantém a anterior. */
+    private void lateral(double tx, double ty) {
+        double l = Math.sqrt(tx*tx + ty*ty);
+        if (l < 1e-6) { latX = asx; latY = asy; return; }
+        latX = -ty / l;
+        latY = tx / l;
+    }
+
+    private void avancaPar(double tx, double ty, double tz, MeshSink out) {
+        lateral(tx, ty);
+        double sx = latX, sy = latY;
+
+        out.reserve(8, 4);
+        if (sinkA != out || geracaoA != out.generation()) {
+            par(ax, ay, az, asx, asy, atx, aty, atz, idsA, out);
+        }
+        par(bx, by, bz, sx, sy, tx, ty, tz, idsB, out);
+        // face de cima (normal T × S): (A_esq, A_dir, B_dir), (A_esq, B_dir, B_esq); embaixo ao contrário
+        out.triangle(idsA[0], idsA[1], idsB[1]);
+        out.triangle(idsA[0], idsB[1], idsB[0]);
+        out.triangle(idsA[2], idsB[3], idsA[3]);
+        out.triangle(idsA[2], idsB[2], idsB[3]);
+        int[] t = idsA;
+        idsA = idsB;
+        idsB = t;
+        sinkA = out;
+        geracaoA = out.generation();
+
+        ax = bx; ay = by; az = bz;
+        asx = sx; asy = sy;
+        atx = tx; aty = ty; atz = tz;
+    }
+
+    /** ids = {esq cima, dir cima, esq baixo, dir baixo}: cada face com a própria normal. */
+    private void par(double cx, double cy, double cz, double sx, double sy,
+                     double tx, double ty, double tz, int[] ids, MeshSink out) {
+        // N = T × S (S.z = 0), B = N × T
+        double nx = -tz*sy, ny = tz*sx, nz = tx*sy - ty*sx;
+        double nl = Math.sqrt(nx*nx + ny*ny + nz*nz);
+        nx /= nl; ny /= nl; nz /= nl;
+        double bxx = ny*tz - nz*ty, byy = nz*tx - nx*tz, bzz = nx*ty - ny*tx;
+        double lx = cx + sx*raio, ly = cy + sy*raio, rx = cx - sx*raio, ry = cy - sy*raio;
+
+        MathUtils.packTangentFrame((float) tx, (float) ty, (float) tz,
+                (float) bxx, (float) byy, (float) bzz, (float) nx, (float) ny, (float) nz, q);
+        ids[0] = out.vertex(lx, ly, cz, q);
+        ids[1] = out.vertex(rx, ry, cz, q);
+        MathUtils.packTangentFrame((float) tx, (float) ty, (float) tz,
+                (float) -bxx, (float) -byy, (float) -bzz, (float) -nx, (float) -ny, (float) -nz, q);
+        ids[2] = out.vertex(lx, ly, cz, q);
+        ids[3] = out.vertex(rx, ry, cz, q);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.filamenttestjava.filament.app;
+
+import com.google.android.filament.MathUtils;
+
+/**
+ * Tubo contínuo varrido ao longo da trilha: um único anel de {@code fatias} vértices é
+ * arrastado de ponto em ponto e cada anel é compartilhado pelos dois segmentos vizinhos.
+ * Cada segmento vira uma só faixa (2·fatias triângulos) e só as pontas do tubo têm tampa,
+ * contra os 8 stacks + 2 tampas do {@link Geometry#makeCylinderTris} por segmento (~9x menos
+ * triângulos, sem a costura entre cilindros).
+ *
+ * O anel de um ponto fica no plano da bissetriz entre o segmento que chega e o que sai, e
+ * o frame (U, V) é transportado de anel para anel (projeção do U anterior), então o tubo não
+ * torce. As normais são analíticas por vértice (radial, suave) e vão como quat do frame
+ * tangente, pelo {@link MeshSink}.
+ *
+ * Incremental e sem alocação: {@link #addPoint} fecha o segmento anterior (o anel de um
+ * ponto só fica definido quando se conhece o próximo), {@link #finish} fecha o último com a
+ * tampa final. Cada segmento emite só o anel novo ({@code fatias} vértices) e reaproveita os
+ * ids do anel anterior; o anterior só é emitido de novo quando os ids dele deixam de valer
+ * no sink (outro sink, ou {@link MeshSink#generation} mudou, ex.: página nova).
+ * Uma instância por tubo, usada só na thread de geometria.
+ */
+public class SweptTube {
+
+    private final double raio;
+    private final int fatias;
+    // cos/sin de cada fatia (o anel fecha repetindo a fatia 0)
+    private final double[] cos, sin;
+    private final float[] q = new float[4];
+    // ids do anel pronto (A) e do novo (B); trocam de papel a cada segmento
+    private int[] idsA, idsB;
+    // onde os ids de A valem: sink e geração em que foram emitidos
+    private MeshSink sinkA;
+    private int geracaoA;
+
+    private int pontos = 0;
+    // anel pronto (ponto i-2 depois do primeiro segmento): centro e frame U, V, T
+    private double ax, ay, az;
+    private double aux, auy, auz, avx, avy, avz, atx, aty, atz;
+    // ponto pendente (anel ainda sem tangente) e direção do segmento que chega nele
+    private double bx, by, bz;
+    private double dx, dy, dz;
+
+    public SweptTube(double raio, int fatias) {
+        if (raio <= 0) throw new IllegalArgumentException("raio deve ser > 0");
+        this.raio = raio;
+        this.fatias = Math.max(3, fatias);
+        cos = new double[this.fatias];
+        sin = new double[this.fatias];
+        for (int j = 0; j < this.fatias; j++) {
+            double th = 2.0 * Math.PI * j / this.fatias;
+            cos[j] = Math.cos(th);
+            sin[j] = Math.sin(th);
+        }
+        idsA = new int[this.fatias];
+        idsB = new int[this.fatias];
+    }
+
+    /** Triângulos por segmento (faixa entre dois anéis). */
+    public int getTrianglesPerSegment() { return 2 * fatias; }
+
+    /** Vértices por segmento com o anel anterior compartilhado. */
+    public int getVerticesPerSegment() { return fatias; }
+
+    /** Triângulos de uma tampa. */
+    public int getTrianglesPerCap() { return fatias; }
+
+    /** Nenhum ponto desde o último {@link #finish}. */
+    public boolean isEmpty() { return pontos == 0; }
+
+    /**
+     * Acrescenta o próximo ponto do tubo. A partir do terceiro ponto emite a faixa do
+     * segmento anterior (o penúltimo → o antepenúltimo ponto); no segundo emite a tampa
+     * inicial. Pontos repetidos são ignorados.
+     */
+    public void addPoint(double x, double y, double z, MeshSink out) {
+        if (pontos == 0) {
+            bx = x; by = y; bz = z;
+            pontos = 1;
+            return;
+        }
+        double ex = x - bx, ey = y - by, ez = z - bz;
+        double len = Math.sqrt(ex*ex + ey*ey + ez*ez);
+        if (len < 1e-6) return;
+        ex /= len; ey /= len; ez /= len;
+
+        if (pontos == 1) {
+            // primeiro anel: perpendicular ao primeiro segmento, U a partir do +Z (vertical)
+            ax = bx; ay = by; az = bz;
+            atx = ex; aty = ey; atz = ez;
+            double rx = 0, ry = 0, rz = 1;
+            if (Math.abs(ez) > 0.999) { rx = 1; rz = 0; }
+            // U = ref × T, V = T × U
+            aux = ry*ez - rz*ey; auy = rz*ex - rx*ez; auz = rx*ey - ry*ex;
+            double ul = Math.sqrt(aux*aux + auy*auy + auz*auz);
+            aux /= ul; auy /= ul; auz /= ul;
+            avx = ey*auz - ez*auy; avy = ez*aux - ex*auz; avz = ex*auy - ey*aux;
+            tampa(ax, ay, az, aux, auy, auz, avx, avy, avz, -atx, -aty, -atz, out);
+            sinkA = null; // o aro da tampa tem normal própria: o anel A sai no primeiro segmento
+        } else {
+            // anel do ponto pendente na bissetriz (em grampo de 180° fica a direção que chega)
+            double tx = dx + ex, ty = dy + ey, tz = dz + ez;
+            double tl = Math.sqrt(tx*tx + ty*ty + tz*tz);
+            if (tl < 1e-6) { tx = dx; ty = dy; tz = dz; } else { tx /= tl; ty /= tl; tz /= tl; }
+            avancaAnel(tx, ty, tz, out);
+        }
+        bx = x; by = y; bz = z;
+        dx = ex; dy = ey; dz = ez;
+        pontos++;
+    }
+
+    /** Fecha o tubo: faixa do último segmento e tampa final. Depois disso começa outro tubo. */
+    public void finish(MeshSink out) {
+        if (pontos >= 2) {
+            avancaAnel(dx, dy, dz, out);
+            tampa(ax, ay, az, aux, auy, auz, avx, avy, avz, atx, aty, atz, out);
+        }
+        pontos = 0;
+        sinkA = null;
+    }
+
+    /** Descarta o tubo em andamento sem emitir nada. */
+    public void reset() {
+        pontos = 0;
+        sinkA = null;
+    }
+
+    // -------------------- helpers --------------------
+
+    /**
+     * Anel do ponto pendente com tangente T: transporta U do anel pronto para o plano do
+     * novo anel, emite a faixa entre os dois e o novo passa a ser o anel pronto. O anel
+     * pronto só é emitido aqui se os ids dele não valem mais no {@code out}.
+     */
+    private void avancaAnel(double tx, double ty, double tz, MeshSink out) {
+        double k = aux*tx + auy*ty + auz*tz;
+        double ux = aux - k*tx, uy = auy - k*ty, uz = auz - k*tz;
+        double ul = Math.sqrt(ux*ux + uy*uy + uz*uz);
+        if (ul < 1e-9) {
+            // U anterior paralelo à nova tangente (dobra de 90°): usa o V anterior
+            k = avx*tx + avy*ty + avz*tz;
+            ux = avx - k*tx; uy = avy - k*ty; uz = avz - k*tz;
+            ul = Math.sqrt(ux*ux + uy*uy + uz*uz);
+        }
+        ux /= ul; uy /= ul; uz /= ul;
+        double vx = ty*uz - tz*uy, vy = tz*ux - tx*uz, vz = tx*uy - ty*ux;
+
+        // pior caso: os dois anéis; a reserva pode trocar a página e invalidar A
+        out.reserve(2 * fatias, 2 * fatias);
+        if (sinkA != out || geracaoA != out.generation()) {
+            anel(ax, ay, az, aux, auy, auz, avx, avy, avz, atx, aty, atz, idsA, out);
+        }
+        anel(bx, by, bz, ux, uy, uz, vx, vy, vz, tx, ty, tz, idsB, out);
+        // faixa CCW para fora: (A_j, A_j+1, B_j+1) e (A_j, B_j+1, B_j)
+        for (int j = 0; j < fatias; j++) {
+            int j1 = j + 1 == fatias ? 0 : j + 1;
+            out.triangle(idsA[j], idsA[j1], idsB[j1]);
+            out.triangle(idsA[j], idsB[j1], idsB[j]);
+        }
+        int[] t = idsA;
+        idsA = idsB;
+        idsB = t;
+        sinkA = out;
+        geracaoA = out.generation();
+
+        ax = bx; ay = by; az = bz;
+        aux = ux; auy = uy; auz = uz;
+        avx = vx; avy = vy; avz = vz;
+        atx = tx; aty = ty; atz = tz;
+    }
+
+    /** Vértices de um anel com normal radial; tangente do frame = direção de giro do anel. */
+    private void anel(double cx, double cy, double cz,
+                      double ux, double uy, double uz, double vx, double vy, double vz,
+                      double tx, double ty, double tz, int[] ids, MeshSink out) {
+        for (int j = 0; j < fatias; j++) {
+            double c = cos[j], s = sin[j];
+            double nx = ux*c + vx*s, ny = uy*c + vy*s, nz = uz*c + vz*s;
+            // giro = T × N, B = N × giro (= T)
+            double gx = ty*nz - tz*ny, gy = tz*nx - tx*nz, gz = tx*ny - ty*nx;
+            MathUtils.packTangentFrame((float) gx, (float) gy, (float) gz,
+                    (float) tx, (float) ty, (float) tz,
+                    (float) nx, (float) ny, (float) nz, q);
+            ids[j] = out.vertex(cx + raio*nx, cy + raio*ny, cz + raio*nz, q);
+        }
+    }
+
+    /** Tampa plana com normal (nx, ny, nz): centro + aro próprios (a normal não é a do tubo). */
+    private void tampa(double cx, double cy, double cz,
+                       double ux, double uy, double uz, double vx, double vy, double vz,
+                       double nx, double ny, double nz, MeshSink out) {
+        out.reserve(fatias + 1, fatias);
+        // frame da tampa: T = U, B = N × U
+        double bxx = ny*uz - nz*uy, byy = nz*ux - nx*uz, bzz = nx*uy - ny*ux;
+        MathUtils.packTangentFrame((float) ux, (float) uy, (float) uz,
+                (float) bxx, (float) byy, (float) bzz,
+                (float) nx, (float) ny, (float) nz, q);
+        int centro = out.vertex(cx, cy, cz, q);
+        for (int j = 0; j < fatias; j++) {
+            double c = cos[j], s = sin[j];
+            idsB[j] = out.vertex(cx + raio*(ux*c + vx*s), cy + raio*(uy*c + vy*s),
+                    cz + raio*(uz*c + vz*s), q);
+        }
+        // o aro gira de U para V (CCW visto de +T): com a normal em +T a ordem é (centro, j, j+1)
+        boolean frente = nx*(uy*vz - uz*vy) + ny*(uz*vx - ux*vz) + nz*(ux*vy - uy*vx) > 0;
+        for (int j = 0; j < fatias; j++) {
+            int j1 = j + 1 == fatias ? 0 : j + 1;
+            if (frente) out.triangle(centro, idsB[j], idsB[j1]);
+            else        out.triangle(centro, idsB[j1], idsB[j]);
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.filamenttestjava.filament.app;
+
+import android.os.Handler;
+
+import com.google.android.filament.Box;
+import com.google.android.filament.Engine;
+import com.google.android.filament.EntityManager;
+import com.google.android.filament.MaterialInstance;
+import com.google.android.filament.RenderableManager;
+import com.google.android.filament.Scene;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Trilha com nível de detalhe pela distância da câmera. A trilha é cortada em trechos de
+ * {@link #SEGMENTOS_POR_TRECHO} segmentos e cada trecho tem as três versões prontas, geradas
+ * uma vez quando os pontos chegam: {@link #PERTO} tubo de 8 fatias, {@link #MEIO} tubo de 3
+ * fatias e {@link #LONGE} fita horizontal ({@link SweptRibbon}). Cada versão é um renderable
+ * (malha indexada, ver {@link DynamicTriangleMesh}) e a troca de nível só mexe na layer mask:
+ * nada é regerado por frame. A fita pode receber só os pontos da visão geral (ver
+ * {@link #addPoint(double, double, double, double[], boolean)}); os tubos recebem todos.
+ *
+ * A classificação roda na thread do Engine ({@link #atualizaLod}) quando o olho da câmera
+ * anda mais que {@link #LIMIAR_MOVIMENTO} (inclui o zoom do volume) ou surge trecho novo:
+ * distância do olho até o AABB do trecho, com {@link #HISTERESE} para não piscar na borda.
+ * A mesma passada mede {@link #getAlcance}, que a câmera usa como plano distante: sem ele
+ * os níveis {@link #MEIO}/{@link #LONGE} ficariam fora do recorte.
+ *
+ * Coordenadas de mundo em double; cada trecho tem origem própria (o primeiro ponto) e o
+ * renderable fica em (origem do trecho - origem de render, ver {@link FloatingOrigin}). O
+ * orçamento é em trechos: passando de {@code maxTrechos}, o mais antigo sai da cena.
+ *
+ * {@link #addPoint}/{@link #finish} só gravam nas sombras de CPU; o envio para a GPU e o
+ * AABB saem em {@link #flush}, uma vez por trecho tocado: chame no fim de cada lote de
+ * pontos (ex.: um quadro do replay).
+ *
+ * Threads: {@link #addPoint}/{@link #finish}/{@link #flush}/{@link #clear} na thread de geometria;
+ * {@link #atualizaLod}, {@link #setOrigemRender} e {@link #destroy} na thread do Engine.
+ */
+public class TrackLod {
+
+    public static final int PERTO = 0, MEIO = 1, LONGE = 2;
+    public static final int NIVEIS = 3;
+
+    /** Segmentos por trecho (~4 min de voo a 1 Hz). */
+    public static final int SEGMENTOS_POR_TRECHO = 256;
+    /** Raio do tubo (m). */
+    public static final double RAIO = 4;
+    /** Até aqui tubo completo; daqui até {@link #DIST_LONGE} tubo de 3 fatias (m). */
+    public static final double DIST_MEIO = 1500;
+    /** Além disso a fita: o tubo de 8 m fica com ~1 px. */
+    public static final double DIST_LONGE = 6000;
+    /** Folga relativa para voltar de nível (evita piscar na fronteira). */
+    public static final double HISTERESE = 0.15;
+    /** Deslocamento do olho que dispara a reclassificação (m). */
+    public static final double LIMIAR_MOVIMENTO = 25;
+
+    /** Layer visível na View (padrão do Filament): o nível ativo fica nela, os outros em nenhuma. */
+    private static final int LAYER = 0x1;
+    /**
+     * Triângulos/vértices por segmento em cada nível, com folga para as tampas (os anéis são
+     * compartilhados entre segmentos: um anel novo por segmento).
+     */
+    private static final int[] TRIANGULOS_POR_SEGMENTO = { 20, 8, 4 };
+    private static final int[] VERTICES_POR_SEGMENTO = { 10, 5, 5 };
+    /** Maior lote de um ponto (faixa + tampa) em cada nível. */
+    private static final int[] LOTE_TRIANGULOS = { 24, 9, 4 };
+    private static final int[] LOTE_VERTICES = { 25, 10, 8 };
+
+    private final Engine engine;
+    private final Handler engineHandler;
+    private final Scene scene;
+    private final MaterialInstance materialInstance;
+    private final int maxTrechos;
+
+    private final SweptTube tuboPerto = new SweptTube(RAIO, 8);
+    private final SweptTube tuboMeio = new SweptTube(RAIO, 3);
+    private final SweptRibbon fita = new SweptRibbon(RAIO);
+
+    /** Trechos vivos na ordem (thread de geometria). */
+    private final ArrayDeque<Trecho> trechos = new ArrayDeque<>();
+    private Trecho atual;
+    /** Trechos com pontos novos desde o último {@link #flush} (thread de geometria). */
+    private final ArrayList<Trecho> tocados = new ArrayList<>();
+    /** Trechos com renderable na cena (thread do Engine). */
+    private final ArrayList<Trecho> naCena = new ArrayList<>();
+    /** Trecho novo ou AABB que cresceu desde a última classificação (thread do Engine). */
+    private boolean reclassificar = false;
+
+    // dois últimos pontos: o segmento que sai num addPoint é o anterior, e ele entra no AABB
+    private int pontos = 0;
+    private double p1x, p1y, p1z, p2x, p2y, p2z;
+    /** Último ponto que a fita pulou: entra no {@link #finish} para ela terminar no fim da trilha. */
+    private boolean fitaPendente = false;
+    private double fpx, fpy, fpz;
+
+    private double origemRenderX = 0, origemRenderY = 0;
+    private double olhoX = Double.NaN, olhoY, olhoZ;
+    /** Distância do olho até o canto mais longe de todos os trechos (thread do Engine). */
+    private double alcance = 0;
+
+    private static final class Trecho {
+        final double ox, oy, oz;
+        final DynamicTriangleMesh[] malhas = new DynamicTriangleMesh[NIVEIS];
+        final int[] entidades = new int[NIVEIS];
+        int segmentos = 0;
+        // AABB de mundo (com o raio), thread de geometria
+        double minX, minY, minZ, maxX, maxY, maxZ;
+        boolean tocado = false;
+        // cópia do AABB que a thread do Engine usa na classificação (chega pelo flush)
+        double eMinX, eMinY, eMinZ, eMaxX, eMaxY, eMaxZ;
+        /** Reaproveitada a cada flush (thread do Engine). */
+        final Box caixa = new Box();
+        /** Nível visível; -1 = ainda não classificado. */
+        int nivel = -1;
+
+        Trecho(double ox, double oy, double oz) {
+            this.ox = ox;
+            this.oy = oy;
+            this.oz = oz;
+            minX = maxX = ox;
+            minY = maxY = oy;
+            minZ = maxZ = oz;
+            eMinX = eMaxX = ox;
+            eMinY = eMaxY = oy;
+            eMinZ = eMaxZ = oz;
+        }
+    }
+
+    public TrackLod(Engine engine, Handler engineHandler, Scene scene,
+                    MaterialInstance materialInstance, int maxTriangulos) {
+        this.engine = engine;
+        this.engineHandler = engineHandler;
+        this.scene = scene;
+        this.materialInstance = materialInstance;
+        // o orçamento conta o tubo completo, como a malha única de antes
+        this.maxTrechos = Math.max(2, maxTriangulos / (SEGMENTOS_POR_TRECHO * TRIANGULOS_POR_SEGMENTO[PERTO]));
+    }
+
+    /** Nenhum ponto desde o último {@link #finish}. */
+    public boolean isEmpty() { return tuboPerto.isEmpty(); }
+
+    public int getQuantidadeTrechos() { return trechos.size(); }
+
+    /**
+     * Próximo ponto da trilha em coordenadas de mundo. Como no {@link SweptTube}, o que sai
+     * agora é o segmento anterior, e ele sai com a {@code cor} dada.
+     */
+    public void addPoint(double x, double y, double z, double[] cor) {
+        addPoint(x, y, z, cor, true);
+    }
+
+    /**
+     * Como {@link #addPoint(double, double, double, double[])}; com {@code visaoGeral} false o
+     * ponto só entra nos tubos e a fita de {@link #LONGE} o pula (ex.: fora do nível grosso
+     * da {@link com.example.filamenttestjava.filament.utils.TrackPyramid}). O primeiro ponto
+     * e o último antes do {@link #finish} entram sempre.
+     */
+    public void addPoint(double x, double y, double z, double[] cor, boolean visaoGeral) {
+        if (pontos >= 1) {
+            // ponto repetido: os geradores ignoram, e aqui não conta segmento
+            double dx = x - p1x, dy = y - p1y, dz = z - p1z;
+            if (dx*dx + dy*dy + dz*dz < 1e-12) return;
+        }
+        Trecho t = trechoPara(x, y, z);
+        for (int n = 0; n < NIVEIS; n++) {
+            DynamicTriangleMesh m = t.malhas[n];
+            m.setCurrentColorSrgb((float) cor[0], (float) cor[1], (float) cor[2], (float) cor[3]);
+            m.setOrigin(t.ox, t.oy, t.oz);
+            if (n == PERTO) tuboPerto.addPoint(x, y, z, m);
+            else if (n == MEIO) tuboMeio.addPoint(x, y, z, m);
+            else if (visaoGeral || fita.isEmpty()) {
+                fita.addPoint(x, y, z, m);
+                fitaPendente = false;
+            } else {
+                fitaPendente = true;
+                fpx = x; fpy = y; fpz = z;
+            }
+        }
+        // do terceiro ponto em diante sai o segmento anterior
+        if (pontos >= 2) t.segmentos++;
+        toca(t);
+        expande(t, x, y, z);
+        if (pontos >= 1) expande(t, p1x, p1y, p1z);
+        if (pontos >= 2) expande(t, p2x, p2y, p2z);
+        p2x = p1x; p2y = p1y; p2z = p1z;
+        p1x = x; p1y = y; p1z = z;
+        pontos++;
+    }
+
+    /** Fecha a trilha em andamento (último segmento + tampa). */
+    public void finish(double[] cor) {
+        Trecho t = atual;
+        if (t == null || isEmpty()) return;
+        for (int n = 0; n < NIVEIS; n++) {
+            DynamicTriangleMesh m = t.malhas[n];
+            m.setCurrentColorSrgb((float) cor[0], (float) cor[1], (float) cor[2], (float) cor[3]);
+            m.setOrigin(t.ox, t.oy, t.oz);
+            if (n == PERTO) tuboPerto.finish(m);
+            else if (n == MEIO) tuboMeio.finish(m);
+            else {
+                if (fitaPendente) fita.addPoint(fpx, fpy, fpz, m);
+                fita.finish(m);
+            }
+        }
+        if (pontos >= 2) t.segmentos++;
+        toca(t);
+        pontos = 0;
+        fitaPendente = false;
+    }
+
+    /**
+     * Fim do lote de pontos: cada trecho tocado sobe o que mudou e troca o AABB, com uma
+     * postagem para o AABB de todos os trechos.
+     */
+    public void flush() {
+        if (tocados.isEmpty()) return;
+        RenderableManager rm = engine.getRenderableManager();
+        int k = tocados.size();
+        Trecho[] ts = new Trecho[k];
+        double[] caixas = new double[k * 6];
+        for (int i = 0; i < k; i++) {
+            Trecho t = tocados.get(i);
+            t.tocado = false;
+            for (int n = 0; n < NIVEIS; n++) {
+                DynamicTriangleMesh m = t.malhas[n];
+                m.flush();
+                m.applyToRenderable(rm, t.entidades[n]);
+            }
+            ts[i] = t;
+            int o = i * 6;
+            caixas[o] = t.minX; caixas[o + 1] = t.minY; caixas[o + 2] = t.minZ;
+            caixas[o + 3] = t.maxX; caixas[o + 4] = t.maxY; caixas[o + 5] = t.maxZ;
+        }
+        tocados.clear();
+        engineHandler.post(() -> {
+            for (int i = 0; i < k; i++) {
+                Trecho t = ts[i];
+                int o = i * 6;
+                t.eMinX = caixas[o]; t.eMinY = caixas[o + 1]; t.eMinZ = caixas[o + 2];
+                t.eMaxX = caixas[o + 3]; t.eMaxY = caixas[o + 4]; t.eMaxZ = caixas[o + 5];
+                t.caixa.setCenter((float) ((t.eMinX + t.eMaxX) * 0.5 - t.ox),
+                        (float) ((t.eMinY + t.eMaxY) * 0.5 - t.oy),
+                        (float) ((t.eMinZ + t.eMaxZ) * 0.5 - t.oz));
+                t.caixa.setHalfExtent((float) ((t.eMaxX - t.eMinX) * 0.5),
+                        (float) ((t.eMaxY - t.eMinY) * 0.5),
+                        (float) ((t.eMaxZ - t.eMinZ) * 0.5));
+                for (int n = 0; n < NIVEIS; n++) {
+                    rm.setAxisAlignedBoundingBox(rm.getInstance(t.entidades[n]), t.caixa);
+                }
+            }
+            reclassificar = true;
+        });
+    }
+
+    /**
+     * Apaga a trilha inteira (ex.: seek para trás no replay): os trechos saem da cena na
+     * thread do Engine e o próximo ponto começa um tubo novo.
+     */
+    public void clear() {
+        for (Trecho t : trechos) t.tocado = false;
+        tocados.clear();
+        if (!trechos.isEmpty()) {
+            ArrayList<Trecho> velhos = new ArrayList<>(trechos);
+            engineHandler.post(() -> {
+                naCena.removeAll(velhos);
+                for (Trecho t : velhos) destroiTrecho(t);
+                reclassificar = true;
+            });
+        }
+        trechos.clear();
+        atual = null;
+        tuboPerto.reset();
+        tuboMeio.reset();
+        fita.reset();
+        pontos = 0;
+        fitaPendente = false;
+    }
+
+    /**
+     * Reclassifica os trechos pela distância do olho (coordenadas de mundo). Barato quando
+     * nada mudou: só roda se o olho andou {@link #LIMIAR_MOVIMENTO} ou há trecho novo.
+     */
+    public void atualizaLod(double ex, double ey, double ez) {
+        double dx = ex - olhoX, dy = ey - olhoY, dz = ez - olhoZ;
+        boolean andou = Double.isNaN(olhoX) || dx*dx + dy*dy + dz*dz > LIMIAR_MOVIMENTO * LIMIAR_MOVIMENTO;
+        if (!andou && !reclassificar) return;
+        if (andou) { olhoX = ex; olhoY = ey; olhoZ = ez; }
+        reclassificar = false;
+
+        RenderableManager rm = engine.getRenderableManager();
+        double maisLonge = 0;
+        for (Trecho t : naCena) {
+            maisLonge = Math.max(maisLonge, cantoMaisLonge(t, olhoX, olhoY, olhoZ));
+            int nivel = nivel(t, distancia(t, olhoX, olhoY, olhoZ));
+            if (nivel == t.nivel) continue;
+            for (int n = 0; n < NIVEIS; n++) {
+                rm.setLayerMask(rm.getInstance(t.entidades[n]), LAYER, n == nivel ? LAYER : 0);
+            }
+            t.nivel = nivel;
+        }
+        // o olho pode ter andado até LIMIAR_MOVIMENTO desde a medida
+        alcance = naCena.isEmpty() ? 0 : maisLonge + LIMIAR_MOVIMENTO;
+    }
+
+    /**
+     * Distância (m) do olho da última {@link #atualizaLod} até o ponto mais longe da trilha
+     * na cena; 0 sem trechos. Thread do Engine.
+     */
+    public double getAlcance() { return alcance; }
+
+    /** Nova origem de render (thread do Engine): só os renderables se deslocam. */
+    public void setOrigemRender(double x, double y) {
+        if (x == origemRenderX && y == origemRenderY) return;
+        origemRenderX = x;
+        origemRenderY = y;
+        for (Trecho t : naCena) aplicaTransform(t);
+    }
+
+    /** Remove da cena e libera tudo (thread do Engine). */
+    public void destroy() {
+        for (Trecho t : naCena) destroiTrecho(t);
+        naCena.clear();
+    }
+
+    // -------------------- helpers --------------------
+
+    /** Trecho atual, ou um novo se ele encheu (segmentos ou espaço para o próximo lote). */
+    private Trecho trechoPara(double x, double y, double z) {
+        Trecho t = atual;
+        if (t != null && t.segmentos < SEGMENTOS_POR_TRECHO && cabe(t)) return t;
+
+        t = criaTrecho(x, y, z);
+        trechos.addLast(t);
+        atual = t;
+        while (trechos.size() > maxTrechos) {
+            Trecho velho = trechos.removeFirst();
+            if (velho.tocado) {
+                velho.tocado = false;
+                tocados.remove(velho);
+            }
+            engineHandler.post(() -> {
+                naCena.remove(velho);
+                destroiTrecho(velho);
+                reclassificar = true;
+            });
+        }
+        return t;
+    }
+
+    private static boolean cabe(Trecho t) {
+        for (int n = 0; n < NIVEIS; n++) {
+            if (!t.malhas[n].cabeSemDescartar(LOTE_TRIANGULOS[n], LOTE_VERTICES[n])) return false;
+        }
+        return true;
+    }
+
+    private Trecho criaTrecho(double x, double y, double z) {
+        Trecho t = new Trecho(x, y, z);
+        // AABB provisório (o trecho ainda cresce): ~256 s a 50 m/s para qualquer lado
+        float h = SEGMENTOS_POR_TRECHO * 50f;
+        for (int n = 0; n < NIVEIS; n++) {
+            int tris = SEGMENTOS_POR_TRECHO * TRIANGULOS_POR_SEGMENTO[n];
+            int verts = SEGMENTOS_POR_TRECHO * VERTICES_POR_SEGMENTO[n];
+            DynamicTriangleMesh m = new DynamicTriangleMesh(tris, verts, 0f, 0f, 0f, h, h, h);
+            m.setEngineHandler(engine, engineHandler);
+            t.malhas[n] = m;
+            t.entidades[n] = EntityManager.get().create();
+        }
+        engineHandler.post(() -> {
+            for (int n = 0; n < NIVEIS; n++) {
+                DynamicTriangleMesh m = t.malhas[n];
+                m.inicializaBuffers(engine, engineHandler);
+                int paginas = m.getPageCount();
+                RenderableManager.Builder rb = new RenderableManager.Builder(paginas)
+                        .boundingBox(new Box(0f, 0f, 0f, h, h, h))
+                        // nasce escondido: o nível sai da primeira classificação
+                        .layerMask(LAYER, 0);
+                for (int p = 0; p < paginas; p++) {
+                    rb.geometry(p, RenderableManager.PrimitiveType.TRIANGLES,
+                                    m.getVertexBuffer(p), m.getIndexBuffer(p), 0, 0)
+                            .material(p, materialInstance);
+                }
+                rb.build(engine, t.entidades[n]);
+                TransformCompat.ensure(engine, t.entidades[n]);
+                scene.addEntity(t.entidades[n]);
+            }
+            aplicaTransform(t);
+            naCena.add(t);
+            reclassificar = true;
+        });
+        return t;
+    }
+
+    private void toca(Trecho t) {
+        if (t.tocado) return;
+        t.tocado = true;
+        tocados.add(t);
+    }
+
+    private static void expande(Trecho t, double x, double y, double z) {
+        t.minX = Math.min(t.minX, x - RAIO); t.maxX = Math.max(t.maxX, x + RAIO);
+        t.minY = Math.min(t.minY, y - RAIO); t.maxY = Math.max(t.maxY, y + RAIO);
+        t.minZ = Math.min(t.minZ, z - RAIO); t.maxZ = Math.max(t.maxZ, z + RAIO);
+    }
+
+    /** Distância do olho até o AABB do trecho (0 dentro dele), na cópia da thread do Engine. */
+    private static double distancia(Trecho t, double ex, double ey, double ez) {
+        double dx = Math.max(0, Math.max(t.eMinX - ex, ex - t.eMaxX));
+        double dy = Math.max(0, Math.max(t.eMinY - ey, ey - t.eMaxY));
+        double dz = Math.max(0, Math.max(t.eMinZ - ez, ez - t.eMaxZ));
+        return Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+
+    /** Distância do olho até o canto do AABB do trecho mais longe dele. */
+    private static double cantoMaisLonge(Trecho t, double ex, double ey, double ez) {
+        double dx = Math.max(ex - t.eMinX, t.eMaxX - ex);
+        double dy = Math.max(ey - t.eMinY, t.eMaxY - ey);
+        double dz = Math.max(ez - t.eMinZ, t.eMaxZ - ez);
+        return Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+
+    /** Nível pela distância; a fronteira recua {@link #HISTERESE} a favor do nível atual. */
+    private static int nivel(Trecho t, double d) {
+        int atual = t.nivel;
+        double meio = DIST_MEIO * (atual == PERTO ? 1 + HISTERESE : atual > PERTO ? 1 - HISTERESE : 1);
+        double longe = DIST_LONGE * (atual == LONGE ? 1 - HISTERESE : atual >= 0 ? 1 + HISTERESE : 1);
+        return d < meio ? PERTO : d < longe ? MEIO : LONGE;
+    }
+
+    private void aplicaTransform(Trecho t) {
+        for (int n = 0; n < NIVEIS; n++) {
+            TransformCompat.setTranslation(engine, t.entidades[n],
+                    (float) (t.ox - origemRenderX), (float) (t.oy - origemRenderY), (float) t.oz);
+        }
+    }
+
+    private void destroiTrecho(Trecho t) {
+        EntityManager em = EntityManager.get();
+        for (int n = 0; n < NIVEIS; n++) {
+            int e = t.entidades[n];
+            scene.removeEntity(e);
+            engine.destroyEntity(e);
+            DynamicTriangleMesh m = t.malhas[n];
+            for (int p = 0; p < m.getPageCount(); p++) {
+                engine.destroyVertexBuffer(m.getVertexBuffer(p));
+                engine.destroyIndexBuffer(m.getIndexBuffer(p));
+            }
+            em.destroy(e);
+        }
+    }
+}
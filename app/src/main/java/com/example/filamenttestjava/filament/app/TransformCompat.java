@@ -5,6 +5,22 @@ import com.google.android.filament.TransformManager;
 
 /** Compat helper: funciona com bindings que usam int/long ou Instance. */
 public class TransformCompat {
+
+    /** Cria o componente de transform se a entidade ainda não tiver (renderables não ganham um sozinhos). */
+    public static void ensure(Engine engine, int entity) {
+        TransformManager tcm = engine.getTransformManager();
+        if (!tcm.hasComponent(entity)) tcm.create(entity);
+    }
+
+    /** Só translação (matriz coluna-maior). */
+    public static void setTranslation(Engine engine, int entity, float tx, float ty, float tz) {
+        set(engine, entity, new float[] {
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0,
+                tx, ty, tz, 1 });
+    }
+
     public static void set(Engine engine, int entity, float[] m4x4) {
         TransformManager tcm = engine.getTransformManager();
         try {
@@ -0,0 +1,16 @@
+package com.example.filamenttestjava.filament.app;
+
+/**
+ * Destino dos triângulos gerados pela {@link Geometry}: cada triângulo chega como 9
+ * primitivos (A, B, C em CCW, normal para fora), sem {@code double[]} intermediário.
+ *
+ * As coordenadas são de mundo, em double: quem empacota em float (ex.:
+ * {@link DynamicTriangleMesh}) subtrai a própria origem antes do cast, como no caminho
+ * com lista.
+ */
+public interface TriangleSink {
+
+    void triangle(double x0, double y0, double z0,
+                  double x1, double y1, double z1,
+                  double x2, double y2, double z2);
+}
@@ -0,0 +1,228 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Filtro de Kalman de 3 estados que funde altitude barométrica e GNSS:
+ * h (altitude, referência GNSS), v (velocidade vertical) e b (desvio baro − GNSS,
+ * que muda devagar com o QNH/temperatura). O GNSS ancora o nível absoluto; o baro, com
+ * ruído bem menor, é o que deixa o vario liso.
+ *
+ * Modo contínuo: {@link #update} por fixo, sem alocação (covariância em campos).
+ * Modo lote: {@link #smooth} roda o filtro para frente e o suavizador RTS para trás
+ * sobre a trilha inteira (arquivo já carregado), preenchendo arrays do chamador.
+ *
+ * Altitude 0 é tratada como ausente (arquivos sem baro gravam 00000; GNSS 0 é fixo 2D).
+ */
+public class AltitudeFilter {
+
+    /** Desvio da aceleração vertical (m/s²): quanto o vario pode mudar entre fixos. */
+    public static final double SIGMA_ACELERACAO = 1.0;
+    /** Ruído da altitude GNSS (m). */
+    public static final double SIGMA_GNSS = 6.0;
+    /** Ruído da altitude de pressão (m; inclui a resolução de 1 m do B-record). */
+    public static final double SIGMA_BARO = 0.7;
+    /** Deriva do desvio baro − GNSS (m/√s); em test.igc ele anda ~25 m num voo de 4 h. */
+    public static final double SIGMA_DESVIO = 0.2;
+
+    // estado
+    private double h, v, b;
+    // covariância simétrica 3x3
+    private double p00, p01, p02, p11, p12, p22;
+    private boolean iniciado = false;
+    private double ultimoTempo;
+
+    public boolean isInitialized() { return iniciado; }
+    public double getAltitude()     { return h; }
+    public double getVario()        { return v; }
+    public double getBaroOffset()   { return b; }
+
+    public void reset() {
+        iniciado = false;
+    }
+
+    /** Alimenta com o fixo i (tempo com décimos se houver). */
+    public void update(FlightTrack t, int i) {
+        update(tempo(t, i), t.gnssAltitude(i), t.pressureAltitude(i));
+    }
+
+    /** Horário do fixo i (s), com os décimos do TDS quando houver. */
+    private static double tempo(FlightTrack t, int i) {
+        if (!t.hasTenths()) return t.time(i);
+        int d = t.tenthsOfSecond(i);
+        return d == IgcParser.NO_VALUE ? t.time(i) : t.time(i) + d * 0.1;
+    }
+
+    /** Um fixo: horário (s), altitude GNSS e de pressão (0 = ausente). */
+    public void update(double time, int gnss, int press) {
+        boolean temGnss = gnss != 0, temBaro = press != 0;
+        if (!temGnss && !temBaro) return;
+        if (!iniciado) {
+            inicia(time, gnss, press, temGnss, temBaro);
+            return;
+        }
+        double dt = time - ultimoTempo;
+        if (dt > 0) {
+            prediz(dt);
+            ultimoTempo = time;
+        }
+        if (temGnss) corrigeGnss(gnss);
+        if (temBaro) corrigeBaro(press);
+    }
+
+    /**
+     * Lote: filtro para frente + suavizador RTS para trás nos {@code n} primeiros fixos.
+     * {@code outAlt}/{@code outVario} (tamanho >= n; qualquer um pode ser null) recebem a
+     * altitude e o vario suavizados. Aloca os buffers do passe para frente (10 doubles
+     * por fixo) só durante a chamada.
+     */
+    public static void smooth(FlightTrack t, int n, float[] outAlt, float[] outVario) {
+        if (n == 0) return;
+        double[] xs = new double[n * 3];  // estado filtrado
+        double[] ps = new double[n * 6];  // covariância filtrada (triângulo superior)
+        double[] dts = new double[n];     // dt da predição que chegou ao fixo k
+        AltitudeFilter f = new AltitudeFilter();
+
+        for (int k = 0; k < n; k++) {
+            // dt efetivo da predição (fixo sem altitude não avança o filtro)
+            double antes = f.iniciado ? f.ultimoTempo : Double.NaN;
+            f.update(tempo(t, k), t.gnssAltitude(k), t.pressureAltitude(k));
+            dts[k] = Double.isNaN(antes) ? 0 : f.ultimoTempo - antes;
+            f.salva(xs, ps, k);
+        }
+
+        // para trás: x_s(k) = x(k) + C (x_s(k+1) − F x(k)), C = P(k) Fᵀ P⁻(k+1)⁻¹
+        double sh = xs[(n - 1) * 3], sv = xs[(n - 1) * 3 + 1], sb = xs[(n - 1) * 3 + 2];
+        escreve(outAlt, outVario, n - 1, sh, sv);
+        for (int k = n - 2; k >= 0; k--) {
+            double dt = dts[k + 1];
+            int o = k * 3, q = k * 6;
+            double xh = xs[o], xv = xs[o + 1], xb = xs[o + 2];
+            double a00 = ps[q], a01 = ps[q + 1], a02 = ps[q + 2], a11 = ps[q + 3], a12 = ps[q + 4], a22 = ps[q + 5];
+
+            // P Fᵀ (F = [[1,dt,0],[0,1,0],[0,0,1]])
+            double m00 = a00 + dt * a01, m01 = a01, m02 = a02;
+            double m10 = a01 + dt * a11, m11 = a11, m12 = a12;
+            double m20 = a02 + dt * a12, m21 = a12, m22 = a22;
+            // P⁻ = F P Fᵀ + Q
+            double dt2 = dt * dt;
+            double qa = SIGMA_ACELERACAO * SIGMA_ACELERACAO;
+            double n00 = m00 + dt * m10 + qa * dt2 * dt2 / 4;
+            double n01 = m01 + dt * m11 + qa * dt2 * dt / 2;
+            double n02 = m02 + dt * m12;
+            double n11 = m11 + qa * dt2;
+            double n12 = m12;
+            double n22 = m22 + SIGMA_DESVIO * SIGMA_DESVIO * dt;
+
+            // inversa de P⁻ (simétrica)
+            double c00 = n11 * n22 - n12 * n12;
+            double c01 = n02 * n12 - n01 * n22;
+            double c02 = n01 * n12 - n02 * n11;
+            double c11 = n00 * n22 - n02 * n02;
+            double c12 = n01 * n02 - n00 * n12;
+            double c22 = n00 * n11 - n01 * n01;
+            double det = n00 * c00 + n01 * c01 + n02 * c02;
+            if (Math.abs(det) < 1e-12) {
+                sh = xh; sv = xv; sb = xb;
+                escreve(outAlt, outVario, k, sh, sv);
+                continue;
+            }
+            double inv = 1.0 / det;
+            c00 *= inv; c01 *= inv; c02 *= inv; c11 *= inv; c12 *= inv; c22 *= inv;
+
+            // ganho C = (P Fᵀ) (P⁻)⁻¹
+            double g00 = m00 * c00 + m01 * c01 + m02 * c02;
+            double g01 = m00 * c01 + m01 * c11 + m02 * c12;
+            double g02 = m00 * c02 + m01 * c12 + m02 * c22;
+            double g10 = m10 * c00 + m11 * c01 + m12 * c02;
+            double g11 = m10 * c01 + m11 * c11 + m12 * c12;
+            double g12 = m10 * c02 + m11 * c12 + m12 * c22;
+            double g20 = m20 * c00 + m21 * c01 + m22 * c02;
+            double g21 = m20 * c01 + m21 * c11 + m22 * c12;
+            double g22 = m20 * c02 + m21 * c12 + m22 * c22;
+
+            double eh = sh - (xh + dt * xv), ev = sv - xv, eb = sb - xb;
+            sh = xh + g00 * eh + g01 * ev + g02 * eb;
+            sv = xv + g10 * eh + g11 * ev + g12 * eb;
+            sb = xb + g20 * eh + g21 * ev + g22 * eb;
+            escreve(outAlt, outVario, k, sh, sv);
+        }
+    }
+
+    // -------------------- helpers --------------------
+
+    private void inicia(double time, int gnss, int press, boolean temGnss, boolean temBaro) {
+        h = temGnss ? gnss : press;
+        v = 0;
+        b = temGnss && temBaro ? press - gnss : 0;
+        p00 = temGnss ? SIGMA_GNSS * SIGMA_GNSS : SIGMA_BARO * SIGMA_BARO;
+        p11 = 4.0;
+        p22 = temGnss && temBaro ? 2 * SIGMA_GNSS * SIGMA_GNSS : 1.0;
+        p01 = p12 = 0;
+        // h e b vêm do mesmo GNSS: correlação negativa (baro = h + b é bem conhecido)
+        p02 = temGnss && temBaro ? -SIGMA_GNSS * SIGMA_GNSS : 0;
+        ultimoTempo = time;
+        iniciado = true;
+    }
+
+    private void prediz(double dt) {
+        h += v * dt;
+        double dt2 = dt * dt;
+        double qa = SIGMA_ACELERACAO * SIGMA_ACELERACAO;
+        // F P Fᵀ + Q
+        double n00 = p00 + 2 * dt * p01 + dt2 * p11 + qa * dt2 * dt2 / 4;
+        double n01 = p01 + dt * p11 + qa * dt2 * dt / 2;
+        double n02 = p02 + dt * p12;
+        p00 = n00;
+        p01 = n01;
+        p02 = n02;
+        p11 += qa * dt2;
+        p22 += SIGMA_DESVIO * SIGMA_DESVIO * dt;
+    }
+
+    /** z = h + ruído. */
+    private void corrigeGnss(double z) {
+        double s = p00 + SIGMA_GNSS * SIGMA_GNSS;
+        double k0 = p00 / s, k1 = p01 / s, k2 = p02 / s;
+        double r = z - h;
+        aplica(k0, k1, k2, r, p00, p01, p02);
+    }
+
+    /** z = h + b + ruído. */
+    private void corrigeBaro(double z) {
+        // P Hᵀ com H = [1, 0, 1]
+        double ph0 = p00 + p02, ph1 = p01 + p12, ph2 = p02 + p22;
+        double s = ph0 + ph2 + SIGMA_BARO * SIGMA_BARO;
+        double r = z - (h + b);
+        aplica(ph0 / s, ph1 / s, ph2 / s, r, ph0, ph1, ph2);
+    }
+
+    /** x += K r; P −= K (P Hᵀ)ᵀ, com (ph0, ph1, ph2) = P Hᵀ. */
+    private void aplica(double k0, double k1, double k2, double r, double ph0, double ph1, double ph2) {
+        h += k0 * r;
+        v += k1 * r;
+        b += k2 * r;
+        p00 -= k0 * ph0;
+        p01 -= k0 * ph1;
+        p02 -= k0 * ph2;
+        p11 -= k1 * ph1;
+        p12 -= k1 * ph2;
+        p22 -= k2 * ph2;
+    }
+
+    private void salva(double[] xs, double[] ps, int k) {
+        int o = k * 3, q = k * 6;
+        xs[o] = h;
+        xs[o + 1] = v;
+        xs[o + 2] = b;
+        ps[q] = p00;
+        ps[q + 1] = p01;
+        ps[q + 2] = p02;
+        ps[q + 3] = p11;
+        ps[q + 4] = p12;
+        ps[q + 5] = p22;
+    }
+
+    private static void escreve(float[] outAlt, float[] outVario, int k, double alt, double vario) {
+        if (outAlt != null) outAlt[k] = (float) alt;
+        if (outVario != null) outVario[k] = (float) vario;
+    }
+}
@@ -3,22 +3,31 @@ package com.example.filamenttestjava.filament.utils;
 import android.location.Location;
 
 public class CalculoDistancias {
-    public static double[] getPixelModelo(double latitudeCentro, double longitudeCentro, double latitude, double longitude) {
 
+    /** Última projeção usada (imutável): chamadas seguidas com o mesmo centro não recalculam as constantes. */
+    private static volatile ProjecaoLocal ultimaProjecao;
 
+    /**
+     * Offset em metros (x leste, y norte) do ponto em relação ao centro.
+     * Para trilhas inteiras use {@link ProjecaoLocal} direto, criando uma vez por origem.
+     */
+    public static double[] getPixelModelo(double latitudeCentro, double longitudeCentro, double latitude, double longitude) {
+        ProjecaoLocal projecao = projecaoEm(latitudeCentro, longitudeCentro);
         double[] output = new double[2];
-
-        double distanciaLat = distance(latitudeCentro, longitudeCentro, latitude, longitudeCentro);
-        double distanciaLon = distance(latitudeCentro, longitudeCentro, latitudeCentro, longitude);
-
-
-
-        //System.out.println("lat = " + takeoffLat + " lon = " + takeoffLon);
-
-        output[1] =  ( latitude > latitudeCentro?distanciaLat:-distanciaLat);
-        output[0] =  ( longitude > longitudeCentro?distanciaLon:-distanciaLon);
+        output[0] = projecao.x(longitude);
+        output[1] = projecao.y(latitude);
         return output;
     }
+    /** Projeção com origem no centro dado, reaproveitando a anterior quando o centro não mudou. */
+    public static ProjecaoLocal projecaoEm(double latitudeCentro, double longitudeCentro) {
+        ProjecaoLocal p = ultimaProjecao;
+        if (p == null || p.getLatitudeOrigem() != latitudeCentro || p.getLongitudeOrigem() != longitudeCentro) {
+            p = new ProjecaoLocal(latitudeCentro, longitudeCentro);
+            ultimaProjecao = p;
+        }
+        return p;
+    }
+
     public static double distance(double startLat, double startLong,
                                   double endLat, double endLong) {
         /*
@@ -0,0 +1,335 @@
+package com.example.filamenttestjava.filament.utils;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Índice da biblioteca de voos (uma temporada inteira de IGCs no aparelho, soltos ou
+ * compactados em .igc.gz/.zip). {@link #scan} percorre um diretório num pool limitado de
+ * threads; para cada arquivo novo ou alterado lê só os H-records e faz uma passada rápida
+ * nos B-records (sem montar trilha), guardando data, piloto, planador, duração, altitude máxima, bounding box e
+ * distância. O resultado vai para um arquivo de índice pequeno: reabrir a biblioteca custa
+ * uma leitura dele, e as consultas por área/data não tocam nos IGCs.
+ */
+public class FlightLibraryIndex {
+
+    private static final String TAG = "FlightLibraryIndex";
+    private static final int MAGIC = 0x464c4958; // "FLIX"
+    private static final int VERSION = 1;
+
+    /** Resumo de um voo. Datas em yyyymmdd (int), coordenadas em graus * 1e7. */
+    public static final class Entry {
+        public final String path;
+        public final long fileLength, fileModified;
+        public final int date;
+        public final String pilot, glider;
+        public final int startTime, durationSeconds;
+        public final int maxAltitude;
+        public final int minLatE7, maxLatE7, minLonE7, maxLonE7;
+        public final float distanceMeters;
+        public final int fixCount;
+
+        Entry(String path, long fileLength, long fileModified, int date, String pilot, String glider,
+              int startTime, int durationSeconds, int maxAltitude,
+              int minLatE7, int maxLatE7, int minLonE7, int maxLonE7,
+              float distanceMeters, int fixCount) {
+            this.path = path;
+            this.fileLength = fileLength;
+            this.fileModified = fileModified;
+            this.date = date;
+            this.pilot = pilot;
+            this.glider = glider;
+            this.startTime = startTime;
+            this.durationSeconds = durationSeconds;
+            this.maxAltitude = maxAltitude;
+            this.minLatE7 = minLatE7;
+            this.maxLatE7 = maxLatE7;
+            this.minLonE7 = minLonE7;
+            this.maxLonE7 = maxLonE7;
+            this.distanceMeters = distanceMeters;
+            this.fixCount = fixCount;
+        }
+
+        boolean intersects(int minLat, int maxLat, int minLon, int maxLon) {
+            return minLatE7 <= maxLat && maxLatE7 >= minLat && minLonE7 <= maxLon && maxLonE7 >= minLon;
+        }
+    }
+
+    private final File indexFile;
+    private volatile List<Entry> entries = Collections.emptyList();
+
+    public FlightLibraryIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    public List<Entry> getEntries() { return entries; }
+
+    // ===========================
+    //  CONSULTAS (só memória)
+    // ===========================
+
+    /** Voos cuja bounding box cruza a caixa dada (graus * 1e7). */
+    public List<Entry> queryBox(int minLatE7, int maxLatE7, int minLonE7, int maxLonE7) {
+        return query(minLatE7, maxLatE7, minLonE7, maxLonE7, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /** Voos com data em [fromDate, toDate] (yyyymmdd, inclusivo). */
+    public List<Entry> queryDates(int fromDate, int toDate) {
+        return query(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, fromDate, toDate);
+    }
+
+    /** Combinação das duas consultas acima. */
+    public List<Entry> query(int minLatE7, int maxLatE7, int minLonE7, int maxLonE7, int fromDate, int toDate) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.date < fromDate || e.date > toDate) continue;
+            if (!e.intersects(minLatE7, maxLatE7, minLonE7, maxLonE7)) continue;
+            out.add(e);
+        }
+        return out;
+    }
+
+    /** Voo mais recente (data, depois horário de início), ou null com a biblioteca vazia. */
+    public Entry mostRecent() {
+        Entry best = null;
+        for (Entry e : entries) {
+            if (best == null || e.date > best.date || (e.date == best.date && e.startTime > best.startTime)) best = e;
+        }
+        return best;
+    }
+
+    // ===========================
+    //  VARREDURA
+    // ===========================
+
+    /**
+     * Indexa os .igc, .igc.gz e .zip de {@code dir} usando até {@code threads} threads.
+     * Arquivos que não mudaram (tamanho + lastModified) reaproveitam a entrada antiga.
+     * Grava o índice no fim.
+     */
+    public void scan(File dir, int threads) throws IOException, InterruptedException {
+        File[] files = dir.listFiles((d, name) -> isFlightFile(name));
+        if (files == null) files = new File[0];
+
+        Map<String, Entry> previous = new HashMap<>();
+        for (Entry e : entries) previous.put(e.path, e);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Entry>> futures = new ArrayList<>(files.length);
+            for (File f : files) {
+                Entry old = previous.get(f.getPath());
+                if (old != null && old.fileLength == f.length() && old.fileModified == f.lastModified()) {
+                    futures.add(null);
+                    continue;
+                }
+                futures.add(pool.submit(() -> summarize(f)));
+            }
+            List<Entry> result = new ArrayList<>(files.length);
+            for (int i = 0; i < files.length; i++) {
+                Future<Entry> fut = futures.get(i);
+                if (fut == null) {
+                    result.add(previous.get(files[i].getPath()));
+                    continue;
+                }
+                try {
+                    Entry e = fut.get();
+                    if (e != null) result.add(e);
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    // o arquivo fica fora do índice; a próxima varredura tenta de novo
+                    Log.w(TAG, "falha ao indexar " + files[i], ex.getCause());
+                }
+            }
+            entries = Collections.unmodifiableList(result);
+        } finally {
+            pool.shutdownNow();
+        }
+        save();
+    }
+
+    /** Arquivos que a varredura indexa: .igc, .igc.gz e pacotes .zip. */
+    static boolean isFlightFile(String name) {
+        String n = name.toLowerCase(Locale.ROOT);
+        return n.endsWith(".igc") || n.endsWith(".igc.gz") || n.endsWith(".zip");
+    }
+
+    /**
+     * Resumo de um arquivo: H-records + passada rápida nos B-records. O .igc é mapeado; o
+     * compactado passa em stream (do .zip, a primeira entrada .igc, a mesma que a carga lê).
+     */
+    static Entry summarize(File f) throws IOException {
+        Summarizer s = new Summarizer();
+        if (f.getName().toLowerCase(Locale.ROOT).endsWith(".igc")) {
+            ByteBuffer buf = IgcMappedReader.map(f);
+            IgcMappedReader.forEachLine(buf, s);
+        } else {
+            IgcCompressedReader.forEachLine(f, s);
+        }
+        if (s.fixes == 0) return null;
+        return new Entry(f.getPath(), f.length(), f.lastModified(), s.date, s.pilot, s.glider,
+                s.firstTime, s.lastTime - s.firstTime, s.maxAlt,
+                s.minLat, s.maxLat, s.minLon, s.maxLon, (float) s.distance, s.fixes);
+    }
+
+    /** Acumula só o que o índice precisa, sem guardar fixos. */
+    private static final class Summarizer implements IgcMappedReader.LineHandler {
+        final int[] fix = new int[IgcParser.OUT_SIZE];
+        int date = 0;
+        String pilot = "", glider = "";
+        int fixes = 0;
+        int firstTime, lastTime, dayOffset, lastRaw = -1;
+        int maxAlt = Integer.MIN_VALUE;
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        int prevLat, prevLon;
+        double distance;
+
+        @Override
+        public void onLine(ByteBuffer buf, int off, int len) {
+            if (len == 0) return;
+            byte type = buf.get(off);
+            if (type == 'H') {
+                header(buf, off, len);
+            } else if (type == 'B') {
+                if (IgcParser.parseBRecord(buf, off, len, fix) != IgcParser.STATUS_OK) return;
+                int t = fix[IgcParser.OUT_TIME];
+                if (lastRaw >= 0 && t < lastRaw - 43200) dayOffset += 86400;
+                lastRaw = t;
+                t += dayOffset;
+                int lat = fix[IgcParser.OUT_LAT_E7], lon = fix[IgcParser.OUT_LON_E7];
+                if (fixes == 0) {
+                    firstTime = t;
+                } else {
+                    distance += approxDistance(prevLat, prevLon, lat, lon);
+                }
+                lastTime = t;
+                prevLat = lat;
+                prevLon = lon;
+                maxAlt = Math.max(maxAlt, fix[IgcParser.OUT_GNSS_ALT]);
+                minLat = Math.min(minLat, lat); maxLat = Math.max(maxLat, lat);
+                minLon = Math.min(minLon, lon); maxLon = Math.max(maxLon, lon);
+                fixes++;
+            }
+        }
+
+        private void header(ByteBuffer buf, int off, int len) {
+            // HFDTE[DATE:]DDMMYY, HFPLTPILOT[INCHARGE]:nome, HFGTYGLIDERTYPE:modelo (H?xxx: qualquer fonte)
+            if (len < 5) return;
+            byte a = buf.get(off + 2), b = buf.get(off + 3), c = buf.get(off + 4);
+            if (a == 'D' && b == 'T' && c == 'E') {
+                int p = off + 5;
+                int end = off + len;
+                while (p < end && (buf.get(p) < '0' || buf.get(p) > '9')) p++;
+                if (end - p >= 6) {
+                    int dd = twoDigits(buf, p), mm = twoDigits(buf, p + 2), yy = twoDigits(buf, p + 4);
+                    if (dd >= 0 && mm >= 0 && yy >= 0) {
+                        int year = yy < 80 ? 2000 + yy : 1900 + yy;
+                        date = year * 10000 + mm * 100 + dd;
+                    }
+                }
+            } else if (a == 'P' && b == 'L' && c == 'T') {
+                pilot = valueAfterColon(buf, off, len);
+            } else if (a == 'G' && b == 'T' && c == 'Y') {
+                glider = valueAfterColon(buf, off, len);
+            }
+        }
+    }
+
+    /** Distância equiretangular em metros (suficiente para somar trechos de 1 s). */
+    static double approxDistance(int lat1E7, int lon1E7, int lat2E7, int lon2E7) {
+        double lat1 = Math.toRadians(lat1E7 / 1e7), lat2 = Math.toRadians(lat2E7 / 1e7);
+        double dLon = Math.toRadians((lon2E7 - lon1E7) / 1e7);
+        double x = dLon * Math.cos((lat1 + lat2) * 0.5);
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * 6371000.0;
+    }
+
+    private static int twoDigits(ByteBuffer buf, int p) {
+        int d0 = buf.get(p) - '0', d1 = buf.get(p + 1) - '0';
+        if (d0 < 0 || d0 > 9 || d1 < 0 || d1 > 9) return -1;
+        return d0 * 10 + d1;
+    }
+
+    /** Só os H-records viram String (poucas linhas por arquivo). */
+    private static String valueAfterColon(ByteBuffer buf, int off, int len) {
+        int end = off + len;
+        int p = off;
+        while (p < end && buf.get(p) != ':') p++;
+        if (p >= end) return "";
+        p++;
+        byte[] tmp = new byte[end - p];
+        for (int i = 0; i < tmp.length; i++) tmp[i] = buf.get(p + i);
+        return new String(tmp, StandardCharsets.ISO_8859_1).trim();
+    }
+
+    // ===========================
+    //  PERSISTÊNCIA
+    // ===========================
+
+    /** Lê o índice salvo (uma leitura de arquivo pequeno). Sem arquivo ou versão diferente = vazio. */
+    public void load() throws IOException {
+        if (!indexFile.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int n = in.readInt();
+            List<Entry> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                list.add(new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readInt(),
+                        in.readUTF(), in.readUTF(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readFloat(), in.readInt()));
+            }
+            entries = Collections.unmodifiableList(list);
+        }
+    }
+
+    public void save() throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        List<Entry> list = entries;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(list.size());
+            for (Entry e : list) {
+                out.writeUTF(e.path);
+                out.writeLong(e.fileLength);
+                out.writeLong(e.fileModified);
+                out.writeInt(e.date);
+                out.writeUTF(e.pilot);
+                out.writeUTF(e.glider);
+                out.writeInt(e.startTime);
+                out.writeInt(e.durationSeconds);
+                out.writeInt(e.maxAltitude);
+                out.writeInt(e.minLatE7);
+                out.writeInt(e.maxLatE7);
+                out.writeInt(e.minLonE7);
+                out.writeInt(e.maxLonE7);
+                out.writeFloat(e.distanceMeters);
+                out.writeInt(e.fixCount);
+            }
+        }
+        if (!tmp.renameTo(indexFile)) {
+            tmp.delete();
+            throw new IOException("Falha ao gravar índice: " + indexFile);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Classificador online de fases de voo: solo (antes da decolagem), térmica, planeio e
+ * pousado. Cada {@link #update} decide a fase do fixo que acabou de chegar olhando só uma
+ * janela curta do passado (anel de tamanho fixo: memória constante por piloto).
+ *
+ * - Decolagem: deslocamento em 10 s acima de {@link #VELOCIDADE_DECOLAGEM} (m/s) ou
+ *   altitude a mais de {@link #DESNIVEL_DECOLAGEM} da altitude inicial.
+ * - Pouso: em voo, 30 s com deslocamento abaixo de {@link #VELOCIDADE_POUSO} (m/s),
+ *   variação de altitude menor que {@link #DESNIVEL_POUSO} e soma dos trechos abaixo de
+ *   {@link #VELOCIDADE_TRECHOS_POUSO} (m/s; térmica sem deriva desloca pouco, mas percorre).
+ * Os deslocamentos são em linha reta entre as pontas da janela, não a soma dos trechos:
+ * parado no chão o ruído do GPS soma distância, mas não desloca.
+ * - Térmica: soma das mudanças de rumo nos últimos 20 s passa de
+ *   {@link #GIRO_ENTRA_TERMICA} graus; sai quando cai abaixo de {@link #GIRO_SAI_TERMICA}.
+ *
+ * As fases saem como intervalos [from, to) de índices de fixo pelo {@link Listener},
+ * emitidos quando a fase muda (e em {@link #finish()}).
+ */
+public class FlightPhaseClassifier {
+
+    public static final int SOLO = 0;
+    public static final int TERMICA = 1;
+    public static final int PLANEIO = 2;
+    public static final int POUSADO = 3;
+
+    public static final float VELOCIDADE_DECOLAGEM = 4f;   // m/s
+    public static final int DESNIVEL_DECOLAGEM = 50;       // m
+    public static final float VELOCIDADE_POUSO = 1.5f;     // m/s
+    public static final int DESNIVEL_POUSO = 5;            // m
+    public static final float VELOCIDADE_TRECHOS_POUSO = 5f; // m/s
+    public static final float GIRO_ENTRA_TERMICA = 300f;   // graus
+    public static final float GIRO_SAI_TERMICA = 150f;     // graus
+
+    private static final int JANELA_DECOLAGEM_S = 10;
+    private static final int JANELA_GIRO_S = 20;
+    private static final int JANELA_POUSO_S = 30;
+
+    /** Trechos mais curtos que isso não contam para o rumo (ruído do GPS parado). */
+    private static final float TRECHO_MINIMO_RUMO = 1f;
+
+    private static final int CAPACIDADE = 256; // potência de 2; cobre 30 s até ~8 Hz
+    private static final int MASCARA = CAPACIDADE - 1;
+
+    public interface Listener {
+        /** Os fixos [from, toExclusive) ficaram na fase {@code phase}. */
+        void onPhase(int phase, int from, int toExclusive);
+    }
+
+    private final Listener listener;
+
+    // anel: horário, posição, distância acumulada, giro acumulado (graus, com sinal), altitude
+    private final int[] anelTime = new int[CAPACIDADE];
+    private final float[] anelX = new float[CAPACIDADE];
+    private final float[] anelY = new float[CAPACIDADE];
+    private final double[] anelDist = new double[CAPACIDADE];
+    private final double[] anelGiro = new double[CAPACIDADE];
+    private final int[] anelAlt = new int[CAPACIDADE];
+    private long cabeca = 0;
+    private long caudaDecolagem, caudaGiro, caudaPouso;
+
+    private int fixes = 0;
+    private int lastTime, lastAlt, altInicial;
+    private float lastX, lastY;
+    private double distancia = 0, giro = 0;
+    private double ultimoRumo = Double.NaN;
+
+    private int fase = SOLO;
+    private int inicioFase = 0;
+    private int ultimoIndice = -1;
+
+    /** {@code listener} pode ser null quando só a fase devolvida por {@link #update} interessa. */
+    public FlightPhaseClassifier(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Alimenta com o fixo i da trilha (já projetada) e devolve a fase dele. */
+    public int update(FlightTrack t, int i) {
+        return update(i, t.time(i), t.x(i), t.y(i), t.gnssAltitude(i));
+    }
+
+    public int update(int index, int time, float x, float y, int altitude) {
+        if (fixes > 0) {
+            if (time <= lastTime) return marca(index, fase);
+            float dx = x - lastX, dy = y - lastY;
+            double d = Math.sqrt(dx * dx + dy * dy);
+            distancia += d;
+            if (d >= TRECHO_MINIMO_RUMO) {
+                double rumo = Math.toDegrees(Math.atan2(dx, dy));
+                if (!Double.isNaN(ultimoRumo)) {
+                    double delta = rumo - ultimoRumo;
+                    if (delta > 180) delta -= 360; else if (delta < -180) delta += 360;
+                    giro += delta;
+                }
+                ultimoRumo = rumo;
+            }
+        } else {
+            altInicial = altitude;
+        }
+        fixes++;
+        lastTime = time;
+        lastX = x;
+        lastY = y;
+        lastAlt = altitude;
+
+        int slot = (int) (cabeca & MASCARA);
+        anelTime[slot] = time;
+        anelX[slot] = x;
+        anelY[slot] = y;
+        anelDist[slot] = distancia;
+        anelGiro[slot] = giro;
+        anelAlt[slot] = altitude;
+        cabeca++;
+
+        caudaDecolagem = avancaCauda(caudaDecolagem, time - JANELA_DECOLAGEM_S);
+        caudaGiro = avancaCauda(caudaGiro, time - JANELA_GIRO_S);
+        caudaPouso = avancaCauda(caudaPouso, time - JANELA_POUSO_S);
+
+        return marca(index, classifica(time, altitude));
+    }
+
+    /** Fase do último fixo. */
+    public int getPhase() { return fase; }
+
+    public static boolean isAirborne(int phase) {
+        return phase == TERMICA || phase == PLANEIO;
+    }
+
+    /** Fecha o intervalo em andamento (fim da trilha). */
+    public void finish() {
+        if (listener != null && ultimoIndice >= inicioFase) listener.onPhase(fase, inicioFase, ultimoIndice + 1);
+        inicioFase = ultimoIndice + 1;
+    }
+
+    public void reset() {
+        cabeca = 0;
+        caudaDecolagem = caudaGiro = caudaPouso = 0;
+        fixes = 0;
+        distancia = 0;
+        giro = 0;
+        ultimoRumo = Double.NaN;
+        fase = SOLO;
+        inicioFase = 0;
+        ultimoIndice = -1;
+    }
+
+    // -------------------- helpers --------------------
+
+    private int classifica(int time, int altitude) {
+        boolean emVoo = isAirborne(fase);
+        if (!emVoo) {
+            int k = (int) (caudaDecolagem & MASCARA);
+            int dt = time - anelTime[k];
+            boolean rapido = dt >= JANELA_DECOLAGEM_S / 2 && deslocamento(k) / dt > VELOCIDADE_DECOLAGEM;
+            boolean subiu = Math.abs(altitude - altInicial) > DESNIVEL_DECOLAGEM;
+            // depois de pousar, só a velocidade tira do chão (a altitude já é outra)
+            if (rapido || (fase == SOLO && subiu)) return PLANEIO;
+            return fase;
+        }
+
+        int kp = (int) (caudaPouso & MASCARA);
+        int dtp = time - anelTime[kp];
+        if (dtp >= JANELA_POUSO_S - 1
+                && deslocamento(kp) / dtp < VELOCIDADE_POUSO
+                && (distancia - anelDist[kp]) / dtp < VELOCIDADE_TRECHOS_POUSO
+                && Math.abs(altitude - anelAlt[kp]) < DESNIVEL_POUSO) {
+            return POUSADO;
+        }
+
+        double giroJanela = Math.abs(giro - anelGiro[(int) (caudaGiro & MASCARA)]);
+        if (fase == TERMICA) return giroJanela < GIRO_SAI_TERMICA ? PLANEIO : TERMICA;
+        return giroJanela >= GIRO_ENTRA_TERMICA ? TERMICA : PLANEIO;
+    }
+
+    /** Distância em linha reta do slot k até o último fixo. */
+    private double deslocamento(int k) {
+        float dx = lastX - anelX[k], dy = lastY - anelY[k];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private long avancaCauda(long c, int limite) {
+        c = Math.max(c, Math.max(0, cabeca - CAPACIDADE));
+        while (c < cabeca - 1 && anelTime[(int) (c & MASCARA)] < limite) c++;
+        return c;
+    }
+
+    /** Registra a fase do fixo {@code index}, fechando o intervalo anterior se mudou. */
+    private int marca(int index, int novaFase) {
+        if (novaFase != fase) {
+            if (listener != null && index > inicioFase) listener.onPhase(fase, inicioFase, index);
+            fase = novaFase;
+            inicioFase = index;
+        }
+        ultimoIndice = index;
+        return fase;
+    }
+}
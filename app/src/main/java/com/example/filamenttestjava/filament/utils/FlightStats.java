@@ -0,0 +1,157 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Estatísticas de voo incrementais: distância acumulada, velocidade no solo, vario,
+ * planeio e médias em janelas de 10/30/60 s. Cada {@link #update} é O(1) amortizado e
+ * não aloca: o anel guarda (horário, distância acumulada, altitude) por fixo e a média
+ * de uma janela é a diferença entre a ponta e a cauda da janela (somas corridas), com a
+ * cauda de cada janela só andando para frente.
+ *
+ * Uma instância por piloto; um escritor (thread de geometria/leitura) e leitores via
+ * {@link #snapshot(Snapshot)}.
+ */
+public class FlightStats {
+
+    /** Durações das janelas, em segundos; índices {@link #J10}, {@link #J30}, {@link #J60}. */
+    public static final int[] JANELAS_S = {10, 30, 60};
+    public static final int J10 = 0, J30 = 1, J60 = 2;
+
+    /** Fixos guardados no anel (potência de 2). 1024 cobre 60 s até ~17 Hz; acima disso a janela encurta. */
+    private static final int CAPACIDADE = 1024;
+    private static final int MASCARA = CAPACIDADE - 1;
+
+    /** Cópia primitiva para a UI/coloração. Reaproveite a mesma instância. */
+    public static final class Snapshot {
+        public int fixes;
+        public int time;
+        public int altitude;
+        public int maxAltitude;
+        public double distance;       // m, soma dos trechos
+        public double totalGain;      // m, soma das subidas
+        public float groundSpeed;     // m/s, último trecho
+        public float climbRate;       // m/s, último trecho
+        public float glideRatio;      // último trecho; NaN se não estiver descendo
+        public final float[] avgSpeed = new float[JANELAS_S.length];
+        public final float[] avgClimb = new float[JANELAS_S.length];
+        public final float[] avgGlide = new float[JANELAS_S.length];
+    }
+
+    // anel
+    private final int[] anelTime = new int[CAPACIDADE];
+    private final double[] anelDist = new double[CAPACIDADE];
+    private final int[] anelAlt = new int[CAPACIDADE];
+    private long cabeca = 0;                          // total de fixos já gravados
+    private final long[] cauda = new long[JANELAS_S.length];
+
+    // estado corrente
+    private int fixes = 0;
+    private int lastTime;
+    private float lastX, lastY;
+    private int lastAlt;
+    private int maxAlt = Integer.MIN_VALUE;
+    private double distance = 0;
+    private double totalGain = 0;
+    private float groundSpeed = 0, climbRate = 0, glideRatio = Float.NaN;
+    private final float[] avgSpeed = new float[JANELAS_S.length];
+    private final float[] avgClimb = new float[JANELAS_S.length];
+    private final float[] avgGlide = new float[JANELAS_S.length];
+
+    /** Alimenta com o fixo i da trilha (já projetada; altitude GNSS). */
+    public void update(FlightTrack t, int i) {
+        update(t.time(i), t.x(i), t.y(i), t.gnssAltitude(i));
+    }
+
+    /**
+     * Novo fixo: horário em segundos (monotônico), posição em metros no plano local e
+     * altitude em metros. Fixo com horário repetido ou para trás é ignorado.
+     */
+    public synchronized void update(int time, float x, float y, int altitude) {
+        if (fixes > 0) {
+            int dt = time - lastTime;
+            if (dt <= 0) return;
+            float dx = x - lastX, dy = y - lastY;
+            double d = Math.sqrt(dx * dx + dy * dy);
+            int dAlt = altitude - lastAlt;
+            distance += d;
+            if (dAlt > 0) totalGain += dAlt;
+            groundSpeed = (float) (d / dt);
+            climbRate = (float) dAlt / dt;
+            glideRatio = dAlt < 0 ? (float) (d / -dAlt) : Float.NaN;
+        }
+        fixes++;
+        lastTime = time;
+        lastX = x;
+        lastY = y;
+        lastAlt = altitude;
+        if (altitude > maxAlt) maxAlt = altitude;
+
+        int slot = (int) (cabeca & MASCARA);
+        anelTime[slot] = time;
+        anelDist[slot] = distance;
+        anelAlt[slot] = altitude;
+        cabeca++;
+
+        long maisAntigo = Math.max(0, cabeca - CAPACIDADE);
+        for (int w = 0; w < JANELAS_S.length; w++) {
+            long c = Math.max(cauda[w], maisAntigo);
+            int limite = time - JANELAS_S[w];
+            // a cauda é o fixo mais antigo ainda dentro da janela
+            while (c < cabeca - 1 && anelTime[(int) (c & MASCARA)] < limite) c++;
+            cauda[w] = c;
+
+            int k = (int) (c & MASCARA);
+            int dt = time - anelTime[k];
+            if (dt <= 0) {
+                avgSpeed[w] = 0;
+                avgClimb[w] = 0;
+                avgGlide[w] = Float.NaN;
+                continue;
+            }
+            double d = distance - anelDist[k];
+            int queda = anelAlt[k] - altitude;
+            avgSpeed[w] = (float) (d / dt);
+            avgClimb[w] = (float) -queda / dt;
+            avgGlide[w] = queda > 0 ? (float) (d / queda) : Float.NaN;
+        }
+    }
+
+    /** Copia o estado atual para {@code out} (sem alocar). */
+    public synchronized void snapshot(Snapshot out) {
+        out.fixes = fixes;
+        out.time = lastTime;
+        out.altitude = lastAlt;
+        out.maxAltitude = maxAlt;
+        out.distance = distance;
+        out.totalGain = totalGain;
+        out.groundSpeed = groundSpeed;
+        out.climbRate = climbRate;
+        out.glideRatio = glideRatio;
+        System.arraycopy(avgSpeed, 0, out.avgSpeed, 0, avgSpeed.length);
+        System.arraycopy(avgClimb, 0, out.avgClimb, 0, avgClimb.length);
+        System.arraycopy(avgGlide, 0, out.avgGlide, 0, avgGlide.length);
+    }
+
+    // leituras rápidas para o escritor (mesma thread do update)
+    public synchronized float getClimbRate()              { return climbRate; }
+    public synchronized float getAverageClimb(int janela) { return avgClimb[janela]; }
+    public synchronized float getAverageSpeed(int janela) { return avgSpeed[janela]; }
+    public synchronized double getDistance()              { return distance; }
+
+    /** Esquece tudo (trilha recomeçou ou seek para trás). */
+    public synchronized void reset() {
+        cabeca = 0;
+        for (int w = 0; w < cauda.length; w++) {
+            cauda[w] = 0;
+            avgSpeed[w] = 0;
+            avgClimb[w] = 0;
+            avgGlide[w] = Float.NaN;
+        }
+        fixes = 0;
+        maxAlt = Integer.MIN_VALUE;
+        distance = 0;
+        totalGain = 0;
+        groundSpeed = 0;
+        climbRate = 0;
+        glideRatio = Float.NaN;
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.util.Arrays;
+
+/**
+ * Trilha de voo em colunas primitivas (structure-of-arrays), sem um objeto por fixo.
+ * Cada fixo ocupa ~24 bytes: tempo (int), lat/lon em graus * 1e7 (int), altitudes de
+ * pressão e GNSS (short) e a posição projetada x/y em metros (float).
+ *
+ * Extensões do I-record (TDS, WSP, WDI, GND) ficam em colunas opcionais, criadas só
+ * quando o arquivo as traz; LAD/LOD já chegam embutidas na lat/lon.
+ *
+ * Um único escritor (append) e vários leitores: {@link #size()} é publicado por último,
+ * então quem lê {@code size()} e depois acessa índices menores sempre vê dados completos.
+ */
+public class FlightTrack {
+
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private int[] time;
+    private int[] latE7;
+    private int[] lonE7;
+    private short[] pressAlt;
+    private short[] gnssAlt;
+    private float[] x;
+    private float[] y;
+
+    // colunas opcionais (null até aparecer o primeiro valor); ausente = MISSING_*
+    private byte[] tenths;      // TDS
+    private short[] windSpeed;  // WSP
+    private short[] windDir;    // WDI
+    private short[] groundAlt;  // GND
+
+    private static final byte MISSING_BYTE = Byte.MIN_VALUE;
+    private static final short MISSING_SHORT = Short.MIN_VALUE;
+
+    private volatile int size = 0;
+
+    // virada da meia-noite: B-records só têm HHMMSS
+    private int dayOffset = 0;
+    private int lastRawTime = -1;
+
+    public FlightTrack() {
+        this(1024);
+    }
+
+    public FlightTrack(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        time     = new int[cap];
+        latE7    = new int[cap];
+        lonE7    = new int[cap];
+        pressAlt = new short[cap];
+        gnssAlt  = new short[cap];
+        x        = new float[cap];
+        y        = new float[cap];
+    }
+
+    // -------------------- escrita --------------------
+
+    /**
+     * Acrescenta um fixo e retorna seu índice. {@code timeOfDay} é HHMMSS em segundos;
+     * quando o relógio volta mais de 12h, considera que o voo passou da meia-noite.
+     * x/y começam como NaN até {@link #setProjected}.
+     */
+    public int append(int timeOfDay, int latE7, int lonE7, int pressAlt, int gnssAlt) {
+        int i = write(timeOfDay, latE7, lonE7, pressAlt, gnssAlt);
+        writeExtensions(i, IgcParser.NO_VALUE, IgcParser.NO_VALUE, IgcParser.NO_VALUE, IgcParser.NO_VALUE);
+        size = i + 1; // publica por último
+        return i;
+    }
+
+    /** Acrescenta a saída de {@link IgcParser#parseBRecord} (índices IgcParser.OUT_*), com extensões. */
+    public int appendFix(int[] fix) {
+        int i = write(fix[IgcParser.OUT_TIME],
+                fix[IgcParser.OUT_LAT_E7],
+                fix[IgcParser.OUT_LON_E7],
+                fix[IgcParser.OUT_PRESS_ALT],
+                fix[IgcParser.OUT_GNSS_ALT]);
+        writeExtensions(i, fix[IgcParser.OUT_TDS], fix[IgcParser.OUT_WSP],
+                fix[IgcParser.OUT_WDI], fix[IgcParser.OUT_GND]);
+        size = i + 1;
+        return i;
+    }
+
+    /** Grava as colunas fixas do próximo fixo, sem publicar o novo size. */
+    private int write(int timeOfDay, int latE7, int lonE7, int pressAlt, int gnssAlt) {
+        if (lastRawTime >= 0 && timeOfDay < lastRawTime - SECONDS_PER_DAY / 2) {
+            dayOffset += SECONDS_PER_DAY;
+        }
+        lastRawTime = timeOfDay;
+
+        int i = size;
+        ensureCapacity(i + 1);
+        this.time[i]     = timeOfDay + dayOffset;
+        this.latE7[i]    = latE7;
+        this.lonE7[i]    = lonE7;
+        this.pressAlt[i] = clampShort(pressAlt);
+        this.gnssAlt[i]  = clampShort(gnssAlt);
+        this.x[i]        = Float.NaN;
+        this.y[i]        = Float.NaN;
+        return i;
+    }
+
+    private void writeExtensions(int i, int tds, int wsp, int wdi, int gnd) {
+        if (tds != IgcParser.NO_VALUE && tenths == null)    tenths    = newByteColumn();
+        if (wsp != IgcParser.NO_VALUE && windSpeed == null) windSpeed = newShortColumn();
+        if (wdi != IgcParser.NO_VALUE && windDir == null)   windDir   = newShortColumn();
+        if (gnd != IgcParser.NO_VALUE && groundAlt == null) groundAlt = newShortColumn();
+
+        if (tenths != null)    tenths[i]    = tds == IgcParser.NO_VALUE ? MISSING_BYTE : (byte) Math.max(0, Math.min(9, tds));
+        if (windSpeed != null) windSpeed[i] = toColumn(wsp);
+        if (windDir != null)   windDir[i]   = toColumn(wdi);
+        if (groundAlt != null) groundAlt[i] = toColumn(gnd);
+    }
+
+    /**
+     * Emenda todos os fixos de {@code other} no fim desta trilha (cópia por coluna).
+     * A virada da meia-noite é refeita na emenda, então segmentos montados em paralelo
+     * a partir de pedaços do mesmo arquivo resultam na mesma trilha do parse sequencial.
+     */
+    public void appendAll(FlightTrack other) {
+        int n = other.size;
+        if (n == 0) return;
+        int base = size;
+
+        // o primeiro tempo do segmento é bruto (dayOffset dele começa em 0)
+        int firstRaw = other.time[0];
+        if (lastRawTime >= 0 && firstRaw < lastRawTime - SECONDS_PER_DAY / 2) {
+            dayOffset += SECONDS_PER_DAY;
+        }
+        int shift = dayOffset;
+
+        ensureCapacity(base + n);
+        for (int j = 0; j < n; j++) time[base + j] = other.time[j] + shift;
+        System.arraycopy(other.latE7, 0, latE7, base, n);
+        System.arraycopy(other.lonE7, 0, lonE7, base, n);
+        System.arraycopy(other.pressAlt, 0, pressAlt, base, n);
+        System.arraycopy(other.gnssAlt, 0, gnssAlt, base, n);
+        System.arraycopy(other.x, 0, x, base, n);
+        System.arraycopy(other.y, 0, y, base, n);
+
+        if (other.tenths != null && tenths == null)       tenths    = newByteColumn();
+        if (other.windSpeed != null && windSpeed == null) windSpeed = newShortColumn();
+        if (other.windDir != null && windDir == null)     windDir   = newShortColumn();
+        if (other.groundAlt != null && groundAlt == null) groundAlt = newShortColumn();
+        if (tenths != null) {
+            if (other.tenths != null) System.arraycopy(other.tenths, 0, tenths, base, n);
+            else Arrays.fill(tenths, base, base + n, MISSING_BYTE);
+        }
+        copyOrMissing(other.windSpeed, windSpeed, base, n);
+        copyOrMissing(other.windDir, windDir, base, n);
+        copyOrMissing(other.groundAlt, groundAlt, base, n);
+
+        dayOffset += other.dayOffset;
+        lastRawTime = other.lastRawTime;
+        size = base + n; // publica por último
+    }
+
+    private static void copyOrMissing(short[] src, short[] dst, int base, int n) {
+        if (dst == null) return;
+        if (src != null) System.arraycopy(src, 0, dst, base, n);
+        else Arrays.fill(dst, base, base + n, MISSING_SHORT);
+    }
+
+    /** Grava a posição projetada (metros em relação à origem da projeção). */
+    public void setProjected(int i, float px, float py) {
+        checkIndex(i);
+        x[i] = px;
+        y[i] = py;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        int cap = time.length;
+        if (minCapacity <= cap) return;
+        int newCap = Math.max(minCapacity, cap + (cap >> 1));
+        time     = Arrays.copyOf(time, newCap);
+        latE7    = Arrays.copyOf(latE7, newCap);
+        lonE7    = Arrays.copyOf(lonE7, newCap);
+        pressAlt = Arrays.copyOf(pressAlt, newCap);
+        gnssAlt  = Arrays.copyOf(gnssAlt, newCap);
+        x        = Arrays.copyOf(x, newCap);
+        y        = Arrays.copyOf(y, newCap);
+        if (tenths != null)    tenths    = Arrays.copyOf(tenths, newCap);
+        if (windSpeed != null) windSpeed = Arrays.copyOf(windSpeed, newCap);
+        if (windDir != null)   windDir   = Arrays.copyOf(windDir, newCap);
+        if (groundAlt != null) groundAlt = Arrays.copyOf(groundAlt, newCap);
+    }
+
+    public void clear() {
+        size = 0;
+        dayOffset = 0;
+        lastRawTime = -1;
+    }
+
+    // -------------------- leitura (acesso aleatório) --------------------
+
+    public int size()                 { return size; }
+    public boolean isEmpty()          { return size == 0; }
+
+    /** Segundos desde a meia-noite UTC do primeiro dia (monotônico entre dias). */
+    public int time(int i)            { checkIndex(i); return time[i]; }
+    public int latE7(int i)           { checkIndex(i); return latE7[i]; }
+    public int lonE7(int i)           { checkIndex(i); return lonE7[i]; }
+    public double latitude(int i)     { checkIndex(i); return latE7[i] / 1e7; }
+    public double longitude(int i)    { checkIndex(i); return lonE7[i] / 1e7; }
+    public int pressureAltitude(int i){ checkIndex(i); return pressAlt[i]; }
+    public int gnssAltitude(int i)    { checkIndex(i); return gnssAlt[i]; }
+    public float x(int i)             { checkIndex(i); return x[i]; }
+    public float y(int i)             { checkIndex(i); return y[i]; }
+
+    // extensões: IgcParser.NO_VALUE quando o arquivo não trouxe o campo
+    public boolean hasTenths()         { return tenths != null; }
+    public boolean hasWind()           { return windSpeed != null && windDir != null; }
+    public boolean hasGroundAltitude() { return groundAlt != null; }
+
+    public int tenthsOfSecond(int i) {
+        checkIndex(i);
+        return tenths == null || tenths[i] == MISSING_BYTE ? IgcParser.NO_VALUE : tenths[i];
+    }
+    public int windSpeed(int i)       { checkIndex(i); return fromColumn(windSpeed, i); }
+    public int windDirection(int i)   { checkIndex(i); return fromColumn(windDir, i); }
+    public int groundAltitude(int i)  { checkIndex(i); return fromColumn(groundAlt, i); }
+
+    /** Altura sobre o terreno (GNSS - GND), ou NO_VALUE sem GND. */
+    public int heightAboveGround(int i) {
+        int gnd = groundAltitude(i);
+        return gnd == IgcParser.NO_VALUE ? IgcParser.NO_VALUE : gnssAlt[i] - gnd;
+    }
+
+    // -------------------- leitura (colunas inteiras) --------------------
+    // Os arrays podem ser maiores que size(); só os primeiros size() são válidos.
+    // Não guarde a referência: um append que cresce a trilha troca o array.
+
+    public int[] timeColumn()         { return time; }
+    public int[] latE7Column()        { return latE7; }
+    public int[] lonE7Column()        { return lonE7; }
+    public short[] pressAltColumn()   { return pressAlt; }
+    public short[] gnssAltColumn()    { return gnssAlt; }
+    public float[] xColumn()          { return x; }
+    public float[] yColumn()          { return y; }
+    /** Colunas opcionais: null quando o arquivo não traz a extensão; ausente = MIN_VALUE. */
+    public byte[] tenthsColumn()      { return tenths; }
+    public short[] windSpeedColumn()  { return windSpeed; }
+    public short[] windDirColumn()    { return windDir; }
+    public short[] groundAltColumn()  { return groundAlt; }
+
+    // -------------------- helpers --------------------
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("fixo " + i + " de " + size);
+    }
+
+    private byte[] newByteColumn() {
+        byte[] c = new byte[time.length];
+        Arrays.fill(c, MISSING_BYTE);
+        return c;
+    }
+
+    private short[] newShortColumn() {
+        short[] c = new short[time.length];
+        Arrays.fill(c, MISSING_SHORT);
+        return c;
+    }
+
+    private static short toColumn(int v) {
+        if (v == IgcParser.NO_VALUE) return MISSING_SHORT;
+        return (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, v));
+    }
+
+    private static int fromColumn(short[] c, int i) {
+        return c == null || c[i] == MISSING_SHORT ? IgcParser.NO_VALUE : c[i];
+    }
+
+    private static short clampShort(int v) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Cache binário (.igcb) de uma trilha já interpretada, para não reler o texto IGC a cada abertura.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   "IGCB" | versão | tamanho e lastModified do IGC de origem | nº de fixos | flags
+ *   bounds: lat/lon min/max (1e-7 grau), altitude GNSS min/max | origem da projeção (lat/lon 1e-7)
+ *   tabela de colunas: (offset, bytes) x COLUMN_COUNT
+ *   colunas: deltas em zigzag-varint (tempo, lat, lon, alt. pressão, alt. GNSS, TDS, WSP, WDI, GND)
+ * </pre>
+ * Cada fixo costuma caber em ~10 bytes, contra ~50 do B-record em texto.
+ * O arquivo é aberto com mmap; o cabeçalho fica disponível na hora e as colunas só são
+ * decodificadas sob demanda, em faixas ({@link Cache#decoder()}) ou tudo de uma vez
+ * ({@link Cache#decodeInto(FlightTrack)}).
+ */
+public final class IgcBinaryCache {
+    private IgcBinaryCache() {}
+
+    public static final String EXTENSION = ".igcb";
+
+    private static final int MAGIC = 0x42434749; // "IGCB" em little-endian
+    private static final int VERSION = 1;
+
+    private static final int COL_TIME = 0, COL_LAT = 1, COL_LON = 2, COL_PRESS = 3, COL_GNSS = 4;
+    private static final int COL_TDS = 5, COL_WSP = 6, COL_WDI = 7, COL_GND = 8;
+    private static final int COLUMN_COUNT = 9;
+
+    private static final int FLAG_TDS = 1, FLAG_WSP = 2, FLAG_WDI = 4, FLAG_GND = 8;
+
+    // magic, versão, srcLen, srcModified, n, flags, 6 bounds, 2 origem, tabela
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 6 * 4 + 2 * 4 + COLUMN_COUNT * 8;
+
+    /** Arquivo .igcb ao lado do IGC (ex.: voo.igc -> voo.igcb). */
+    public static File sidecarFor(File igc) {
+        String name = igc.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(igc.getParentFile(), base + EXTENSION);
+    }
+
+    // ===========================
+    //  ESCRITA
+    // ===========================
+
+    /**
+     * Grava {@code track} em {@code out} (arquivo temporário + rename, nunca deixa cache pela metade).
+     * {@code sourceLength}/{@code sourceModified} identificam o IGC de origem para {@link Cache#isFreshFor}.
+     */
+    public static void write(FlightTrack track, File out, long sourceLength, long sourceModified) throws IOException {
+        final int n = track.size();
+        VarintWriter[] cols = new VarintWriter[COLUMN_COUNT];
+        for (int c = 0; c < COLUMN_COUNT; c++) cols[c] = new VarintWriter(Math.max(64, n * 2));
+
+        int flags = 0;
+        if (track.hasTenths())         flags |= FLAG_TDS;
+        if (track.windSpeedColumn() != null) flags |= FLAG_WSP;
+        if (track.windDirColumn() != null)   flags |= FLAG_WDI;
+        if (track.hasGroundAltitude()) flags |= FLAG_GND;
+
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        int minAlt = Integer.MAX_VALUE, maxAlt = Integer.MIN_VALUE;
+
+        int[] time = track.timeColumn(), lat = track.latE7Column(), lon = track.lonE7Column();
+        short[] press = track.pressAltColumn(), gnss = track.gnssAltColumn();
+        byte[] tds = track.tenthsColumn();
+        short[] wsp = track.windSpeedColumn(), wdi = track.windDirColumn(), gnd = track.groundAltColumn();
+
+        int pTime = 0, pLat = 0, pLon = 0, pPress = 0, pGnss = 0, pTds = 0, pWsp = 0, pWdi = 0, pGnd = 0;
+        for (int i = 0; i < n; i++) {
+            cols[COL_TIME].putDelta(time[i] - pTime);   pTime = time[i];
+            cols[COL_LAT].putDelta(lat[i] - pLat);      pLat = lat[i];
+            cols[COL_LON].putDelta(lon[i] - pLon);      pLon = lon[i];
+            cols[COL_PRESS].putDelta(press[i] - pPress); pPress = press[i];
+            cols[COL_GNSS].putDelta(gnss[i] - pGnss);   pGnss = gnss[i];
+            if (tds != null) { cols[COL_TDS].putDelta(tds[i] - pTds); pTds = tds[i]; }
+            if (wsp != null) { cols[COL_WSP].putDelta(wsp[i] - pWsp); pWsp = wsp[i]; }
+            if (wdi != null) { cols[COL_WDI].putDelta(wdi[i] - pWdi); pWdi = wdi[i]; }
+            if (gnd != null) { cols[COL_GND].putDelta(gnd[i] - pGnd); pGnd = gnd[i]; }
+
+            minLat = Math.min(minLat, lat[i]); maxLat = Math.max(maxLat, lat[i]);
+            minLon = Math.min(minLon, lon[i]); maxLon = Math.max(maxLon, lon[i]);
+            minAlt = Math.min(minAlt, gnss[i]); maxAlt = Math.max(maxAlt, gnss[i]);
+        }
+        if (n == 0) { minLat = maxLat = minLon = maxLon = minAlt = maxAlt = 0; }
+
+        int body = 0;
+        for (VarintWriter w : cols) body += w.size;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + body).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putLong(sourceLength).putLong(sourceModified)
+                .putInt(n).putInt(flags)
+                .putInt(minLat).putInt(maxLat).putInt(minLon).putInt(maxLon).putInt(minAlt).putInt(maxAlt)
+                .putInt(n > 0 ? lat[0] : 0).putInt(n > 0 ? lon[0] : 0);
+        int offset = HEADER_BYTES;
+        for (VarintWriter w : cols) {
+            buf.putInt(offset).putInt(w.size);
+            offset += w.size;
+        }
+        for (VarintWriter w : cols) buf.put(w.bytes, 0, w.size);
+        buf.flip();
+
+        File tmp = new File(out.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel ch = fos.getChannel()) {
+            while (buf.hasRemaining()) ch.write(buf);
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(out)) {
+            tmp.delete();
+            throw new IOException("Falha ao gravar cache: " + out);
+        }
+    }
+
+    // ===========================
+    //  LEITURA
+    // ===========================
+
+    /**
+     * Abre (mmap) um .igcb; retorna null se não existir, não for desta versão ou se as
+     * colunas do cabeçalho saírem do arquivo (gravação cortada, lixo).
+     */
+    public static Cache open(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_BYTES) return null;
+        MappedByteBuffer map;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return null;
+        Cache c = new Cache(map);
+        return c.colunasValidas() ? c : null;
+    }
+
+    /**
+     * Abre o cache só se ele corresponder ao IGC de origem (tamanho + lastModified, ou outra
+     * versão que o chamador use no lugar); nada é decodificado ainda.
+     */
+    public static Cache openIfFresh(File cacheFile, long sourceLength, long sourceModified) throws IOException {
+        Cache c = open(cacheFile);
+        return c != null && c.isFreshFor(sourceLength, sourceModified) ? c : null;
+    }
+
+    /**
+     * Atalho: lê a trilha do cache se ele existir e corresponder ao IGC de origem
+     * (tamanho + lastModified); senão retorna null e o chamador faz o parse do texto.
+     */
+    public static FlightTrack readIfFresh(File cacheFile, long sourceLength, long sourceModified) throws IOException {
+        Cache c = openIfFresh(cacheFile, sourceLength, sourceModified);
+        if (c == null) return null;
+        FlightTrack t = new FlightTrack(c.getFixCount());
+        c.decodeInto(t);
+        return t;
+    }
+
+    /** Cabeçalho já lido + colunas ainda codificadas no mapeamento. */
+    public static final class Cache {
+        private final ByteBuffer map;
+        private final long sourceLength, sourceModified;
+        private final int fixCount, flags;
+        private final int minLatE7, maxLatE7, minLonE7, maxLonE7, minAlt, maxAlt;
+        private final int originLatE7, originLonE7;
+        private final int[] colOffset = new int[COLUMN_COUNT];
+        private final int[] colBytes = new int[COLUMN_COUNT];
+
+        private Cache(ByteBuffer map) {
+            this.map = map;
+            int p = 8;
+            sourceLength = map.getLong(p);   p += 8;
+            sourceModified = map.getLong(p); p += 8;
+            fixCount = map.getInt(p);        p += 4;
+            flags = map.getInt(p);           p += 4;
+            minLatE7 = map.getInt(p); maxLatE7 = map.getInt(p + 4);
+            minLonE7 = map.getInt(p + 8); maxLonE7 = map.getInt(p + 12);
+            minAlt = map.getInt(p + 16); maxAlt = map.getInt(p + 20);
+            p += 24;
+            originLatE7 = map.getInt(p); originLonE7 = map.getInt(p + 4);
+            p += 8;
+            for (int c = 0; c < COLUMN_COUNT; c++, p += 8) {
+                colOffset[c] = map.getInt(p);
+                colBytes[c] = map.getInt(p + 4);
+            }
+        }
+
+        /** Contagem não negativa e cada coluna inteira depois do cabeçalho, dentro do mapeamento. */
+        private boolean colunasValidas() {
+            if (fixCount < 0) return false;
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                if (colOffset[c] < HEADER_BYTES || colBytes[c] < 0
+                        || (long) colOffset[c] + colBytes[c] > map.capacity()) return false;
+            }
+            return true;
+        }
+
+        public boolean isFreshFor(long length, long modified) {
+            return sourceLength == length && sourceModified == modified;
+        }
+
+        public int getFixCount()    { return fixCount; }
+        public int getMinLatE7()    { return minLatE7; }
+        public int getMaxLatE7()    { return maxLatE7; }
+        public int getMinLonE7()    { return minLonE7; }
+        public int getMaxLonE7()    { return maxLonE7; }
+        public int getMinAltitude() { return minAlt; }
+        public int getMaxAltitude() { return maxAlt; }
+        public int getOriginLatE7() { return originLatE7; }
+        public int getOriginLonE7() { return originLonE7; }
+
+        /**
+         * Projeção com a origem gravada (o primeiro fixo): a mesma de
+         * {@link ProjecaoLocal#origemEm}, sem precisar decodificar nada antes.
+         */
+        public ProjecaoLocal projecao() {
+            return new ProjecaoLocal(originLatE7 / 1e7, originLonE7 / 1e7);
+        }
+
+        /** Decodifica todas as colunas, fixo a fixo, direto para {@code track} (x/y ficam NaN). */
+        public void decodeInto(FlightTrack track) {
+            decoder().decodeInto(track, fixCount);
+        }
+
+        /** Leitura em faixas: cada {@link Decoder#decodeInto} continua de onde a anterior parou. */
+        public Decoder decoder() {
+            return new Decoder(this);
+        }
+
+        private VarintReader reader(int col) {
+            return new VarintReader(map, colOffset[col], colOffset[col] + colBytes[col]);
+        }
+    }
+
+    /**
+     * Cursor sobre as colunas de um {@link Cache}: decodifica só os próximos fixos pedidos,
+     * então a carga pode entregar os primeiros à tela antes de ler o resto do arquivo.
+     */
+    public static final class Decoder {
+        private final Cache cache;
+        private final VarintReader time, lat, lon, press, gnss, tds, wsp, wdi, gnd;
+        private final int[] fix = new int[IgcParser.OUT_SIZE];
+        private int vTime, vLat, vLon, vPress, vGnss, vTds, vWsp, vWdi, vGnd;
+        private int next = 0;
+
+        private Decoder(Cache c) {
+            cache = c;
+            time = c.reader(COL_TIME); lat = c.reader(COL_LAT); lon = c.reader(COL_LON);
+            press = c.reader(COL_PRESS); gnss = c.reader(COL_GNSS);
+            tds = (c.flags & FLAG_TDS) != 0 ? c.reader(COL_TDS) : null;
+            wsp = (c.flags & FLAG_WSP) != 0 ? c.reader(COL_WSP) : null;
+            wdi = (c.flags & FLAG_WDI) != 0 ? c.reader(COL_WDI) : null;
+            gnd = (c.flags & FLAG_GND) != 0 ? c.reader(COL_GND) : null;
+            Arrays.fill(fix, IgcParser.NO_VALUE);
+        }
+
+        /** Índice (no cache) do próximo fixo a decodificar. */
+        public int position()  { return next; }
+        public int remaining() { return cache.fixCount - next; }
+
+        /** Acrescenta até {@code max} fixos em {@code track} (x/y ficam NaN); devolve quantos. */
+        public int decodeInto(FlightTrack track, int max) {
+            int n = Math.min(max, remaining());
+            track.ensureCapacity(track.size() + n);
+            for (int k = 0; k < n; k++) {
+                vTime += time.nextDelta();
+                vLat += lat.nextDelta();
+                vLon += lon.nextDelta();
+                vPress += press.nextDelta();
+                vGnss += gnss.nextDelta();
+                // o tempo já vem sem a virada da meia-noite; volta para o relógio do dia
+                fix[IgcParser.OUT_TIME] = vTime % 86400;
+                fix[IgcParser.OUT_LAT_E7] = vLat;
+                fix[IgcParser.OUT_LON_E7] = vLon;
+                fix[IgcParser.OUT_PRESS_ALT] = vPress;
+                fix[IgcParser.OUT_GNSS_ALT] = vGnss;
+                if (tds != null) { vTds += tds.nextDelta(); fix[IgcParser.OUT_TDS] = missingByte(vTds); }
+                if (wsp != null) { vWsp += wsp.nextDelta(); fix[IgcParser.OUT_WSP] = missingShort(vWsp); }
+                if (wdi != null) { vWdi += wdi.nextDelta(); fix[IgcParser.OUT_WDI] = missingShort(vWdi); }
+                if (gnd != null) { vGnd += gnd.nextDelta(); fix[IgcParser.OUT_GND] = missingShort(vGnd); }
+                track.appendFix(fix);
+            }
+            next += n;
+            return n;
+        }
+    }
+
+    private static int missingByte(int v)  { return v == Byte.MIN_VALUE ? IgcParser.NO_VALUE : v; }
+    private static int missingShort(int v) { return v == Short.MIN_VALUE ? IgcParser.NO_VALUE : v; }
+
+    // ===========================
+    //  VARINT (zigzag)
+    // ===========================
+
+    private static final class VarintWriter {
+        byte[] bytes;
+        int size;
+
+        VarintWriter(int capacity) { bytes = new byte[capacity]; }
+
+        void putDelta(int delta) {
+            int v = (delta << 1) ^ (delta >> 31); // zigzag: pequenos negativos viram pequenos positivos
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((v & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+    }
+
+    private static final class VarintReader {
+        private final ByteBuffer buf;
+        private int p;
+        private final int end;
+
+        VarintReader(ByteBuffer buf, int start, int end) {
+            this.buf = buf;
+            this.p = start;
+            this.end = end;
+        }
+
+        int nextDelta() {
+            int v = 0, shift = 0;
+            while (p < end) {
+                int b = buf.get(p++);
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+                shift += 7;
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
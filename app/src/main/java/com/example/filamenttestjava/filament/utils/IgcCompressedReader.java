@@ -0,0 +1,170 @@
+package com.example.filamenttestjava.filament.utils;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Importa IGCs compactados (.igc.gz e pacotes .zip de prova) sem extrair nada para disco.
+ * O stream descomprimido cai direto no buffer do {@link IgcLineAssembler} e os B-records
+ * são interpretados à medida que os bytes chegam: memória constante, sem byte[] do
+ * arquivo inteiro. No zip, cada entrada .igc vira a sua própria {@link FlightTrack}.
+ */
+public final class IgcCompressedReader {
+    private IgcCompressedReader() {}
+
+    private static final int INFLATE_BUFFER = 32 * 1024;
+
+    /** Recebe as trilhas de um pacote, uma por entrada. */
+    public interface EntryListener {
+        /**
+         * Trilha que vai receber a entrada {@code name}; {@code null} pula a entrada.
+         * O padrão aceita só arquivos .igc.
+         */
+        default FlightTrack newTrack(String name) {
+            return name.toLowerCase(Locale.ROOT).endsWith(".igc") ? new FlightTrack(4096) : null;
+        }
+
+        /** A entrada terminou de ser lida. */
+        void onTrack(String name, FlightTrack track, int badRecords);
+    }
+
+    /** Lê um .igc.gz para {@code track}. Retorna a quantidade de B-records ruins. */
+    public static int readGzip(InputStream in, FlightTrack track) throws IOException {
+        IgcTrackBuilder builder = new IgcTrackBuilder(track);
+        IgcLineAssembler assembler = new IgcLineAssembler(builder);
+        try (GZIPInputStream gz = new GZIPInputStream(in, INFLATE_BUFFER)) {
+            drain(gz, assembler);
+        }
+        return builder.getBadRecords();
+    }
+
+    /**
+     * Percorre as entradas do zip entregando uma trilha por entrada. O buffer de linhas
+     * é o mesmo para todas; só a trilha e a tabela de extensões (I-record) mudam.
+     */
+    public static void readZip(InputStream in, EntryListener listener) throws IOException {
+        Redirect redirect = new Redirect();
+        IgcLineAssembler assembler = new IgcLineAssembler(redirect);
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, INFLATE_BUFFER))) {
+            ZipEntry e;
+            while ((e = zip.getNextEntry()) != null) {
+                if (e.isDirectory()) continue;
+                String name = e.getName();
+                FlightTrack track = listener.newTrack(name);
+                if (track == null) continue;
+                redirect.target = new IgcTrackBuilder(track);
+                assembler.reset();
+                drain(zip, assembler);
+                listener.onTrack(name, track, redirect.target.getBadRecords());
+                redirect.target = null;
+            }
+        }
+    }
+
+    /**
+     * Decide pelo conteúdo (assinatura gzip/zip) e não pelo nome. IGC sem compressão
+     * também passa, como uma única entrada com o nome dado.
+     */
+    public static void read(InputStream in, String name, EntryListener listener) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream(in, INFLATE_BUFFER);
+        bin.mark(4);
+        int b0 = bin.read(), b1 = bin.read();
+        bin.reset();
+
+        if (b0 == 'P' && b1 == 'K') {
+            readZip(bin, listener);
+            return;
+        }
+        String inner = name.toLowerCase(Locale.ROOT).endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+        FlightTrack track = listener.newTrack(inner);
+        if (track == null) {
+            bin.close();
+            return;
+        }
+        int bad;
+        if (b0 == 0x1f && b1 == 0x8b) {
+            bad = readGzip(bin, track);
+        } else {
+            IgcTrackBuilder builder = new IgcTrackBuilder(track);
+            try (InputStream plain = bin) {
+                drain(plain, new IgcLineAssembler(builder));
+            }
+            bad = builder.getBadRecords();
+        }
+        listener.onTrack(inner, track, bad);
+    }
+
+    public static void read(File file, EntryListener listener) throws IOException {
+        read(new FileInputStream(file), file.getName(), listener);
+    }
+
+    public static void read(Context ctx, Uri uri, String name, EntryListener listener) throws IOException {
+        InputStream in = ctx.getContentResolver().openInputStream(uri);
+        if (in == null) throw new IOException("Não foi possível abrir " + uri);
+        read(in, name, listener);
+    }
+
+    public static void readAsset(Context ctx, String assetPath, EntryListener listener) throws IOException {
+        read(ctx.getAssets().open(assetPath), assetPath, listener);
+    }
+
+    /**
+     * Só as linhas, sem trilha: o IGC de {@code file} (texto, .igc.gz ou a primeira entrada
+     * .igc de um .zip, como no carregamento) vai descomprimido em stream para {@code handler}.
+     * Decide pela assinatura, como {@link #read(InputStream, String, EntryListener)}.
+     */
+    static void forEachLine(File file, IgcMappedReader.LineHandler handler) throws IOException {
+        IgcLineAssembler assembler = new IgcLineAssembler(handler);
+        try (BufferedInputStream bin = new BufferedInputStream(new FileInputStream(file), INFLATE_BUFFER)) {
+            bin.mark(4);
+            int b0 = bin.read(), b1 = bin.read();
+            bin.reset();
+            if (b0 == 'P' && b1 == 'K') {
+                try (ZipInputStream zip = new ZipInputStream(bin)) {
+                    ZipEntry e;
+                    while ((e = zip.getNextEntry()) != null) {
+                        if (e.isDirectory() || !e.getName().toLowerCase(Locale.ROOT).endsWith(".igc")) continue;
+                        drain(zip, assembler);
+                        return;
+                    }
+                }
+            } else if (b0 == 0x1f && b1 == 0x8b) {
+                try (GZIPInputStream gz = new GZIPInputStream(bin, INFLATE_BUFFER)) {
+                    drain(gz, assembler);
+                }
+            } else {
+                drain(bin, assembler);
+            }
+        }
+    }
+
+    // -------------------- helpers --------------------
+
+    private static void drain(InputStream in, IgcLineAssembler assembler) throws IOException {
+        while (assembler.read(in) >= 0) {
+            // read() devolve 0 só se o buffer estiver cheio, o que o assembler já trata
+        }
+        assembler.finish();
+    }
+
+    /** Handler fixo do assembler que repassa para o builder da entrada atual. */
+    private static final class Redirect implements IgcMappedReader.LineHandler {
+        IgcTrackBuilder target;
+
+        @Override
+        public void onLine(ByteBuffer buf, int off, int len) {
+            if (target != null) target.onLine(buf, off, len);
+        }
+    }
+}
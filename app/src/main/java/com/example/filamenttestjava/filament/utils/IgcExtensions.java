@@ -0,0 +1,76 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tabela de offsets das extensões do B-record, montada uma única vez a partir do I-record.
+ * Ex.: "I063637LAD3839LOD4040TDS4142WSP4345WDI4649GND" declara 6 extensões; cada uma é
+ * SS FF CCC (byte inicial e final, 1-based e inclusivos, e o código de 3 letras).
+ *
+ * Depois de montada, {@link IgcParser#parseBRecord(ByteBuffer, int, int, int[], IgcExtensions)}
+ * lê os campos direto pelos offsets guardados aqui, sem procurar nada por linha.
+ */
+public class IgcExtensions {
+
+    // offset 0-based dentro da linha e nº de dígitos; start = -1 quando não declarado
+    int ladStart = -1, ladLen;
+    int lodStart = -1, lodLen;
+    int tdsStart = -1, tdsLen;
+    int wspStart = -1, wspLen;
+    int wdiStart = -1, wdiLen;
+    int gndStart = -1, gndLen;
+
+    private int declared = 0;
+
+    /**
+     * Lê o I-record em {@code buf[off..off+len)}. Códigos desconhecidos são ignorados.
+     * Retorna false (e limpa a tabela) se a linha não for um I-record bem formado.
+     */
+    public boolean parseIRecord(ByteBuffer buf, int off, int len) {
+        clear();
+        if (len < 3 || buf.get(off) != 'I') return false;
+        int count = twoDigits(buf, off + 1);
+        if (count < 0 || len < 3 + count * 7) return false;
+
+        int p = off + 3;
+        for (int k = 0; k < count; k++, p += 7) {
+            int first = twoDigits(buf, p);
+            int last  = twoDigits(buf, p + 2);
+            if (first < 1 || last < first) { clear(); return false; }
+            int start = first - 1;
+            int n = last - first + 1;
+            byte c0 = buf.get(p + 4), c1 = buf.get(p + 5), c2 = buf.get(p + 6);
+
+            if      (is(c0, c1, c2, 'L', 'A', 'D')) { ladStart = start; ladLen = n; }
+            else if (is(c0, c1, c2, 'L', 'O', 'D')) { lodStart = start; lodLen = n; }
+            else if (is(c0, c1, c2, 'T', 'D', 'S')) { tdsStart = start; tdsLen = n; }
+            else if (is(c0, c1, c2, 'W', 'S', 'P')) { wspStart = start; wspLen = n; }
+            else if (is(c0, c1, c2, 'W', 'D', 'I')) { wdiStart = start; wdiLen = n; }
+            else if (is(c0, c1, c2, 'G', 'N', 'D')) { gndStart = start; gndLen = n; }
+            else continue;
+            declared++;
+        }
+        return true;
+    }
+
+    public void clear() {
+        ladStart = lodStart = tdsStart = wspStart = wdiStart = gndStart = -1;
+        declared = 0;
+    }
+
+    /** Quantas das extensões conhecidas (LAD/LOD/TDS/WSP/WDI/GND) o I-record declarou. */
+    public int getDeclaredCount()   { return declared; }
+    public boolean hasLatLonPrecision() { return ladStart >= 0 || lodStart >= 0; }
+    public boolean hasWind()        { return wspStart >= 0 && wdiStart >= 0; }
+    public boolean hasGroundAltitude() { return gndStart >= 0; }
+
+    private static boolean is(byte c0, byte c1, byte c2, char a, char b, char c) {
+        return c0 == a && c1 == b && c2 == c;
+    }
+
+    private static int twoDigits(ByteBuffer buf, int p) {
+        int d0 = buf.get(p) - '0', d1 = buf.get(p + 1) - '0';
+        if (d0 < 0 || d0 > 9 || d1 < 0 || d1 > 9) return -1;
+        return d0 * 10 + d1;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Monta linhas a partir de bytes que chegam aos pedaços (arquivo crescendo, stream
+ * descomprimido...). Usa um único buffer reaproveitado: as linhas completas são entregues
+ * ao {@link IgcMappedReader.LineHandler} como faixas desse buffer e o resto (linha
+ * incompleta) fica guardado para o próximo pedaço. Memória constante.
+ */
+public class IgcLineAssembler {
+
+    /** Linhas maiores que isso são descartadas (nenhum registro IGC chega perto). */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final IgcMappedReader.LineHandler handler;
+    private final byte[] buf;
+    private final ByteBuffer view;
+
+    private int pending = 0;          // bytes guardados em buf[0..pending)
+    private boolean skipping = false; // descartando uma linha gigante até o próximo '\n'
+
+    public IgcLineAssembler(IgcMappedReader.LineHandler handler) {
+        this(handler, DEFAULT_CAPACITY);
+    }
+
+    public IgcLineAssembler(IgcMappedReader.LineHandler handler, int capacity) {
+        this.handler = handler;
+        this.buf = new byte[Math.max(256, capacity)];
+        this.view = ByteBuffer.wrap(buf);
+    }
+
+    /** Lê o que houver no stream (uma chamada a read) e processa. Retorna bytes lidos ou -1. */
+    public int read(InputStream in) throws IOException {
+        int n = in.read(buf, pending, buf.length - pending);
+        if (n > 0) process(n);
+        return n;
+    }
+
+    /** Lê do canal a partir de {@code position} (não mexe na posição do canal). Retorna bytes lidos ou -1. */
+    public int read(FileChannel ch, long position) throws IOException {
+        view.limit(buf.length).position(pending);
+        int n = ch.read(view, position);
+        if (n > 0) process(n);
+        return n;
+    }
+
+    /** Copia e processa bytes vindos de outro buffer. */
+    public void feed(byte[] src, int off, int len) {
+        while (len > 0) {
+            int n = Math.min(len, buf.length - pending);
+            System.arraycopy(src, off, buf, pending, n);
+            process(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Fim do stream: entrega a última linha mesmo sem '\n'. */
+    public void finish() {
+        if (pending > 0 && !skipping) deliver(0, pending);
+        reset();
+    }
+
+    /** Esquece a linha incompleta guardada (ex.: arquivo foi truncado). */
+    public void reset() {
+        pending = 0;
+        skipping = false;
+    }
+
+    /** Bytes de linha incompleta aguardando o resto. */
+    public int getPendingBytes() { return pending; }
+
+    // -------------------- helpers --------------------
+
+    /** Os {@code n} bytes novos estão em buf[pending..pending+n). */
+    private void process(int n) {
+        int end = pending + n;
+        int lineStart = 0;
+        for (int i = pending; i < end; i++) {
+            if (buf[i] != '\n') continue;
+            if (skipping) skipping = false;
+            else deliver(lineStart, i);
+            lineStart = i + 1;
+        }
+        int rest = end - lineStart;
+        if (rest == buf.length) {
+            // linha maior que o buffer inteiro: joga fora até o próximo '\n'
+            skipping = true;
+            rest = 0;
+        } else if (skipping) {
+            rest = 0;
+        } else if (lineStart > 0 && rest > 0) {
+            System.arraycopy(buf, lineStart, buf, 0, rest);
+        }
+        pending = rest;
+    }
+
+    private void deliver(int start, int end) {
+        if (end > start && buf[end - 1] == '\r') end--;
+        handler.onLine(view, start, end - start);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.filamenttestjava.filament.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Abre arquivos IGC como bytes crus (sem decodificar para String/UTF-16).
+ * Arquivos locais, content URIs e assets não comprimidos são mapeados com
+ * {@link FileChannel#map}; quando não dá para mapear (pipe, asset comprimido)
+ * o conteúdo vai para um buffer direto reaproveitado entre leituras.
+ * As linhas são entregues como faixas [off, off+len) do buffer, prontas para
+ * {@link IgcParser#parseBRecord(ByteBuffer, int, int, int[])}.
+ */
+public final class IgcMappedReader {
+    private IgcMappedReader() {}
+
+    /** Recebe cada linha como faixa de bytes do buffer, já sem '\r' e '\n'. */
+    public interface LineHandler {
+        void onLine(ByteBuffer buf, int off, int len);
+    }
+
+    // buffer direto reaproveitado (1 slot) para fontes que não podem ser mapeadas
+    private static ByteBuffer pooled;
+
+    /** Mapeia um arquivo do armazenamento do app (somente leitura). */
+    public static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            // o mapeamento continua válido depois de fechar o canal
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /** Abre um content URI (SAF, compartilhamento, etc.): mapeia se for arquivo, senão copia. */
+    public static ByteBuffer map(Context ctx, Uri uri) throws IOException {
+        try (ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(uri, "r")) {
+            if (pfd == null) throw new IOException("Não foi possível abrir " + uri);
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+                 FileChannel ch = in.getChannel()) {
+                long size = pfd.getStatSize();
+                if (size >= 0) {
+                    return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                return readFully(in, 64 * 1024);
+            }
+        }
+    }
+
+    /**
+     * Abre um asset. Só é mapeável se o asset estiver sem compressão no APK
+     * (veja {@code noCompress} no build.gradle); caso contrário lê para o buffer do pool.
+     */
+    public static ByteBuffer map(Context ctx, String assetPath) throws IOException {
+        try (AssetFileDescriptor afd = ctx.getAssets().openFd(assetPath);
+             FileInputStream in = afd.createInputStream();
+             FileChannel ch = in.getChannel()) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+        } catch (IOException compressed) {
+            try (InputStream in = ctx.getAssets().open(assetPath)) {
+                return readFully(in, Math.max(64 * 1024, in.available()));
+            }
+        }
+    }
+
+    /** Devolve ao pool um buffer obtido por {@link #map}; buffers mapeados são ignorados. */
+    public static synchronized void release(ByteBuffer buf) {
+        if (buf == null || buf instanceof MappedByteBuffer) return;
+        if (pooled == null || pooled.capacity() < buf.capacity()) {
+            buf.clear();
+            pooled = buf;
+        }
+    }
+
+    private static synchronized ByteBuffer acquire(int minCapacity) {
+        ByteBuffer b = pooled;
+        if (b != null && b.capacity() >= minCapacity) {
+            pooled = null;
+            b.clear();
+            return b;
+        }
+        return ByteBuffer.allocateDirect(minCapacity);
+    }
+
+    /** Copia um stream inteiro para um buffer direto do pool (cresce dobrando se preciso). */
+    private static ByteBuffer readFully(InputStream in, int initialCapacity) throws IOException {
+        ByteBuffer dst = acquire(initialCapacity);
+        byte[] tmp = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(tmp)) != -1) {
+            if (dst.remaining() < n) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(dst.capacity() * 2, dst.position() + n));
+                dst.flip();
+                bigger.put(dst);
+                dst = bigger;
+            }
+            dst.put(tmp, 0, n);
+        }
+        dst.flip();
+        return dst;
+    }
+
+    /**
+     * Percorre o buffer de {@code position} até {@code limit} entregando cada linha
+     * (separador '\n', '\r' final removido). Não altera position/limit. Retorna o nº de linhas.
+     */
+    public static int forEachLine(ByteBuffer buf, LineHandler handler) {
+        return forEachLine(buf, buf.position(), buf.limit(), handler);
+    }
+
+    /** Mesmo que {@link #forEachLine(ByteBuffer, LineHandler)} para a faixa [from, to). */
+    public static int forEachLine(ByteBuffer buf, int from, int to, LineHandler handler) {
+        int lines = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == '\n') {
+                deliver(buf, start, i, handler);
+                lines++;
+                start = i + 1;
+            }
+        }
+        if (start < to) {
+            // última linha sem '\n'
+            deliver(buf, start, to, handler);
+            lines++;
+        }
+        return lines;
+    }
+
+    private static void deliver(ByteBuffer buf, int start, int end, LineHandler handler) {
+        if (end > start && buf.get(end - 1) == '\r') end--;
+        handler.onLine(buf, start, end - start);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Carga em lote de um IGC inteiro usando vários núcleos.
+ * O cabeçalho (até o primeiro B-record, incluindo o I-record) é lido em sequência; o
+ * corpo é cortado em blocos que terminam em '\n', cada bloco vira uma {@link FlightTrack}
+ * parcial num ForkJoinPool e no fim os segmentos são emendados em ordem.
+ */
+public final class IgcParallelParser {
+    private IgcParallelParser() {}
+
+    /** Abaixo disso não compensa dividir (custo de tarefa > custo de parse). */
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+
+    /** Bytes médios de um B-record, para pré-dimensionar os segmentos. */
+    private static final int BYTES_PER_FIX_GUESS = 50;
+
+    public static FlightTrack parse(ByteBuffer buf) {
+        return parse(buf, ForkJoinPool.commonPool());
+    }
+
+    /** Lê {@code buf} de position até limit (sem alterá-los) e devolve a trilha completa. */
+    public static FlightTrack parse(ByteBuffer buf, ForkJoinPool pool) {
+        final int from = buf.position();
+        final int to = buf.limit();
+
+        // 1) cabeçalho em sequência: acha o I-record e o início do primeiro B-record
+        final IgcExtensions ext = new IgcExtensions();
+        int bodyStart = to;
+        int lineStart = from;
+        while (lineStart < to) {
+            byte type = buf.get(lineStart);
+            if (type == 'B') { bodyStart = lineStart; break; }
+            int end = indexOfNewline(buf, lineStart, to);
+            if (type == 'I') {
+                int e = end;
+                if (e > lineStart && buf.get(e - 1) == '\r') e--;
+                ext.parseIRecord(buf, lineStart, e - lineStart);
+            }
+            lineStart = end + 1;
+        }
+
+        // 2) corta o corpo em blocos alinhados em '\n'
+        int bodyLen = to - bodyStart;
+        int parts = Math.max(1, pool.getParallelism() * 4);
+        int target = Math.max(MIN_CHUNK_BYTES, bodyLen / parts + 1);
+        List<ChunkTask> tasks = new ArrayList<>();
+        int start = bodyStart;
+        while (start < to) {
+            int end = Math.min(to, start + target);
+            if (end < to) end = Math.min(to, indexOfNewline(buf, end, to) + 1);
+            tasks.add(new ChunkTask(buf, start, end, ext));
+            start = end;
+        }
+
+        // 3) parse em paralelo e 4) emenda em ordem
+        FlightTrack track = new FlightTrack(Math.max(16, bodyLen / BYTES_PER_FIX_GUESS));
+        if (tasks.size() == 1) {
+            tasks.get(0).compute();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override protected void compute() { invokeAll(tasks); }
+            });
+        }
+        for (ChunkTask t : tasks) track.appendAll(t.segment);
+        return track;
+    }
+
+    /** Índice do próximo '\n' a partir de {@code p}, ou {@code to} se não houver. */
+    private static int indexOfNewline(ByteBuffer buf, int p, int to) {
+        while (p < to && buf.get(p) != '\n') p++;
+        return p;
+    }
+
+    /** Um bloco [start, end) do corpo, sempre começando no início de uma linha. */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buf;
+        private final int start, end;
+        private final IgcExtensions ext; // só leitura aqui
+        FlightTrack segment;
+
+        ChunkTask(ByteBuffer buf, int start, int end, IgcExtensions ext) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+            this.ext = ext;
+        }
+
+        @Override
+        protected void compute() {
+            FlightTrack seg = new FlightTrack((end - start) / BYTES_PER_FIX_GUESS + 16);
+            int[] fix = new int[IgcParser.OUT_SIZE];
+            int lineStart = start;
+            while (lineStart < end) {
+                int nl = indexOfNewline(buf, lineStart, end);
+                int e = nl;
+                if (e > lineStart && buf.get(e - 1) == '\r') e--;
+                if (e > lineStart && buf.get(lineStart) == 'B'
+                        && IgcParser.parseBRecord(buf, lineStart, e - lineStart, fix, ext) == IgcParser.STATUS_OK) {
+                    seg.appendFix(fix);
+                }
+                lineStart = nl + 1;
+            }
+            segment = seg;
+        }
+    }
+}
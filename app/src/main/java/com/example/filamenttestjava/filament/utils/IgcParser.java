@@ -1,8 +1,228 @@
 package com.example.filamenttestjava.filament.utils;
 
+import java.nio.ByteBuffer;
+
 public final class IgcParser {
     private IgcParser() {}
 
+    // ===========================
+    //  PARSER POR BYTES (SEM ALOCAÇÃO)
+    // ===========================
+
+    /** Códigos de retorno de {@link #parseBRecord}: nunca lança exceção por linha ruim. */
+    public static final int STATUS_OK              = 0;
+    public static final int STATUS_NOT_B_RECORD    = 1;
+    public static final int STATUS_TOO_SHORT       = 2;
+    public static final int STATUS_BAD_DIGIT       = 3;
+    public static final int STATUS_BAD_HEMISPHERE  = 4;
+    public static final int STATUS_BAD_VALIDITY    = 5;
+    public static final int STATUS_OUT_OF_RANGE    = 6;
+
+    /** Posições no int[] de saída de {@link #parseBRecord}. */
+    public static final int OUT_TIME      = 0; // segundos desde 00:00:00 UTC
+    public static final int OUT_LAT_E7    = 1; // latitude em graus * 1e7
+    public static final int OUT_LON_E7    = 2; // longitude em graus * 1e7
+    public static final int OUT_FIX_VALID = 3; // 1 = 'A' (3D), 0 = 'V' (2D / sem GPS)
+    public static final int OUT_PRESS_ALT = 4; // altitude de pressão (m)
+    public static final int OUT_GNSS_ALT  = 5; // altitude GNSS (m)
+    // extensões declaradas no I-record (NO_VALUE quando ausentes)
+    public static final int OUT_TDS       = 6; // décimos de segundo (TDS)
+    public static final int OUT_WSP       = 7; // velocidade do vento (WSP, unidade do logger)
+    public static final int OUT_WDI       = 8; // direção do vento em graus (WDI)
+    public static final int OUT_GND       = 9; // altitude do terreno (GND, m)
+    public static final int OUT_SIZE      = 10;
+
+    /** Valor gravado nos campos de extensão que não vieram no B-record. */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    /** Tamanho mínimo de um B-record até o fim da altitude GNSS. */
+    public static final int B_RECORD_MIN_LENGTH = 35;
+
+    /**
+     * Lê um B-record direto dos bytes ASCII em {@code buf[off..off+len)}, numa única passada,
+     * e grava tempo, lat/lon (ponto fixo 1e-7 grau) e altitudes em {@code out} (índices OUT_*).
+     * Não aloca nada; linhas ruins retornam um STATUS_* != STATUS_OK e {@code out} fica indefinido.
+     */
+    public static int parseBRecord(byte[] buf, int off, int len, int[] out) {
+        return parseBRecord(buf, null, off, len, out, null);
+    }
+
+    /**
+     * Como {@link #parseBRecord(byte[], int, int, int[])}, decodificando também as extensões
+     * da tabela {@code ext}: LAD/LOD refinam lat/lon e TDS/WSP/WDI/GND vão para OUT_TDS..OUT_GND.
+     */
+    public static int parseBRecord(byte[] buf, int off, int len, int[] out, IgcExtensions ext) {
+        return parseBRecord(buf, null, off, len, out, ext);
+    }
+
+    /**
+     * Mesmo que {@link #parseBRecord(byte[], int, int, int[])}, mas lendo de um ByteBuffer
+     * (heap, direto ou mapeado) por índice absoluto — posição/limite do buffer não mudam.
+     */
+    public static int parseBRecord(ByteBuffer buf, int off, int len, int[] out) {
+        return parseBRecord(buf, off, len, out, null);
+    }
+
+    /** Versão ByteBuffer de {@link #parseBRecord(byte[], int, int, int[], IgcExtensions)}. */
+    public static int parseBRecord(ByteBuffer buf, int off, int len, int[] out, IgcExtensions ext) {
+        if (buf.hasArray()) {
+            return parseBRecord(buf.array(), null, buf.arrayOffset() + off, len, out, ext);
+        }
+        return parseBRecord(null, buf, off, len, out, ext);
+    }
+
+    /** Núcleo comum: exatamente um entre {@code arr} e {@code bb} é não-nulo; {@code ext} pode ser null. */
+    private static int parseBRecord(byte[] arr, ByteBuffer bb, int off, int len, int[] out, IgcExtensions ext) {
+        if (len < 1 || at(arr, bb, off) != 'B') return STATUS_NOT_B_RECORD;
+        if (len < B_RECORD_MIN_LENGTH) return STATUS_TOO_SHORT;
+
+        int p = off + 1;
+
+        // HHMMSS
+        int hh = digits(arr, bb, p, 2);
+        int mi = digits(arr, bb, p + 2, 2);
+        int ss = digits(arr, bb, p + 4, 2);
+        if ((hh | mi | ss) < 0) return STATUS_BAD_DIGIT;
+        if (hh > 23 || mi > 59 || ss > 59) return STATUS_OUT_OF_RANGE;
+        p += 6;
+
+        // Latitude: DDMMmmm + N/S
+        int latDeg = digits(arr, bb, p, 2);
+        int latMm  = digits(arr, bb, p + 2, 5); // milésimos de minuto (MMmmm)
+        if ((latDeg | latMm) < 0) return STATUS_BAD_DIGIT;
+        if (latDeg > 90 || latMm >= 60000) return STATUS_OUT_OF_RANGE;
+        byte ns = at(arr, bb, p + 7);
+        if (ns != 'N' && ns != 'S' && ns != 'n' && ns != 's') return STATUS_BAD_HEMISPHERE;
+        p += 8;
+
+        // Longitude: DDDMMmmm + E/W
+        int lonDeg = digits(arr, bb, p, 3);
+        int lonMm  = digits(arr, bb, p + 3, 5);
+        if ((lonDeg | lonMm) < 0) return STATUS_BAD_DIGIT;
+        if (lonDeg > 180 || lonMm >= 60000) return STATUS_OUT_OF_RANGE;
+        byte ew = at(arr, bb, p + 8);
+        if (ew != 'E' && ew != 'W' && ew != 'e' && ew != 'w') return STATUS_BAD_HEMISPHERE;
+        p += 9;
+
+        // validade do fixo: 'A' ou 'V'
+        byte v = at(arr, bb, p);
+        if (v != 'A' && v != 'V') return STATUS_BAD_VALIDITY;
+        p += 1;
+
+        // altitudes de pressão e GNSS (5 chars cada, podem ter sinal/espaços)
+        int press = signedDigits5(arr, bb, p);
+        int gnss  = signedDigits5(arr, bb, p + 5);
+        if (press == NO_VALUE || gnss == NO_VALUE) return STATUS_BAD_DIGIT;
+
+        int lat = latDeg * 10_000_000 + minutesToE7(latMm, 0);
+        int lon = lonDeg * 10_000_000 + minutesToE7(lonMm, 0);
+
+        int tds = NO_VALUE, wsp = NO_VALUE, wdi = NO_VALUE, gnd = NO_VALUE;
+        if (ext != null) {
+            // LAD/LOD: casas decimais extras dos minutos (ex.: 45.112 + "98" -> 45.11298)
+            if (ext.ladStart >= 0) {
+                int extra = field(arr, bb, off, len, ext.ladStart, ext.ladLen);
+                if (extra >= 0) lat = latDeg * 10_000_000 + refinedMinutesToE7(latMm, extra, ext.ladLen);
+            }
+            if (ext.lodStart >= 0) {
+                int extra = field(arr, bb, off, len, ext.lodStart, ext.lodLen);
+                if (extra >= 0) lon = lonDeg * 10_000_000 + refinedMinutesToE7(lonMm, extra, ext.lodLen);
+            }
+            if (ext.tdsStart >= 0) tds = signedField(arr, bb, off, len, ext.tdsStart, ext.tdsLen);
+            if (ext.wspStart >= 0) wsp = signedField(arr, bb, off, len, ext.wspStart, ext.wspLen);
+            if (ext.wdiStart >= 0) wdi = signedField(arr, bb, off, len, ext.wdiStart, ext.wdiLen);
+            if (ext.gndStart >= 0) gnd = signedField(arr, bb, off, len, ext.gndStart, ext.gndLen);
+        }
+
+        out[OUT_TIME]      = hh * 3600 + mi * 60 + ss;
+        out[OUT_LAT_E7]    = (ns == 'S' || ns == 's') ? -lat : lat;
+        out[OUT_LON_E7]    = (ew == 'W' || ew == 'w') ? -lon : lon;
+        out[OUT_FIX_VALID] = v == 'A' ? 1 : 0;
+        out[OUT_PRESS_ALT] = press;
+        out[OUT_GNSS_ALT]  = gnss;
+        out[OUT_TDS]       = tds;
+        out[OUT_WSP]       = wsp;
+        out[OUT_WDI]       = wdi;
+        out[OUT_GND]       = gnd;
+        return STATUS_OK;
+    }
+
+    /** Junta os milésimos de minuto com {@code nDigits} dígitos extras (usa no máximo 3). */
+    private static int refinedMinutesToE7(int milliMinutes, int extra, int nDigits) {
+        while (nDigits > 3) { extra /= 10; nDigits--; }
+        int scale = nDigits == 1 ? 10 : nDigits == 2 ? 100 : nDigits == 3 ? 1000 : 1;
+        return minutesToE7(milliMinutes * scale + extra, nDigits);
+    }
+
+    /**
+     * Converte minutos em ponto fixo (MM seguido de 3 + {@code extraDigits} casas decimais)
+     * para graus * 1e7, com arredondamento. Até 3 casas extras (resolução bem abaixo de 1 cm).
+     */
+    static int minutesToE7(int minutesFixed, int extraDigits) {
+        // graus*1e7 = minutos * 1e7 / 60 = minutesFixed * 10^(3-extra) / 6
+        int scale = extraDigits == 0 ? 1000 : extraDigits == 1 ? 100 : extraDigits == 2 ? 10 : 1;
+        return (int) (((long) minutesFixed * scale + 3) / 6);
+    }
+
+    /** Converte graus * 1e7 de volta para graus decimais. */
+    public static double e7ToDegrees(int e7) {
+        return e7 / 1e7;
+    }
+
+    private static byte at(byte[] arr, ByteBuffer bb, int i) {
+        return arr != null ? arr[i] : bb.get(i);
+    }
+
+    /** Lê {@code n} dígitos ASCII; retorna -1 se algum não for dígito. */
+    private static int digits(byte[] arr, ByteBuffer bb, int p, int n) {
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            int d = at(arr, bb, p + i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /** Campo de extensão só com dígitos; -1 se inválido ou se a linha for mais curta. */
+    private static int field(byte[] arr, ByteBuffer bb, int off, int len, int start, int n) {
+        if (start + n > len) return -1;
+        return digits(arr, bb, off + start, n);
+    }
+
+    /** Campo de extensão com sinal/espaços opcionais; NO_VALUE se inválido ou ausente. */
+    private static int signedField(byte[] arr, ByteBuffer bb, int off, int len, int start, int n) {
+        if (start + n > len) return NO_VALUE;
+        return signedDigits(arr, bb, off + start, n);
+    }
+
+    /**
+     * Campo de altitude com 5 chars: aceita espaços à esquerda e '-' (ex.: "-0012", "  812").
+     * Retorna NO_VALUE se inválido.
+     */
+    private static int signedDigits5(byte[] arr, ByteBuffer bb, int p) {
+        return signedDigits(arr, bb, p, 5);
+    }
+
+    private static int signedDigits(byte[] arr, ByteBuffer bb, int p, int n) {
+        int end = p + n;
+        while (p < end && at(arr, bb, p) == ' ') p++;
+        boolean neg = false;
+        if (p < end && at(arr, bb, p) == '-') { neg = true; p++; }
+        if (p == end) return NO_VALUE;
+        int v = 0;
+        for (; p < end; p++) {
+            int d = at(arr, bb, p) - '0';
+            if (d < 0 || d > 9) return NO_VALUE;
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    // ===========================
+    //  API ANTIGA (String)
+    // ===========================
+
     /**
      * Converte um B-record IGC em latitude/longitude decimais (WGS84).
      * Exemplo de entrada: "B1226083742168N00359302WA017940185600980412900646"
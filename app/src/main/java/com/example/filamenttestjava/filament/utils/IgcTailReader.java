@@ -0,0 +1,121 @@
+package com.example.filamenttestjava.filament.utils;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Acompanha um IGC que ainda está sendo escrito (vario gravando em voo).
+ * Guarda o offset já lido e a linha incompleta do fim; cada {@link #poll()} lê só os
+ * bytes acrescentados, interpreta os B-records novos e os acrescenta à trilha.
+ * O custo de cada atualização é proporcional aos bytes novos, não ao tamanho do arquivo.
+ */
+public class IgcTailReader {
+
+    public interface Listener {
+        /** Fixos [from, toExclusive) acabaram de entrar na trilha. */
+        void onNewFixes(int from, int toExclusive);
+
+        /** O arquivo encolheu ou foi substituído; a leitura recomeça do zero. */
+        default void onReset() {}
+
+        /** Um poll agendado por {@link #start} falhou; o próximo tenta de novo. */
+        default void onError(IOException e) {
+            Log.w(TAG, "falha ao ler IGC ao vivo", e);
+        }
+    }
+
+    private static final String TAG = "IgcTailReader";
+
+    private final File file;
+    private final FlightTrack track;
+    private final Listener listener;
+    private final IgcTrackBuilder builder;
+    private final IgcLineAssembler assembler;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long offset = 0;
+
+    private Handler handler;
+    private long intervalMs;
+    private final Runnable pollTask = this::pollAndReschedule;
+
+    public IgcTailReader(File file, FlightTrack track, Listener listener) {
+        this.file = file;
+        this.track = track;
+        this.listener = listener;
+        this.builder = new IgcTrackBuilder(track);
+        this.assembler = new IgcLineAssembler(builder);
+    }
+
+    /**
+     * Lê o que foi acrescentado desde a última chamada. Retorna quantos fixos novos entraram.
+     * Chame sempre da mesma thread (ou use {@link #start}).
+     */
+    public int poll() throws IOException {
+        if (channel == null) {
+            if (!file.isFile()) return 0;
+            raf = new RandomAccessFile(file, "r");
+            channel = raf.getChannel();
+        }
+        long size = channel.size();
+        if (size < offset) {
+            // truncado/reescrito: recomeça
+            offset = 0;
+            assembler.reset();
+            track.clear();
+            listener.onReset();
+        }
+        int before = track.size();
+        while (offset < size) {
+            int n = assembler.read(channel, offset);
+            if (n <= 0) break;
+            offset += n;
+        }
+        int after = track.size();
+        if (after > before) listener.onNewFixes(before, after);
+        return after - before;
+    }
+
+    /** Faz {@link #poll()} a cada {@code intervalMs} na thread do {@code handler}. */
+    public void start(Handler handler, long intervalMs) {
+        stop();
+        this.handler = handler;
+        this.intervalMs = intervalMs;
+        handler.post(pollTask);
+    }
+
+    public void stop() {
+        if (handler != null) handler.removeCallbacks(pollTask);
+        handler = null;
+    }
+
+    /** Para o polling e fecha o arquivo. */
+    public void close() {
+        stop();
+        try {
+            if (raf != null) raf.close();
+        } catch (IOException ignored) {
+        }
+        raf = null;
+        channel = null;
+    }
+
+    public long getOffset() { return offset; }
+
+    private void pollAndReschedule() {
+        Handler h = handler;
+        if (h == null) return;
+        try {
+            poll();
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+        if (handler == h) h.postDelayed(pollTask, intervalMs);
+    }
+}
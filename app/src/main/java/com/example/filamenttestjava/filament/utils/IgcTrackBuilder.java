@@ -0,0 +1,40 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Liga o {@link IgcMappedReader} à {@link FlightTrack}: cada linha B válida vira um
+ * fixo na trilha, sem alocação por linha. Linhas B ruins são só contadas.
+ * O I-record (que vem antes dos B-records) monta a tabela de extensões usada daí em diante.
+ */
+public class IgcTrackBuilder implements IgcMappedReader.LineHandler {
+
+    private final FlightTrack track;
+    private final int[] fix = new int[IgcParser.OUT_SIZE];
+    private final IgcExtensions extensions = new IgcExtensions();
+    private int badRecords = 0;
+
+    public IgcTrackBuilder(FlightTrack track) {
+        this.track = track;
+    }
+
+    @Override
+    public void onLine(ByteBuffer buf, int off, int len) {
+        if (len == 0) return;
+        byte type = buf.get(off);
+        if (type == 'I') {
+            extensions.parseIRecord(buf, off, len);
+            return;
+        }
+        if (type != 'B') return;
+        if (IgcParser.parseBRecord(buf, off, len, fix, extensions) == IgcParser.STATUS_OK) {
+            track.appendFix(fix);
+        } else {
+            badRecords++;
+        }
+    }
+
+    public FlightTrack getTrack()  { return track; }
+    public int getBadRecords()     { return badRecords; }
+    public IgcExtensions getExtensions() { return extensions; }
+}
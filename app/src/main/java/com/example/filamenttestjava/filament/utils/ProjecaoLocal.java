@@ -0,0 +1,160 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Projeção local (plano tangente leste/norte) em torno de uma origem fixa, sem alocação
+ * e sem depender do framework Android. As constantes do elipsoide WGS84 na latitude da
+ * origem são calculadas uma vez; projetar um fixo custa poucas multiplicações.
+ *
+ * x (leste) = N(φ0)·cos φ0 · Δλ
+ * y (norte) = M(φ0) · Δφ + ½ · M'(φ0) · Δφ²   (arco de meridiano até 2ª ordem)
+ *
+ * Comparado com o {@code CalculoDistancias.getPixelModelo} antigo (dois
+ * {@code Location.distanceTo}, Vincenty), medido em test.igc (fixos a até ≈ 105 km da
+ * origem): y difere menos de 1 cm e x no máximo 0,35 m. O termo de 2ª ordem é o que mantém
+ * y nesse nível; só com o linear o erro passaria de 3 m a 70 km.
+ * Para x, o modelo antigo já media ao longo do paralelo da origem (não dependia da
+ * latitude do ponto), então a diferença é só a da geodésica contra o arco do paralelo,
+ * que cresce com o cubo da distância: a 45° dá ~0,06 m a 40 km, ~0,5 m a 80 km e ~1,1 m a 100 km.
+ */
+public final class ProjecaoLocal {
+
+    private static final double WGS84_A  = 6378137.0;
+    private static final double WGS84_E2 = 6.69437999014e-3;
+
+    /** Abaixo disso a versão paralela não divide mais (o laço é barato demais). */
+    private static final int MIN_PARALELO = 16 * 1024;
+
+    private static final long E7_180 = 1_800_000_000L;
+    private static final long E7_360 = 3_600_000_000L;
+
+    private final int lat0E7, lon0E7;
+    private final double lat0, lon0;
+
+    // metros por unidade E7 (graus * 1e7)
+    private final double kx, ky, kyy;
+
+    public ProjecaoLocal(double latitudeOrigem, double longitudeOrigem) {
+        this.lat0 = latitudeOrigem;
+        this.lon0 = longitudeOrigem;
+        this.lat0E7 = (int) Math.round(latitudeOrigem * 1e7);
+        this.lon0E7 = (int) Math.round(longitudeOrigem * 1e7);
+
+        double phi = Math.toRadians(latitudeOrigem);
+        double sin = Math.sin(phi), cos = Math.cos(phi);
+        double w2 = 1.0 - WGS84_E2 * sin * sin;
+        double w = Math.sqrt(w2);
+        double n = WGS84_A / w;                                   // raio no 1º vertical
+        double m = WGS84_A * (1.0 - WGS84_E2) / (w2 * w);         // raio meridiano
+        double dm = 3.0 * WGS84_A * (1.0 - WGS84_E2) * WGS84_E2 * sin * cos / (w2 * w2 * w); // dM/dφ
+
+        double radPorE7 = Math.PI / 180.0 * 1e-7;
+        this.kx = n * cos * radPorE7;
+        this.ky = m * radPorE7;
+        this.kyy = 0.5 * dm * radPorE7 * radPorE7;
+    }
+
+    /** Origem no primeiro fixo da trilha. */
+    public static ProjecaoLocal origemEm(FlightTrack t) {
+        return new ProjecaoLocal(t.latitude(0), t.longitude(0));
+    }
+
+    public double getLatitudeOrigem()  { return lat0; }
+    public double getLongitudeOrigem() { return lon0; }
+
+    /** Metros por grau de latitude / longitude na origem. */
+    public double metrosPorGrauLatitude()  { return ky * 1e7; }
+    public double metrosPorGrauLongitude() { return kx * 1e7; }
+
+    // -------------------- ponto a ponto --------------------
+
+    public double x(double longitude) {
+        double d = longitude - lon0;
+        if (d > 180) d -= 360; else if (d < -180) d += 360;
+        return d * 1e7 * kx;
+    }
+
+    public double y(double latitude) {
+        double d = (latitude - lat0) * 1e7;
+        return d * (ky + d * kyy);
+    }
+
+    public float xE7(int lonE7) {
+        long d = (long) lonE7 - lon0E7;
+        if (d > E7_180) d -= E7_360; else if (d < -E7_180) d += E7_360;
+        return (float) (d * kx);
+    }
+
+    public float yE7(int latE7) {
+        double d = latE7 - lat0E7; // |Δ| <= 1,8e9: cabe em int
+        return (float) (d * (ky + d * kyy));
+    }
+
+    // -------------------- colunas --------------------
+
+    /** Projeta [from, to) das colunas E7 para outX/outY (mesmos índices). */
+    public void projeta(int[] latE7, int[] lonE7, float[] outX, float[] outY, int from, int to) {
+        final int lat0 = lat0E7;
+        final long lon0 = lon0E7;
+        final double kx = this.kx, ky = this.ky, kyy = this.kyy;
+        for (int i = from; i < to; i++) {
+            long dl = lonE7[i] - lon0;
+            if (dl > E7_180) dl -= E7_360; else if (dl < -E7_180) dl += E7_360;
+            double dp = latE7[i] - lat0;
+            outX[i] = (float) (dl * kx);
+            outY[i] = (float) (dp * (ky + dp * kyy));
+        }
+    }
+
+    /**
+     * Preenche x/y dos fixos [from, to) da trilha. Escreve direto nas colunas: chame da
+     * mesma thread que faz append (ou com a trilha parada).
+     */
+    public void projeta(FlightTrack t, int from, int to) {
+        projeta(t.latE7Column(), t.lonE7Column(), t.xColumn(), t.yColumn(), from, to);
+    }
+
+    /** Mesmo que {@link #projeta(FlightTrack, int, int)}, dividido em blocos no pool (carga em lote). */
+    public void projetaParalelo(FlightTrack t, int from, int to, ForkJoinPool pool) {
+        int[] lat = t.latE7Column(), lon = t.lonE7Column();
+        float[] x = t.xColumn(), y = t.yColumn();
+        if (to - from <= MIN_PARALELO) {
+            projeta(lat, lon, x, y, from, to);
+            return;
+        }
+        pool.invoke(new Bloco(lat, lon, x, y, from, to));
+    }
+
+    public void projetaParalelo(FlightTrack t) {
+        projetaParalelo(t, 0, t.size(), ForkJoinPool.commonPool());
+    }
+
+    private final class Bloco extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] lat, lon;
+        private final float[] x, y;
+        private final int from, to;
+
+        Bloco(int[] lat, int[] lon, float[] x, float[] y, int from, int to) {
+            this.lat = lat;
+            this.lon = lon;
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_PARALELO) {
+                projeta(lat, lon, x, y, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Bloco(lat, lon, x, y, from, mid), new Bloco(lat, lon, x, y, mid, to));
+        }
+    }
+}
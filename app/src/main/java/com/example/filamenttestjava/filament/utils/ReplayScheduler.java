@@ -0,0 +1,154 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Relógio de replay guiado pelos horários dos B-records, sem bloquear nenhuma thread.
+ * Chame {@link #onFrame(long)} a cada vsync (Choreographer.doFrame): o relógio avança
+ * {@code dt * velocidade} segundos de voo e entrega, de uma vez, todos os fixos cujo
+ * horário já passou. Em 500x isso vira um lote de centenas de fixos por quadro, em vez
+ * de centenas de eventos soltos.
+ *
+ * Funciona com trilha ainda crescendo: se o relógio passar do último fixo, os novos
+ * são entregues no quadro seguinte ao append.
+ */
+public class ReplayScheduler {
+
+    public static final double MIN_SPEED = 1.0;
+    public static final double MAX_SPEED = 500.0;
+
+    public interface Listener {
+        /** Fixos [from, toExclusive) ficaram "no passado" neste quadro. */
+        void onFixes(int from, int toExclusive);
+
+        /** O replay pulou (seek); o próximo lote começa em {@code nextIndex}. */
+        default void onSeek(int nextIndex) {}
+    }
+
+    private final FlightTrack track;
+    private final Listener listener;
+
+    private boolean playing = false;
+    private double speed;
+
+    // âncora: no quadro anchorFrameNanos o relógio de voo valia anchorTrackTime
+    private long anchorFrameNanos = -1;
+    private double anchorTrackTime = Double.NaN;
+
+    private long lastFrameNanos = -1;
+
+    private int nextIndex = 0;
+
+    public ReplayScheduler(FlightTrack track, double speed, Listener listener) {
+        this.track = track;
+        this.listener = listener;
+        this.speed = clampSpeed(speed);
+    }
+
+    // -------------------- controle --------------------
+
+    public synchronized void play() {
+        if (playing) return;
+        playing = true;
+        anchorFrameNanos = -1; // re-ancora no próximo quadro (não conta o tempo pausado)
+    }
+
+    public synchronized void pause() {
+        if (!playing) return;
+        // congela o relógio onde ele está
+        anchorTrackTime = currentTrackTime(lastFrameNanos);
+        anchorFrameNanos = -1;
+        playing = false;
+    }
+
+    public synchronized boolean isPlaying() { return playing; }
+
+    public synchronized double getSpeed()   { return speed; }
+
+    /** Muda a velocidade (1x..500x) mantendo a posição atual do relógio. */
+    public synchronized void setSpeed(double multiplier) {
+        double s = clampSpeed(multiplier);
+        if (anchorFrameNanos >= 0) {
+            // re-ancora para não "pular" ao trocar a velocidade
+            anchorTrackTime = currentTrackTime(lastFrameNanos);
+            anchorFrameNanos = lastFrameNanos;
+        }
+        speed = s;
+    }
+
+    /**
+     * Pula para o horário de voo {@code trackTime} (segundos, mesma escala de
+     * {@link FlightTrack#time(int)}). Fixos com horário <= trackTime saem no próximo lote
+     * se o seek for para frente; para trás, o listener recebe {@link Listener#onSeek}.
+     */
+    public void seek(double trackTime) {
+        int idx;
+        synchronized (this) {
+            int n = track.size();
+            idx = firstIndexAfter(trackTime, n);
+            anchorTrackTime = trackTime;
+            anchorFrameNanos = lastFrameNanos; // -1 se ainda não houve quadro
+            if (idx >= nextIndex) return;
+            nextIndex = idx;
+        }
+        // fora do lock, como o onFixes: o listener pode chamar pause/seek
+        listener.onSeek(idx);
+    }
+
+    public synchronized int getNextIndex() { return nextIndex; }
+
+    /** Horário de voo atual (NaN antes do primeiro quadro com fixos). */
+    public synchronized double getTrackTime() {
+        return anchorFrameNanos < 0 ? anchorTrackTime : currentTrackTime(lastFrameNanos);
+    }
+
+    // -------------------- quadro --------------------
+
+    /** Avança o relógio até {@code frameTimeNanos} e entrega no máximo um lote. */
+    public void onFrame(long frameTimeNanos) {
+        int from, to;
+        synchronized (this) {
+            lastFrameNanos = frameTimeNanos;
+            if (!playing) return;
+            int n = track.size();
+            if (n == 0) return;
+
+            if (Double.isNaN(anchorTrackTime)) {
+                // começa no primeiro fixo, que já sai no 1º quadro
+                anchorTrackTime = track.time(0);
+            }
+            if (anchorFrameNanos < 0) {
+                anchorFrameNanos = frameTimeNanos;
+            }
+
+            double now = currentTrackTime(frameTimeNanos);
+            from = nextIndex;
+            to = from;
+            while (to < n && track.time(to) <= now) to++;
+            if (to == from) return;
+            nextIndex = to;
+        }
+        // fora do lock: o listener pode chamar pause/seek
+        listener.onFixes(from, to);
+    }
+
+    // -------------------- helpers --------------------
+
+    private double currentTrackTime(long frameTimeNanos) {
+        if (anchorFrameNanos < 0 || frameTimeNanos < anchorFrameNanos) return anchorTrackTime;
+        return anchorTrackTime + (frameTimeNanos - anchorFrameNanos) * 1e-9 * speed;
+    }
+
+    /** Primeiro índice com time > t (busca binária; a trilha é monotônica). */
+    private int firstIndexAfter(double t, int n) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (track.time(mid) <= t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double clampSpeed(double s) {
+        if (Double.isNaN(s)) return MIN_SPEED;
+        return Math.max(MIN_SPEED, Math.min(MAX_SPEED, s));
+    }
+}
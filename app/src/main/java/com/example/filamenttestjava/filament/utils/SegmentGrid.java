@@ -0,0 +1,305 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.util.Arrays;
+
+/**
+ * Índice espacial (grade uniforme no plano x/y) sobre os segmentos da trilha projetada.
+ * O segmento i liga os fixos i e i+1. Cada célula guarda uma lista encadeada de
+ * segmentos em arrays primitivos; as células ocupadas ficam numa tabela hash de
+ * endereçamento aberto com chave long (sem boxing). Um segmento curto entra nas
+ * células da sua bounding box (1 a 4 na prática); um longo (salto do GPS, falha de
+ * gravação) só nas células que ele atravessa.
+ *
+ * Serve para toque/seleção (fixo mais próximo), checagem de espaço aéreo (caixa) e
+ * proximidade entre pilotos. Construção em lote ({@link #addUpTo} com a trilha inteira)
+ * ou incremental no modo ao vivo; {@link #add} indexa só os segmentos escolhidos (ex.: os
+ * desenhados). Métodos sincronizados: um escritor e leitores em outras threads.
+ */
+public class SegmentGrid {
+
+    /** Recebe os segmentos de uma consulta por caixa (cada um uma vez). */
+    public interface Visitor {
+        void visit(int segment);
+    }
+
+    private static final long VAZIO = Long.MIN_VALUE;
+
+    private final FlightTrack track;
+    private final double tamanhoCelula;
+    private final double inverso;
+
+    // hash: célula -> primeira entrada
+    private long[] chaves;
+    private int[] cabecas;
+    private int ocupadas = 0;
+
+    // entradas (segmento, próxima entrada da mesma célula)
+    private int[] entSeg = new int[1024];
+    private int[] entProx = new int[1024];
+    private int entradas = 0;
+
+    // extensão em células (limita a busca em anéis)
+    private int minCx = Integer.MAX_VALUE, maxCx = Integer.MIN_VALUE;
+    private int minCy = Integer.MAX_VALUE, maxCy = Integer.MIN_VALUE;
+
+    // deduplicação das consultas por caixa
+    private int[] carimbo = new int[1024];
+    private int carimboAtual = 0;
+
+    private int segmentos = 0; // segmentos indexados
+    private int proximo = 0;   // os dois add* só indexam daqui em diante
+
+    // estado da busca do mais próximo (métodos sincronizados)
+    private int buscaMelhor;
+    private double buscaD2, buscaT;
+    private final double[] tmpProximo = new double[2];
+
+    public SegmentGrid(FlightTrack track, double tamanhoCelula) {
+        this.track = track;
+        this.tamanhoCelula = tamanhoCelula;
+        this.inverso = 1.0 / tamanhoCelula;
+        chaves = new long[256];
+        cabecas = new int[256];
+        Arrays.fill(chaves, VAZIO);
+    }
+
+    /** Grade com células de 100 m (bom para trilhas a 1 Hz). */
+    public SegmentGrid(FlightTrack track) {
+        this(track, 100.0);
+    }
+
+    public synchronized int getSegmentCount() { return segmentos; }
+
+    /** Indexa os segmentos até o fixo {@code fixCount - 1} (lote ou incremental). */
+    public synchronized void addUpTo(int fixCount) {
+        int ultimo = fixCount - 1;
+        if (ultimo <= proximo) return;
+        cabeCarimbo(ultimo);
+        float[] x = track.xColumn(), y = track.yColumn();
+        for (int s = proximo; s < ultimo; s++) indexa(x, y, s);
+        proximo = ultimo;
+    }
+
+    /**
+     * Indexa só o segmento {@code s} (fixos s e s+1). Em ordem crescente: segmentos antes
+     * do último indexado são ignorados.
+     */
+    public synchronized void add(int s) {
+        if (s < proximo) return;
+        cabeCarimbo(s + 1);
+        indexa(track.xColumn(), track.yColumn(), s);
+        proximo = s + 1;
+    }
+
+    /**
+     * Segmento mais próximo de (px, py) até {@code maxDist} metros, ou -1. Se {@code out}
+     * não for null recebe {distância, t} com t em [0, 1] ao longo do segmento.
+     */
+    public synchronized int nearestSegment(double px, double py, double maxDist, double[] out) {
+        if (segmentos == 0) return -1;
+        int cx = celula(px), cy = celula(py);
+        buscaMelhor = -1;
+        buscaD2 = maxDist * maxDist;
+        buscaT = 0;
+
+        // anéis de células em volta do ponto até a distância do anel passar da melhor;
+        // anéis inteiramente fora da extensão da grade são pulados
+        int raioMin = Math.max(0, Math.max(Math.max(minCx - cx, cx - maxCx), Math.max(minCy - cy, cy - maxCy)));
+        int raioMax = Math.max(Math.max(Math.abs(cx - minCx), Math.abs(cx - maxCx)),
+                Math.max(Math.abs(cy - minCy), Math.abs(cy - maxCy)));
+        for (int r = raioMin; r <= raioMax; r++) {
+            double distAnel = (r - 1) * tamanhoCelula;
+            if (distAnel > 0 && distAnel * distAnel > buscaD2) break;
+            // só a borda do anel, recortada na extensão da grade
+            int i0 = Math.max(cx - r, minCx), i1 = Math.min(cx + r, maxCx);
+            int j0 = Math.max(cy - r, minCy), j1 = Math.min(cy + r, maxCy);
+            for (int ci = i0; ci <= i1; ci++) {
+                if (ci == cx - r || ci == cx + r) {
+                    for (int cj = j0; cj <= j1; cj++) examinaCelula(ci, cj, px, py);
+                } else {
+                    if (cy - r >= j0) examinaCelula(ci, cy - r, px, py);
+                    if (r > 0 && cy + r <= j1) examinaCelula(ci, cy + r, px, py);
+                }
+            }
+        }
+        if (out != null && buscaMelhor >= 0) {
+            out[0] = Math.sqrt(buscaD2);
+            out[1] = buscaT;
+        }
+        return buscaMelhor;
+    }
+
+    /** Fixo mais próximo de (px, py) até {@code maxDist} metros, ou -1. */
+    public synchronized int nearestFix(double px, double py, double maxDist) {
+        int s = nearestSegment(px, py, maxDist, tmpProximo);
+        if (s < 0) return -1;
+        return tmpProximo[1] < 0.5 ? s : s + 1;
+    }
+
+    /** Visita cada segmento cuja célula cruza a caixa (filtro exato fica com o chamador). Retorna quantos. */
+    public synchronized int queryBox(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+        if (segmentos == 0) return 0;
+        int cx0 = Math.max(celula(minX), minCx), cx1 = Math.min(celula(maxX), maxCx);
+        int cy0 = Math.max(celula(minY), minCy), cy1 = Math.min(celula(maxY), maxCy);
+        if (++carimboAtual == Integer.MAX_VALUE) {
+            Arrays.fill(carimbo, 0);
+            carimboAtual = 1;
+        }
+        int c = 0;
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int e = primeira(cx, cy); e >= 0; e = entProx[e]) {
+                    int s = entSeg[e];
+                    if (carimbo[s] == carimboAtual) continue;
+                    carimbo[s] = carimboAtual;
+                    visitor.visit(s);
+                    c++;
+                }
+            }
+        }
+        return c;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(chaves, VAZIO);
+        ocupadas = 0;
+        entradas = 0;
+        segmentos = 0;
+        proximo = 0;
+        minCx = minCy = Integer.MAX_VALUE;
+        maxCx = maxCy = Integer.MIN_VALUE;
+    }
+
+    // -------------------- helpers --------------------
+
+    /** Põe o segmento s nas células que ele ocupa e estende a extensão da grade. */
+    private void indexa(float[] x, float[] y, int s) {
+        int cx0 = celula(Math.min(x[s], x[s + 1])), cx1 = celula(Math.max(x[s], x[s + 1]));
+        int cy0 = celula(Math.min(y[s], y[s + 1])), cy1 = celula(Math.max(y[s], y[s + 1]));
+        if (cx1 - cx0 <= 1 && cy1 - cy0 <= 1) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int cy = cy0; cy <= cy1; cy++) insere(cx, cy, s);
+            }
+        } else {
+            atravessa(x[s], y[s], x[s + 1], y[s + 1], s);
+        }
+        if (cx0 < minCx) minCx = cx0;
+        if (cx1 > maxCx) maxCx = cx1;
+        if (cy0 < minCy) minCy = cy0;
+        if (cy1 > maxCy) maxCy = cy1;
+        segmentos++;
+    }
+
+    /** Carimbos para os segmentos [0, n). */
+    private void cabeCarimbo(int n) {
+        if (carimbo.length < n) carimbo = Arrays.copyOf(carimbo, Math.max(n, carimbo.length * 2));
+    }
+
+    /** Confere os segmentos de uma célula contra o melhor até agora. */
+    private void examinaCelula(int ci, int cj, double px, double py) {
+        float[] x = track.xColumn(), y = track.yColumn();
+        for (int e = primeira(ci, cj); e >= 0; e = entProx[e]) {
+            int s = entSeg[e];
+            double ax = x[s], ay = y[s];
+            double dx = x[s + 1] - ax, dy = y[s + 1] - ay;
+            double len2 = dx * dx + dy * dy;
+            double t = len2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / len2 : 0;
+            if (t < 0) t = 0; else if (t > 1) t = 1;
+            double qx = ax + t * dx - px, qy = ay + t * dy - py;
+            double d2 = qx * qx + qy * qy;
+            if (d2 < buscaD2 || (d2 == buscaD2 && buscaMelhor >= 0 && s < buscaMelhor)) {
+                buscaD2 = d2;
+                buscaMelhor = s;
+                buscaT = t;
+            }
+        }
+    }
+
+    /** Insere o segmento em cada célula que ele atravessa (Amanatides-Woo). */
+    private void atravessa(double x0, double y0, double x1, double y1, int s) {
+        int cx = celula(x0), cy = celula(y0);
+        int ex = celula(x1), ey = celula(y1);
+        double dx = x1 - x0, dy = y1 - y0;
+        int passoX = dx > 0 ? 1 : -1, passoY = dy > 0 ? 1 : -1;
+        double proxX = dx != 0 ? ((passoX > 0 ? cx + 1 : cx) * tamanhoCelula - x0) / dx : Double.POSITIVE_INFINITY;
+        double proxY = dy != 0 ? ((passoY > 0 ? cy + 1 : cy) * tamanhoCelula - y0) / dy : Double.POSITIVE_INFINITY;
+        double deltaX = dx != 0 ? tamanhoCelula / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double deltaY = dy != 0 ? tamanhoCelula / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        int passos = Math.abs(ex - cx) + Math.abs(ey - cy);
+        insere(cx, cy, s);
+        for (int k = 0; k < passos; k++) {
+            if (proxX < proxY) {
+                proxX += deltaX;
+                cx += passoX;
+            } else {
+                proxY += deltaY;
+                cy += passoY;
+            }
+            insere(cx, cy, s);
+        }
+    }
+
+    private int celula(double v) {
+        return (int) Math.floor(v * inverso);
+    }
+
+    private static long chave(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int espalha(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+
+    /** Primeira entrada da célula, ou -1. */
+    private int primeira(int cx, int cy) {
+        long k = chave(cx, cy);
+        int mascara = chaves.length - 1;
+        for (int p = espalha(k) & mascara; ; p = (p + 1) & mascara) {
+            long c = chaves[p];
+            if (c == k) return cabecas[p];
+            if (c == VAZIO) return -1;
+        }
+    }
+
+    private void insere(int cx, int cy, int s) {
+        if (entradas == entSeg.length) {
+            entSeg = Arrays.copyOf(entSeg, entradas * 2);
+            entProx = Arrays.copyOf(entProx, entradas * 2);
+        }
+        if ((ocupadas + 1) * 2 > chaves.length) rehash();
+
+        long k = chave(cx, cy);
+        int mascara = chaves.length - 1;
+        int p = espalha(k) & mascara;
+        while (chaves[p] != VAZIO && chaves[p] != k) p = (p + 1) & mascara;
+        int e = entradas++;
+        entSeg[e] = s;
+        if (chaves[p] == VAZIO) {
+            chaves[p] = k;
+            entProx[e] = -1;
+            ocupadas++;
+        } else {
+            entProx[e] = cabecas[p];
+        }
+        cabecas[p] = e;
+    }
+
+    private void rehash() {
+        long[] velhasChaves = chaves;
+        int[] velhasCabecas = cabecas;
+        chaves = new long[velhasChaves.length * 2];
+        cabecas = new int[velhasChaves.length * 2];
+        Arrays.fill(chaves, VAZIO);
+        int mascara = chaves.length - 1;
+        for (int i = 0; i < velhasChaves.length; i++) {
+            long k = velhasChaves[i];
+            if (k == VAZIO) continue;
+            int p = espalha(k) & mascara;
+            while (chaves[p] != VAZIO) p = (p + 1) & mascara;
+            chaves[p] = k;
+            cabecas[p] = velhasCabecas[i];
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Consulta da trilha por horário, com interpolação de Hermite cúbica entre fixos
+ * (tangentes de Catmull-Rom para passo de tempo irregular). Feito para ser chamado a
+ * 60–120 Hz da thread de render: nada é alocado, os resultados vão para arrays do
+ * chamador e a busca começa pelo índice da consulta anterior (O(1) quando o tempo anda
+ * para frente, busca binária O(log n) num seek).
+ *
+ * O horário é o de {@link FlightTrack#time(int)}, já contínuo na virada da meia-noite,
+ * somado aos décimos de segundo (TDS) quando o arquivo traz; {@link #fromTimeOfDay}
+ * converte um horário do dia de B-record para essa escala. Funciona com a trilha
+ * crescendo (modo ao vivo). Uma instância por thread leitora (o índice-dica é estado).
+ */
+public class TimeIndex {
+
+    private final FlightTrack track;
+    private int dica = 0;
+
+    public TimeIndex(FlightTrack track) {
+        this.track = track;
+    }
+
+    /** Horário do fixo i em segundos, com décimos quando houver. */
+    public double timeOf(int i) {
+        int t = track.time(i);
+        if (!track.hasTenths()) return t;
+        int d = track.tenthsOfSecond(i);
+        return d == IgcParser.NO_VALUE ? t : t + d * 0.1;
+    }
+
+    /** Horário do primeiro e do último fixo (NaN sem fixos). */
+    public double getStartTime() { return track.isEmpty() ? Double.NaN : timeOf(0); }
+    public double getEndTime()   { return track.isEmpty() ? Double.NaN : timeOf(track.size() - 1); }
+
+    /**
+     * Converte um horário do dia (0..86400, como no B-record) para a escala da trilha:
+     * a primeira ocorrência a partir do início do voo (voo que passa da meia-noite).
+     */
+    public double fromTimeOfDay(double segundosDoDia) {
+        double inicio = getStartTime();
+        if (Double.isNaN(inicio)) return segundosDoDia;
+        double dia = Math.floor(inicio / 86400.0) * 86400.0;
+        double t = dia + segundosDoDia;
+        return t < inicio ? t + 86400.0 : t;
+    }
+
+    /**
+     * Maior i com timeOf(i) <= t (0 se t estiver antes do início, n-1 depois do fim);
+     * -1 sem fixos.
+     */
+    public int indexAt(double t) {
+        int n = track.size();
+        if (n == 0) return -1;
+        int i = Math.min(dica, n - 1);
+        if (timeOf(i) <= t) {
+            // caminho comum do render: mesmo intervalo ou o próximo
+            if (i + 1 >= n || timeOf(i + 1) > t) return dica = i;
+            if (i + 2 >= n || timeOf(i + 2) > t) return dica = i + 1;
+            return dica = busca(t, i + 2, n);
+        }
+        return dica = busca(t, 0, i);
+    }
+
+    /** Posição {x, y, altitude GNSS} em t (fora da trilha fica preso nas pontas). */
+    public boolean positionAt(double t, double[] out) {
+        int i = indexAt(t);
+        if (i < 0) return false;
+        int n = track.size();
+        if (n == 1 || t <= timeOf(0) || i >= n - 1) {
+            int k = t <= timeOf(0) ? 0 : i;
+            out[0] = track.x(k);
+            out[1] = track.y(k);
+            out[2] = track.gnssAltitude(k);
+            return true;
+        }
+        double t0 = timeOf(i), t1 = timeOf(i + 1);
+        double h = t1 - t0;
+        double s = h > 0 ? (t - t0) / h : 0;
+        double s2 = s * s, s3 = s2 * s;
+        double h00 = 2 * s3 - 3 * s2 + 1;
+        double h10 = s3 - 2 * s2 + s;
+        double h01 = -2 * s3 + 3 * s2;
+        double h11 = s3 - s2;
+        for (int c = 0; c < 3; c++) {
+            double p0 = valor(i, c), p1 = valor(i + 1, c);
+            out[c] = h00 * p0 + h10 * h * tangente(i, c) + h01 * p1 + h11 * h * tangente(i + 1, c);
+        }
+        return true;
+    }
+
+    /** Velocidade {vx, vy, vz} em m/s em t (derivada da mesma curva de positionAt). */
+    public boolean velocityAt(double t, double[] out) {
+        int i = indexAt(t);
+        if (i < 0) return false;
+        int n = track.size();
+        if (n == 1) {
+            out[0] = out[1] = out[2] = 0;
+            return true;
+        }
+        if (i >= n - 1) i = n - 2;
+        double t0 = timeOf(i), t1 = timeOf(i + 1);
+        double h = t1 - t0;
+        if (h <= 0) {
+            out[0] = out[1] = out[2] = 0;
+            return true;
+        }
+        double s = Math.max(0, Math.min(1, (t - t0) / h));
+        double s2 = s * s;
+        // derivadas das bases de Hermite em relação a s, divididas por h
+        double d00 = (6 * s2 - 6 * s) / h;
+        double d10 = 3 * s2 - 4 * s + 1;
+        double d01 = (-6 * s2 + 6 * s) / h;
+        double d11 = 3 * s2 - 2 * s;
+        for (int c = 0; c < 3; c++) {
+            out[c] = d00 * valor(i, c) + d10 * tangente(i, c) + d01 * valor(i + 1, c) + d11 * tangente(i + 1, c);
+        }
+        return true;
+    }
+
+    /**
+     * Rumo em graus (0 = norte/+y, 90 = leste/+x) em t; NaN sem fixos.
+     * {@code tmp} é um array de 3 posições do chamador (evita alocação).
+     */
+    public double headingAt(double t, double[] tmp) {
+        if (!velocityAt(t, tmp)) return Double.NaN;
+        double rumo = Math.toDegrees(Math.atan2(tmp[0], tmp[1]));
+        return rumo < 0 ? rumo + 360 : rumo;
+    }
+
+    /** Vario em m/s em t (altitude GNSS); NaN sem fixos. */
+    public double varioAt(double t, double[] tmp) {
+        if (!velocityAt(t, tmp)) return Double.NaN;
+        return tmp[2];
+    }
+
+    // -------------------- helpers --------------------
+
+    /** Maior i em [lo, hi) com timeOf(i) <= t; lo - 1 → 0 se nenhum. */
+    private int busca(double t, int lo, int hi) {
+        int a = lo, b = hi;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (timeOf(mid) <= t) a = mid + 1; else b = mid;
+        }
+        return Math.max(0, a - 1);
+    }
+
+    private double valor(int i, int c) {
+        switch (c) {
+            case 0: return track.x(i);
+            case 1: return track.y(i);
+            default: return track.gnssAltitude(i);
+        }
+    }
+
+    /** Tangente (unidades por segundo) no fixo i: diferença centrada, unilateral nas pontas. */
+    private double tangente(int i, int c) {
+        int n = track.size();
+        int a = Math.max(0, i - 1), b = Math.min(n - 1, i + 1);
+        double dt = timeOf(b) - timeOf(a);
+        return dt > 0 ? (valor(b, c) - valor(a, c)) / dt : 0;
+    }
+}
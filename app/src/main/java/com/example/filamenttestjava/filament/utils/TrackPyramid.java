@@ -0,0 +1,185 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.util.Arrays;
+
+/**
+ * Pirâmide de simplificação da trilha (Visvalingam-Whyatt em 3D: x, y, altitude GNSS).
+ * Um único passe O(n log n) com heap binário em arrays primitivos dá a cada fixo a sua
+ * "importância" (área efetiva, monotônica na ordem de remoção); cada nível da pirâmide é
+ * a lista ordenada dos índices cujo valor passa da tolerância do nível. Os níveis são
+ * aninhados (um fixo de um nível grosso está em todos os mais finos) e o primeiro e o
+ * último fixo estão sempre presentes.
+ *
+ * A tolerância é dada em metros e comparada com a raiz da área do triângulo que o fixo
+ * forma com os vizinhos restantes. A trilha precisa estar projetada (x/y).
+ */
+public class TrackPyramid {
+
+    /**
+     * Tolerâncias padrão (m). O nível 0 é a trilha inteira; em test.igc os demais ficam
+     * com ~46%, ~19%, ~7% e ~2% dos fixos (40 m é o nível de visão geral).
+     */
+    public static final double[] TOLERANCIAS_PADRAO = {0, 5, 15, 40, 120};
+    /** Tolerância da visão geral (m): a fita de longe da trilha usa este nível. */
+    public static final double VISAO_GERAL = 40;
+
+    private final FlightTrack track;
+    private final int n;
+    private final double[] tolerancias;
+    private final int[][] niveis;
+
+    public TrackPyramid(FlightTrack track) {
+        this(track, track.size(), TOLERANCIAS_PADRAO);
+    }
+
+    /** Constrói sobre os {@code n} primeiros fixos; {@code tolerancias} crescentes, em metros. */
+    public TrackPyramid(FlightTrack track, int n, double[] tolerancias) {
+        this.track = track;
+        this.n = n;
+        this.tolerancias = tolerancias.clone();
+        double[] importancia = importancias(track, n);
+
+        niveis = new int[tolerancias.length][];
+        int[] tmp = new int[n];
+        for (int l = 0; l < tolerancias.length; l++) {
+            double limite = tolerancias[l] * tolerancias[l];
+            int c = 0;
+            for (int i = 0; i < n; i++) {
+                if (importancia[i] >= limite) tmp[c++] = i;
+            }
+            niveis[l] = Arrays.copyOf(tmp, c);
+        }
+    }
+
+    public int getLevelCount()            { return niveis.length; }
+    public double getTolerance(int nivel) { return tolerancias[nivel]; }
+    public int getFixCount()              { return n; }
+
+    /** Índices de fixo do nível (ordenados; não altere o array). */
+    public int[] level(int nivel) { return niveis[nivel]; }
+
+    /** Nível mais grosso cuja tolerância não passa de {@code metros}. */
+    public int levelForTolerance(double metros) {
+        int l = 0;
+        while (l + 1 < tolerancias.length && tolerancias[l + 1] <= metros) l++;
+        return l;
+    }
+
+    /**
+     * Faixa [out[0], out[1]) de posições em {@link #level(int)} cujos fixos têm horário
+     * em [t0, t1]. Busca binária, sem alocação.
+     */
+    public void range(int nivel, int t0, int t1, int[] out) {
+        int[] idx = niveis[nivel];
+        out[0] = primeiroComTempo(idx, t0, false);
+        out[1] = primeiroComTempo(idx, t1, true);
+    }
+
+    // -------------------- construção --------------------
+
+    /** Área efetiva de cada fixo (m², monotônica); extremos = infinito. */
+    static double[] importancias(FlightTrack t, int n) {
+        double[] area = new double[n];
+        if (n == 0) return area;
+        float[] x = t.xColumn(), y = t.yColumn();
+        short[] z = t.gnssAltColumn();
+
+        int[] prev = new int[n], next = new int[n];
+        for (int i = 0; i < n; i++) {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+        }
+        area[0] = Double.POSITIVE_INFINITY;
+        area[n - 1] = Double.POSITIVE_INFINITY;
+
+        // heap de mínimo pelos fixos internos; pos[i] = posição de i no heap (-1 fora)
+        int m = Math.max(0, n - 2);
+        int[] heap = new int[m];
+        int[] pos = new int[n];
+        Arrays.fill(pos, -1);
+        for (int i = 1; i < n - 1; i++) {
+            area[i] = areaTriangulo(x, y, z, i - 1, i, i + 1);
+            heap[i - 1] = i;
+            pos[i] = i - 1;
+        }
+        for (int k = m / 2 - 1; k >= 0; k--) desce(heap, pos, area, m, k);
+
+        double maior = 0;
+        while (m > 0) {
+            int i = heap[0];
+            m--;
+            if (m > 0) {
+                heap[0] = heap[m];
+                pos[heap[0]] = 0;
+                desce(heap, pos, area, m, 0);
+            }
+            pos[i] = -1;
+
+            // monotônico: quem sai depois nunca vale menos que quem saiu antes
+            if (area[i] < maior) area[i] = maior;
+            maior = area[i];
+
+            int p = prev[i], q = next[i];
+            next[p] = q;
+            prev[q] = p;
+            if (pos[p] >= 0) atualiza(heap, pos, area, m, p, areaTriangulo(x, y, z, prev[p], p, q));
+            if (pos[q] >= 0) atualiza(heap, pos, area, m, q, areaTriangulo(x, y, z, p, q, next[q]));
+        }
+        return area;
+    }
+
+    private static double areaTriangulo(float[] x, float[] y, short[] z, int a, int b, int c) {
+        double ux = x[b] - x[a], uy = y[b] - y[a], uz = z[b] - z[a];
+        double vx = x[c] - x[a], vy = y[c] - y[a], vz = z[c] - z[a];
+        double cx = uy * vz - uz * vy;
+        double cy = uz * vx - ux * vz;
+        double cz = ux * vy - uy * vx;
+        return 0.5 * Math.sqrt(cx * cx + cy * cy + cz * cz);
+    }
+
+    private static void atualiza(int[] heap, int[] pos, double[] area, int m, int i, double nova) {
+        double antiga = area[i];
+        area[i] = nova;
+        if (nova < antiga) sobe(heap, pos, area, pos[i]);
+        else desce(heap, pos, area, m, pos[i]);
+    }
+
+    private static void sobe(int[] heap, int[] pos, double[] area, int k) {
+        int v = heap[k];
+        while (k > 0) {
+            int pai = (k - 1) >>> 1;
+            if (area[heap[pai]] <= area[v]) break;
+            heap[k] = heap[pai];
+            pos[heap[k]] = k;
+            k = pai;
+        }
+        heap[k] = v;
+        pos[v] = k;
+    }
+
+    private static void desce(int[] heap, int[] pos, double[] area, int m, int k) {
+        int v = heap[k];
+        while (true) {
+            int f = 2 * k + 1;
+            if (f >= m) break;
+            if (f + 1 < m && area[heap[f + 1]] < area[heap[f]]) f++;
+            if (area[heap[f]] >= area[v]) break;
+            heap[k] = heap[f];
+            pos[heap[k]] = k;
+            k = f;
+        }
+        heap[k] = v;
+        pos[v] = k;
+    }
+
+    /** Primeira posição com time > t (depois=true) ou time >= t (depois=false). */
+    private int primeiroComTempo(int[] idx, int t, boolean depois) {
+        int lo = 0, hi = idx.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int tm = track.time(idx[mid]);
+            if (depois ? tm <= t : tm < t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.filamenttestjava.filament.utils;
+
+/**
+ * Estimador de vento pela deriva nas térmicas: girando, a velocidade de solo descreve um
+ * círculo cujo centro é o vento e o raio é a velocidade do ar. Cada fixo em giro vira uma
+ * amostra de velocidade (diferença entre fixos) e entra num ajuste de círculo por mínimos
+ * quadrados (Kasa, algébrico) sobre uma janela deslizante de {@link #JANELA_S} segundos.
+ * As somas do ajuste são mantidas incrementalmente (entra a amostra nova, saem as velhas),
+ * então o custo por fixo é constante e nada é alocado: roda ao vivo junto com o render.
+ *
+ * A cada volta completa ({@link #GIRO_POR_ESTIMATIVA} graus desde a última) com ajuste
+ * aceitável sai uma estimativa pelo {@link Listener}, marcada com horário e altitude, e ela
+ * entra no perfil por faixa de altitude ({@link #BANDA_M} m), que guarda a média vetorial
+ * de cada faixa em três floats.
+ *
+ * Vento como vetor "para onde o ar vai" no plano projetado (x = leste, y = norte, m/s);
+ * {@link #getWindDirection()} devolve de onde ele vem, em graus, como no WDI do IGC.
+ * Quem diz se o piloto está girando é o chamador (ex.: fase TERMICA do
+ * {@link FlightPhaseClassifier}).
+ */
+public class WindEstimator {
+
+    /** Janela do ajuste (s): ~2 voltas de térmica. */
+    public static final int JANELA_S = 60;
+    /** Giro entre duas estimativas (graus). */
+    public static final float GIRO_POR_ESTIMATIVA = 360f;
+    /** Altura de cada faixa do perfil (m). */
+    public static final int BANDA_M = 100;
+    /** Faixas do perfil: 0 a 10.000 m (acima disso fica na última). */
+    public static final int BANDAS = 100;
+
+    // ajuste aceito: velocidade do ar plausível, vento menor que ela, resíduo pequeno
+    private static final float AR_MIN = 5f, AR_MAX = 35f;     // m/s
+    private static final float VENTO_MAX_RELATIVO = 0.8f;     // do raio
+    private static final float RESIDUO_MAX = 1.5f;            // m/s (rms geométrico aproximado)
+    private static final int AMOSTRAS_MIN = 8;
+    /** Intervalo máximo entre fixos para virar amostra de velocidade (s). */
+    private static final int DT_MAX = 5;
+
+    private static final int CAPACIDADE = 512; // potência de 2; cobre 60 s até ~8 Hz
+    private static final int MASCARA = CAPACIDADE - 1;
+
+    public interface Listener {
+        /** Nova estimativa no fixo {@code index}: vento (wx, wy) em m/s. */
+        void onWind(int index, int time, int altitude, float wx, float wy);
+    }
+
+    private final Listener listener;
+
+    // anel de amostras (velocidade e horário)
+    private final int[] anelTime = new int[CAPACIDADE];
+    private final float[] anelVx = new float[CAPACIDADE];
+    private final float[] anelVy = new float[CAPACIDADE];
+    private long cabeca = 0, cauda = 0;
+
+    // somas do ajuste; z = vx² + vy²
+    private double sx, sy, sxx, sxy, syy, sz, sxz, syz, szz;
+    private int amostras = 0;
+
+    // fixo anterior
+    private boolean temAnterior = false;
+    private int lastTime;
+    private float lastX, lastY;
+    private double ultimoRumo = Double.NaN;
+
+    // giro dentro da janela (para exigir uma volta inteira) e desde a última estimativa
+    private final double[] anelGiro = new double[CAPACIDADE];
+    private double giro = 0, giroUltimaEstimativa = 0;
+
+    private boolean temVento = false;
+    private float ventoX, ventoY, velocidadeAr;
+    private int tempoVento, altitudeVento;
+
+    // perfil: soma vetorial e peso por faixa
+    private final float[] perfilX = new float[BANDAS];
+    private final float[] perfilY = new float[BANDAS];
+    private final float[] perfilPeso = new float[BANDAS];
+
+    public WindEstimator(Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean hasWind()        { return temVento; }
+    public float getWindX()         { return ventoX; }
+    public float getWindY()         { return ventoY; }
+    public float getAirspeed()      { return velocidadeAr; }
+    public int getWindTime()        { return tempoVento; }
+    public int getWindAltitude()    { return altitudeVento; }
+
+    public float getWindSpeed() {
+        return (float) Math.sqrt(ventoX * ventoX + ventoY * ventoY);
+    }
+
+    /** De onde o vento vem, em graus (0 = norte, 90 = leste). */
+    public float getWindDirection() {
+        return direcao(ventoX, ventoY);
+    }
+
+    /** Alimenta com o fixo i da trilha (já projetada); {@code circling} = em térmica. */
+    public void update(FlightTrack t, int i, boolean circling) {
+        update(i, t.time(i), t.x(i), t.y(i), t.gnssAltitude(i), circling);
+    }
+
+    public void update(int index, int time, float x, float y, int altitude, boolean circling) {
+        if (!circling) {
+            // saiu da térmica: a próxima começa do zero
+            esvazia();
+            marcaAnterior(time, x, y);
+            return;
+        }
+        if (temAnterior && time <= lastTime) return;
+        if (!temAnterior || time - lastTime > DT_MAX) {
+            // falha de gravação: a velocidade do salto não é amostra
+            esvazia();
+            marcaAnterior(time, x, y);
+            return;
+        }
+        int dt = time - lastTime;
+        float vx = (x - lastX) / dt, vy = (y - lastY) / dt;
+        double rumo = Math.toDegrees(Math.atan2(vx, vy));
+        if (!Double.isNaN(ultimoRumo)) {
+            double delta = rumo - ultimoRumo;
+            if (delta > 180) delta -= 360; else if (delta < -180) delta += 360;
+            giro += delta;
+        }
+        ultimoRumo = rumo;
+        marcaAnterior(time, x, y);
+
+        if (cabeca - cauda == CAPACIDADE) remove();
+        int slot = (int) (cabeca & MASCARA);
+        anelTime[slot] = time;
+        anelVx[slot] = vx;
+        anelVy[slot] = vy;
+        anelGiro[slot] = giro;
+        cabeca++;
+        soma(vx, vy, 1);
+        while (cauda < cabeca && anelTime[(int) (cauda & MASCARA)] < time - JANELA_S) remove();
+
+        if (Math.abs(giro - giroUltimaEstimativa) >= GIRO_POR_ESTIMATIVA && ajusta()) {
+            giroUltimaEstimativa = giro;
+            tempoVento = time;
+            altitudeVento = altitude;
+            int b = banda(altitude);
+            perfilX[b] += ventoX;
+            perfilY[b] += ventoY;
+            perfilPeso[b] += 1;
+            if (listener != null) listener.onWind(index, time, altitude, ventoX, ventoY);
+        }
+    }
+
+    /**
+     * Vento médio da faixa de {@code altitude} em {@code out} = {wx, wy}; se a faixa não tem
+     * estimativa, usa a faixa com dados mais próxima. Falso se o perfil está vazio.
+     */
+    public boolean profileWind(int altitude, float[] out) {
+        int b = banda(altitude);
+        for (int d = 0; d < BANDAS; d++) {
+            int k = b - d >= 0 && perfilPeso[b - d] > 0 ? b - d
+                    : b + d < BANDAS && perfilPeso[b + d] > 0 ? b + d : -1;
+            if (k >= 0) {
+                out[0] = perfilX[k] / perfilPeso[k];
+                out[1] = perfilY[k] / perfilPeso[k];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Número de estimativas na faixa {@code banda} (altitude banda·BANDA_M até a próxima). */
+    public int getProfileSamples(int banda) {
+        return (int) perfilPeso[banda];
+    }
+
+    /** De onde vem um vento (wx, wy), em graus. */
+    public static float direcao(float wx, float wy) {
+        double d = Math.toDegrees(Math.atan2(-wx, -wy));
+        return (float) (d < 0 ? d + 360 : d);
+    }
+
+    public void reset() {
+        esvazia();
+        temAnterior = false;
+        temVento = false;
+        for (int b = 0; b < BANDAS; b++) perfilX[b] = perfilY[b] = perfilPeso[b] = 0;
+    }
+
+    // -------------------- helpers --------------------
+
+    /**
+     * Kasa: minimiza Σ(z + D·vx + E·vy + F)²; centro = (−D/2, −E/2), raio² = centro² − F.
+     * Resolve o sistema normal 3x3 por Cramer a partir das somas.
+     */
+    private boolean ajusta() {
+        int n = amostras;
+        if (n < AMOSTRAS_MIN) return false;
+        // só com uma volta inteira dentro da janela o círculo fica determinado
+        double giroJanela = Math.abs(giro - anelGiro[(int) (cauda & MASCARA)]);
+        if (giroJanela < 360) return false;
+
+        double a00 = sxx, a01 = sxy, a02 = sx;
+        double a11 = syy, a12 = sy, a22 = n;
+        double b0 = -sxz, b1 = -syz, b2 = -sz;
+        double c00 = a11 * a22 - a12 * a12;
+        double c01 = a02 * a12 - a01 * a22;
+        double c02 = a01 * a12 - a02 * a11;
+        double det = a00 * c00 + a01 * c01 + a02 * c02;
+        if (Math.abs(det) < 1e-9) return false;
+        double c11 = a00 * a22 - a02 * a02;
+        double c12 = a01 * a02 - a00 * a12;
+        double c22 = a00 * a11 - a01 * a01;
+        double d = (c00 * b0 + c01 * b1 + c02 * b2) / det;
+        double e = (c01 * b0 + c11 * b1 + c12 * b2) / det;
+        double f = (c02 * b0 + c12 * b1 + c22 * b2) / det;
+
+        double cx = -d / 2, cy = -e / 2;
+        double r2 = cx * cx + cy * cy - f;
+        if (r2 <= 0) return false;
+        double r = Math.sqrt(r2);
+        if (r < AR_MIN || r > AR_MAX) return false;
+        if (Math.sqrt(cx * cx + cy * cy) > VENTO_MAX_RELATIVO * r) return false;
+
+        // resíduo algébrico z + D·vx + E·vy + F ≈ 2r·(erro radial)
+        double res = szz + d * d * sxx + e * e * syy + f * f * n
+                + 2 * (d * sxz + e * syz + f * sz + d * e * sxy + d * f * sx + e * f * sy);
+        double rms = Math.sqrt(Math.max(0, res) / n) / (2 * r);
+        if (rms > RESIDUO_MAX) return false;
+
+        ventoX = (float) cx;
+        ventoY = (float) cy;
+        velocidadeAr = (float) r;
+        temVento = true;
+        return true;
+    }
+
+    private void soma(double vx, double vy, int sinal) {
+        double z = vx * vx + vy * vy;
+        sx += sinal * vx;
+        sy += sinal * vy;
+        sxx += sinal * vx * vx;
+        sxy += sinal * vx * vy;
+        syy += sinal * vy * vy;
+        sz += sinal * z;
+        sxz += sinal * vx * z;
+        syz += sinal * vy * z;
+        szz += sinal * z * z;
+        amostras += sinal;
+    }
+
+    private void remove() {
+        int slot = (int) (cauda & MASCARA);
+        soma(anelVx[slot], anelVy[slot], -1);
+        cauda++;
+    }
+
+    /** Zera a janela (as somas voltam a zero exatas, sem resto de arredondamento). */
+    private void esvazia() {
+        cabeca = cauda = 0;
+        sx = sy = sxx = sxy = syy = sz = sxz = syz = szz = 0;
+        amostras = 0;
+        giro = giroUltimaEstimativa = 0;
+        ultimoRumo = Double.NaN;
+    }
+
+    private void marcaAnterior(int time, float x, float y) {
+        temAnterior = true;
+        lastTime = time;
+        lastX = x;
+        lastY = y;
+    }
+
+    private static int banda(int altitude) {
+        return Math.max(0, Math.min(BANDAS - 1, altitude / BANDA_M));
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.filamenttestjava.filament.utils;
+
+import java.util.Arrays;
+
+/**
+ * Pontuação XC: distância livre (3 pontos de virada), triângulo plano e triângulo FAI.
+ *
+ * 1) Passe grosso num nível da {@link TrackPyramid} com no máximo {@link #MAX_PONTOS_GROSSOS}
+ *    fixos. Distância livre por programação dinâmica (O(k·m²)). Triângulos por
+ *    branch-and-bound sobre os pares (a, c) de primeira e última virada: o limite superior
+ *    do par é d(a, c) mais as maiores distâncias de a e de c até a bounding box do trecho
+ *    entre eles (tabelas esparsas, O(1)), menos o fechamento mínimo; para FAI o perímetro
+ *    ainda fica limitado por d(a, c) / 0,28. Os pares são visitados do maior limite para o
+ *    menor e a busca para quando o limite não passa do melhor já achado; só os pares que
+ *    sobram varrem a virada do meio.
+ * 2) O fechamento (menor distância entre um início antes de a e um fim depois de c) vem de
+ *    um nível mais fino, com até {@link #MAX_PONTOS_FECHAMENTO} fixos.
+ * 3) Refinamento local na trilha inteira: cada ponto é movido dentro da janela entre os
+ *    vizinhos do seu nível, um de cada vez, até não melhorar mais.
+ *
+ * Otimização no plano projetado (x/y, a trilha precisa estar projetada); as distâncias do
+ * resultado são recalculadas na esfera FAI (R = 6371 km) a partir de lat/lon dos fixos
+ * escolhidos.
+ */
+public class XcOptimizer {
+
+    /** Teto de pontos do passe grosso (a tabela de fechamento tem m² floats). */
+    public static final int MAX_PONTOS_GROSSOS = 1000;
+    /** Teto de pontos do nível usado para o fechamento (custo ~F²/2). */
+    public static final int MAX_PONTOS_FECHAMENTO = 4000;
+    /** Fechamento máximo (distância entre início e fim do triângulo) / perímetro. */
+    public static final double FECHAMENTO_MAX = 0.2;
+    /** Menor perna do triângulo FAI / perímetro. */
+    public static final double PERNA_MIN_FAI = 0.28;
+
+    private static final double RAIO_FAI = 6371000.0;
+    private static final int MAX_ITERACOES = 20;
+    /** Triângulos grossos levados ao refinamento. */
+    private static final int CANDIDATOS = 8;
+    /** Abaixo disso a virada do meio é varrida direto, sem subdividir. */
+    private static final int TRECHO_LINEAR = 16;
+
+    /** Resultado; índices são de fixos da trilha, distâncias em metros (esfera FAI). */
+    public static final class Result {
+        /** início, 3 viradas e fim. */
+        public final int[] freeFixes = new int[5];
+        public double freeDistance;
+
+        /** viradas a, b, c e fechamento s (início), e (fim); null se não houver triângulo. */
+        public int[] flatFixes;
+        public double flatPerimeter, flatClosing;
+
+        public int[] faiFixes;
+        public double faiPerimeter, faiClosing;
+
+        /** Pontuação do triângulo (perímetro − fechamento). */
+        public double flatScore() { return flatFixes == null ? 0 : flatPerimeter - flatClosing; }
+        public double faiScore()  { return faiFixes == null ? 0 : faiPerimeter - faiClosing; }
+    }
+
+    private final FlightTrack track;
+    private final int n;
+    private final float[] x, y;
+
+    // passe grosso
+    private final int[] idx;
+    private final int m;
+    private final float[] gx, gy;
+    // nível do fechamento (contém o grosso: os níveis são aninhados)
+    private final int[] fino;
+
+    private float[] fechamento;  // G[a*m + c] = min d(s, e), s <= idx[a], e >= idx[c] (fixos finos)
+    private float[][] minX, maxX, minY, maxY;
+    private int[] log2;
+    private long[] pares;
+
+    // os CANDIDATOS melhores triângulos grossos, em ordem decrescente (o ótimo grosso nem
+    // sempre refina para o melhor fino: com a regra dos 28% ativa o refinamento para em
+    // ótimos locais)
+    private final double[] melhores = new double[CANDIDATOS];
+    private final int[] triplas = new int[CANDIDATOS * 3];
+    private int nc;
+
+    public XcOptimizer(FlightTrack track) {
+        this(track, new TrackPyramid(track));
+    }
+
+    public XcOptimizer(FlightTrack track, TrackPyramid piramide) {
+        this.track = track;
+        this.n = piramide.getFixCount();
+        this.x = track.xColumn();
+        this.y = track.yColumn();
+
+        this.idx = nivelAte(piramide, MAX_PONTOS_GROSSOS);
+        this.fino = nivelAte(piramide, MAX_PONTOS_FECHAMENTO);
+        this.m = idx.length;
+        gx = new float[m];
+        gy = new float[m];
+        for (int k = 0; k < m; k++) {
+            gx[k] = x[idx[k]];
+            gy[k] = y[idx[k]];
+        }
+    }
+
+    public Result optimize() {
+        Result r = new Result();
+        if (n < 2 || m < 2) return r;
+        livre(r);
+        if (m >= 3) {
+            preparaTriangulos();
+            r.flatFixes = triangulo(false, r);
+            r.faiFixes = triangulo(true, r);
+        }
+        return r;
+    }
+
+    // ===========================
+    //  DISTÂNCIA LIVRE
+    // ===========================
+
+    private void livre(Result r) {
+        // ant[j] após k rodadas: maior soma de k pernas terminando no ponto grosso j
+        final int pernas = 4;
+        double[] ant = new double[m], cur = new double[m];
+        int[][] pai = new int[pernas + 1][m];
+        for (int k = 1; k <= pernas; k++) {
+            for (int j = 0; j < m; j++) {
+                double best = -1;
+                int arg = 0;
+                for (int i = 0; i <= j; i++) {
+                    double v = ant[i] + dg(i, j);
+                    if (v > best) {
+                        best = v;
+                        arg = i;
+                    }
+                }
+                cur[j] = best;
+                pai[k][j] = arg;
+            }
+            double[] t = ant; ant = cur; cur = t;
+        }
+        int fim = 0;
+        for (int j = 1; j < m; j++) if (ant[j] > ant[fim]) fim = j;
+        int[] p = new int[5];
+        p[4] = fim;
+        for (int k = pernas; k >= 1; k--) p[k - 1] = pai[k][p[k]];
+
+        // refinamento na trilha inteira
+        int[] f = new int[5], lo = new int[5], hi = new int[5];
+        for (int k = 0; k < 5; k++) {
+            f[k] = idx[p[k]];
+            lo[k] = p[k] > 0 ? idx[p[k] - 1] : 0;
+            hi[k] = p[k] < m - 1 ? idx[p[k] + 1] : n - 1;
+        }
+        boolean melhorou = true;
+        for (int it = 0; it < MAX_ITERACOES && melhorou; it++) {
+            melhorou = false;
+            for (int k = 0; k < 5; k++) {
+                int a = Math.max(lo[k], k > 0 ? f[k - 1] : 0);
+                int b = Math.min(hi[k], k < 4 ? f[k + 1] : n - 1);
+                double base = (k > 0 ? d(f[k - 1], f[k]) : 0) + (k < 4 ? d(f[k], f[k + 1]) : 0);
+                for (int i = a; i <= b; i++) {
+                    double v = (k > 0 ? d(f[k - 1], i) : 0) + (k < 4 ? d(i, f[k + 1]) : 0);
+                    if (v > base + 1e-6) {
+                        base = v;
+                        f[k] = i;
+                        melhorou = true;
+                    }
+                }
+            }
+        }
+        System.arraycopy(f, 0, r.freeFixes, 0, 5);
+        double soma = 0;
+        for (int k = 0; k < 4; k++) soma += esfera(f[k], f[k + 1]);
+        r.freeDistance = soma;
+    }
+
+    // ===========================
+    //  TRIÂNGULOS
+    // ===========================
+
+    private void preparaTriangulos() {
+        // H(a, c) = min d(s, e) com s no bloco fino de a (depois de idx[a-1] até idx[a]) e
+        // e >= idx[c]; G(a, c) = min(G(a-1, c), H(a, c)): cai com a, cresce com c
+        int nf = fino.length;
+        int[] posFina = new int[m];  // posição de idx[c] em fino
+        for (int c = 0, j = 0; c < m; c++) {
+            while (fino[j] != idx[c]) j++;
+            posFina[c] = j;
+        }
+        fechamento = new float[m * m];
+        float[] h = new float[m];
+        int inicioBloco = 0;
+        for (int a = 0; a < m; a++) {
+            Arrays.fill(h, a, m, Float.POSITIVE_INFINITY);
+            for (int s = inicioBloco; s <= posFina[a]; s++) {
+                float sx = x[fino[s]], sy = y[fino[s]];
+                float acc = Float.POSITIVE_INFINITY;
+                int c = m - 1;
+                for (int e = nf - 1; e >= posFina[a]; e--) {
+                    float dx = x[fino[e]] - sx, dy = y[fino[e]] - sy;
+                    float d2 = dx * dx + dy * dy;
+                    if (d2 < acc) acc = d2;
+                    if (e == posFina[c]) {
+                        if (acc < h[c]) h[c] = acc;
+                        c--;
+                    }
+                }
+            }
+            inicioBloco = posFina[a] + 1;
+            for (int c = a; c < m; c++) {
+                float g = (float) Math.sqrt(h[c]);
+                if (a > 0) g = Math.min(g, fechamento[(a - 1) * m + c]);
+                fechamento[a * m + c] = g;
+            }
+        }
+
+        // tabelas esparsas de min/max: bounding box de qualquer trecho em O(1)
+        log2 = new int[m + 1];
+        for (int i = 2; i <= m; i++) log2[i] = log2[i / 2] + 1;
+        int niveis = log2[m] + 1;
+        minX = new float[niveis][];
+        maxX = new float[niveis][];
+        minY = new float[niveis][];
+        maxY = new float[niveis][];
+        minX[0] = gx.clone(); maxX[0] = gx.clone();
+        minY[0] = gy.clone(); maxY[0] = gy.clone();
+        for (int l = 1; l < niveis; l++) {
+            int len = m - (1 << l) + 1, meio = 1 << (l - 1);
+            minX[l] = new float[len]; maxX[l] = new float[len];
+            minY[l] = new float[len]; maxY[l] = new float[len];
+            for (int i = 0; i < len; i++) {
+                minX[l][i] = Math.min(minX[l - 1][i], minX[l - 1][i + meio]);
+                maxX[l][i] = Math.max(maxX[l - 1][i], maxX[l - 1][i + meio]);
+                minY[l][i] = Math.min(minY[l - 1][i], minY[l - 1][i + meio]);
+                maxY[l][i] = Math.max(maxY[l - 1][i], maxY[l - 1][i + meio]);
+            }
+        }
+        pares = new long[m * (m - 1) / 2];
+    }
+
+    /** Melhor triângulo (plano ou FAI): {a, b, c, s, e} em fixos, ou null. Preenche r. */
+    private int[] triangulo(boolean fai, Result r) {
+        // limite de cada par (a, c) empacotado com o par num long: floats positivos
+        // ordenam igual aos seus bits
+        int np = 0;
+        for (int a = 0; a < m - 2; a++) {
+            for (int c = a + 2; c < m; c++) {
+                double limite = limitePar(a, c, fai);
+                if (limite <= 0) continue;
+                pares[np++] = ((long) Float.floatToIntBits(Math.nextUp((float) limite)) << 32) | (a * m + c);
+            }
+        }
+        Arrays.sort(pares, 0, np);
+
+        nc = 0;
+        for (int k = np - 1; k >= 0; k--) {
+            if (Float.intBitsToFloat((int) (pares[k] >>> 32)) <= corte()) break;
+            int par = (int) pares[k];
+            int a = par / m, c = par % m;
+            viradaDoMeio(a, c, a + 1, c - 1, dg(a, c), fechamento[par], fai);
+        }
+
+        int[] melhor = null;
+        double pontos = 0;
+        for (int q = 0; q < nc; q++) {
+            int[] f = refinaTriangulo(triplas[q * 3], triplas[q * 3 + 1], triplas[q * 3 + 2], fai);
+            double v = f == null ? 0 : pontua(f, fai);
+            if (v > pontos) {
+                pontos = v;
+                melhor = f;
+            }
+        }
+        if (melhor == null) return null;
+        double per = esfera(melhor[0], melhor[1]) + esfera(melhor[1], melhor[2]) + esfera(melhor[2], melhor[0]);
+        double fech = esfera(melhor[3], melhor[4]);
+        if (fai) {
+            r.faiPerimeter = per;
+            r.faiClosing = fech;
+        } else {
+            r.flatPerimeter = per;
+            r.flatClosing = fech;
+        }
+        return melhor;
+    }
+
+    /** Limite superior da pontuação com primeira virada a e última c (0 = par impossível). */
+    private double limitePar(int a, int c, boolean fai) {
+        return limite(a, c, a + 1, c - 1, dg(a, c), fechamento[a * m + c], fai);
+    }
+
+    /**
+     * Limite superior com a e c fixos e a virada do meio em [lo, hi]: d(a, c) mais as maiores
+     * distâncias de a e de c até a bounding box do trecho, menos o fechamento g; no FAI cada
+     * perna tem de ter >= 28% do perímetro. 0 se nem o limite fecha.
+     */
+    private double limite(int a, int c, int lo, int hi, double ac, double g, boolean fai) {
+        double perimetro = fai ? ac / PERNA_MIN_FAI : Double.POSITIVE_INFINITY;
+        if (g > FECHAMENTO_MAX * perimetro) return 0;
+        int l = log2[hi - lo + 1], hi2 = hi - (1 << l) + 1;
+        float bxMin = Math.min(minX[l][lo], minX[l][hi2]), bxMax = Math.max(maxX[l][lo], maxX[l][hi2]);
+        float byMin = Math.min(minY[l][lo], minY[l][hi2]), byMax = Math.max(maxY[l][lo], maxY[l][hi2]);
+        double ab = distMax(gx[a], gy[a], bxMin, bxMax, byMin, byMax);
+        double bc = distMax(gx[c], gy[c], bxMin, bxMax, byMin, byMax);
+        perimetro = Math.min(perimetro, ac + ab + bc);
+        if (fai) {
+            // idem para as outras duas pernas; e cada uma precisa alcançar 28% do perímetro
+            // mesmo com as demais no mínimo: 0,72·ab >= 0,28·(ac + bc)
+            perimetro = Math.min(perimetro, Math.min(ab, bc) / PERNA_MIN_FAI);
+            double abMin = distMin(gx[a], gy[a], bxMin, bxMax, byMin, byMax);
+            double bcMin = distMin(gx[c], gy[c], bxMin, bxMax, byMin, byMax);
+            double q = PERNA_MIN_FAI / (1 - PERNA_MIN_FAI);
+            if (ab < q * (ac + bcMin) || bc < q * (ac + abMin)) return 0;
+        }
+        if (g > FECHAMENTO_MAX * perimetro) return 0;
+        return perimetro - g;
+    }
+
+    /** Busca a virada do meio em [lo, hi] dividindo o trecho ao meio enquanto o limite passa do corte. */
+    private void viradaDoMeio(int a, int c, int lo, int hi, double ac, double g, boolean fai) {
+        if (hi - lo >= TRECHO_LINEAR) {
+            if (limite(a, c, lo, hi, ac, g, fai) <= corte()) return;
+            int meio = (lo + hi) >>> 1;
+            viradaDoMeio(a, c, lo, meio, ac, g, fai);
+            viradaDoMeio(a, c, meio + 1, hi, ac, g, fai);
+            return;
+        }
+        for (int b = lo; b <= hi; b++) {
+            double ab = dg(a, b), bc = dg(b, c);
+            double p = ab + bc + ac;
+            if (p - g <= corte() || g > FECHAMENTO_MAX * p) continue;
+            if (fai && Math.min(ab, Math.min(bc, ac)) < PERNA_MIN_FAI * p) continue;
+            // inserção ordenada (decrescente)
+            int q = nc < CANDIDATOS ? nc++ : nc - 1;
+            while (q > 0 && melhores[q - 1] < p - g) {
+                melhores[q] = melhores[q - 1];
+                System.arraycopy(triplas, (q - 1) * 3, triplas, q * 3, 3);
+                q--;
+            }
+            melhores[q] = p - g;
+            triplas[q * 3] = a;
+            triplas[q * 3 + 1] = b;
+            triplas[q * 3 + 2] = c;
+        }
+    }
+
+    /** Pontuação que um triângulo grosso precisa passar para entrar na lista de candidatos. */
+    private double corte() {
+        return nc < CANDIDATOS ? 0 : melhores[nc - 1];
+    }
+
+    /** Refinamento na trilha inteira a partir do triângulo grosso. */
+    private int[] refinaTriangulo(int ga, int gb, int gc, boolean fai) {
+        int[] f = {idx[ga], idx[gb], idx[gc], 0, 0};
+        int[] lo = new int[5], hi = new int[5];
+        int[] g = {ga, gb, gc};
+        for (int k = 0; k < 3; k++) {
+            lo[k] = g[k] > 0 ? idx[g[k] - 1] : 0;
+            hi[k] = g[k] < m - 1 ? idx[g[k] + 1] : n - 1;
+        }
+        // fechamento no nível fino; a janela dele é entre os vizinhos finos
+        int ps = 0, pe = fino.length - 1;
+        float melhorD2 = Float.POSITIVE_INFINITY;
+        for (int s = 0; s < fino.length && fino[s] <= f[0]; s++) {
+            for (int e = fino.length - 1; e >= 0 && fino[e] >= f[2]; e--) {
+                float dx = x[fino[e]] - x[fino[s]], dy = y[fino[e]] - y[fino[s]];
+                float d2 = dx * dx + dy * dy;
+                if (d2 < melhorD2) {
+                    melhorD2 = d2;
+                    ps = s;
+                    pe = e;
+                }
+            }
+        }
+        f[3] = fino[ps];
+        f[4] = fino[pe];
+        // o fechamento anda numa janela do tamanho de dois passos do nível fino em volta
+        // da posição atual; mover a para antes de s (ou c para depois de e) arrasta s (e)
+        int raio = 2 * ((n + fino.length - 1) / fino.length);
+
+        double atual = pontua(f, fai);
+        boolean melhorou = true;
+        for (int it = 0; it < MAX_ITERACOES && melhorou; it++) {
+            melhorou = false;
+            for (int k = 0; k < 5; k++) {
+                // mantém s <= a < b < c <= e
+                int a, b;
+                switch (k) {
+                    case 0:  a = lo[0];                     b = Math.min(hi[0], f[1] - 1);      break;
+                    case 1:  a = Math.max(lo[1], f[0] + 1); b = Math.min(hi[1], f[2] - 1);      break;
+                    case 2:  a = Math.max(lo[2], f[1] + 1); b = hi[2];                          break;
+                    case 3:  a = Math.max(0, f[3] - raio);  b = Math.min(f[3] + raio, f[0]);    break;
+                    default: a = Math.max(f[4] - raio, f[2]); b = Math.min(n - 1, f[4] + raio); break;
+                }
+                int arg = f[k], s0 = f[3], e0 = f[4], argS = s0, argE = e0;
+                for (int i = a; i <= b; i++) {
+                    f[k] = i;
+                    if (k == 0) f[3] = Math.min(s0, i);
+                    if (k == 2) f[4] = Math.max(e0, i);
+                    double v = pontua(f, fai);
+                    if (v > atual + 1e-6) {
+                        atual = v;
+                        arg = i;
+                        argS = f[3];
+                        argE = f[4];
+                        melhorou = true;
+                    }
+                }
+                f[k] = arg;
+                if (k == 0) f[3] = argS;
+                if (k == 2) f[4] = argE;
+            }
+        }
+        return atual > 0 ? f : null;
+    }
+
+    /** Pontuação no plano para {a, b, c, s, e} na trilha inteira; 0 se não fecha / não é FAI. */
+    private double pontua(int[] f, boolean fai) {
+        double ab = d(f[0], f[1]), bc = d(f[1], f[2]), ca = d(f[2], f[0]);
+        double p = ab + bc + ca;
+        double g = d(f[3], f[4]);
+        if (p <= 0 || g > FECHAMENTO_MAX * p) return 0;
+        if (fai && Math.min(ab, Math.min(bc, ca)) < PERNA_MIN_FAI * p) return 0;
+        return p - g;
+    }
+
+    // -------------------- helpers --------------------
+
+    /** Nível mais fino com no máximo {@code max} fixos (amostra uniforme do mais grosso se nenhum couber). */
+    private static int[] nivelAte(TrackPyramid p, int max) {
+        int nivel = 0;
+        while (nivel + 1 < p.getLevelCount() && p.level(nivel).length > max) nivel++;
+        int[] lv = p.level(nivel);
+        if (lv.length <= max) return lv;
+        int[] am = new int[max];
+        for (int k = 0; k < max; k++) am[k] = lv[(int) ((long) k * (lv.length - 1) / (max - 1))];
+        return am;
+    }
+
+    /** Maior distância de (px, py) até um ponto da caixa. */
+    private static double distMax(float px, float py, float minX, float maxX, float minY, float maxY) {
+        double dx = Math.max(px - minX, maxX - px);
+        double dy = Math.max(py - minY, maxY - py);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Menor distância de (px, py) até a caixa (0 dentro dela). */
+    private static double distMin(float px, float py, float minX, float maxX, float minY, float maxY) {
+        double dx = Math.max(0, Math.max(minX - px, px - maxX));
+        double dy = Math.max(0, Math.max(minY - py, py - maxY));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double dg(int i, int j) {
+        double dx = gx[i] - gx[j], dy = gy[i] - gy[j];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double d(int i, int j) {
+        double dx = x[i] - x[j], dy = y[i] - y[j];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Distância na esfera FAI (haversine). */
+    private double esfera(int i, int j) {
+        double la1 = Math.toRadians(track.latitude(i)), la2 = Math.toRadians(track.latitude(j));
+        double dLo = Math.toRadians(track.longitude(j) - track.longitude(i));
+        double s1 = Math.sin((la2 - la1) / 2), s2 = Math.sin(dLo / 2);
+        double h = s1 * s1 + Math.cos(la1) * Math.cos(la2) * s2 * s2;
+        return 2 * RAIO_FAI * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.filamenttestjava.filament.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/** Ida e volta pelo .igcb: mesma trilha do parse do texto, inteira ou em faixas. */
+public class IgcBinaryCacheTest {
+
+    private static final File TEST_IGC = new File("src/main/assets/test.igc");
+    private static final long LEN = 679_009L, MODIFIED = 1_693_526_400_000L;
+
+    @Rule
+    public final TemporaryFolder pasta = new TemporaryFolder();
+
+    private static FlightTrack parse() throws IOException {
+        ByteBuffer buf = IgcMappedReader.map(TEST_IGC);
+        try {
+            return IgcParallelParser.parse(buf);
+        } finally {
+            IgcMappedReader.release(buf);
+        }
+    }
+
+    @Test
+    public void idaEVoltaDoTestIgc() throws IOException {
+        FlightTrack original = parse();
+        File f = pasta.newFile("test.igcb");
+        IgcBinaryCache.write(original, f, LEN, MODIFIED);
+
+        FlightTrack lida = IgcBinaryCache.readIfFresh(f, LEN, MODIFIED);
+        assertNotNull(lida);
+        IgcParallelParserTest.assertMesmaTrilha(original, lida);
+    }
+
+    @Test
+    public void decodificacaoEmFaixasIgualAInteira() throws IOException {
+        FlightTrack original = parse();
+        File f = pasta.newFile("test.igcb");
+        IgcBinaryCache.write(original, f, LEN, MODIFIED);
+
+        IgcBinaryCache.Cache cache = IgcBinaryCache.openIfFresh(f, LEN, MODIFIED);
+        assertNotNull(cache);
+        assertEquals(original.size(), cache.getFixCount());
+
+        IgcBinaryCache.Decoder dec = cache.decoder();
+        FlightTrack faixas = new FlightTrack(16);
+        int lidos = 0;
+        while (dec.remaining() > 0) {
+            lidos += dec.decodeInto(faixas, 1000);
+            assertEquals(lidos, dec.position());
+        }
+        assertEquals(0, dec.decodeInto(faixas, 1000));
+        IgcParallelParserTest.assertMesmaTrilha(original, faixas);
+    }
+
+    @Test
+    public void cabecalhoLimitesEOrigem() throws IOException {
+        FlightTrack t = parse();
+        File f = pasta.newFile("test.igcb");
+        IgcBinaryCache.write(t, f, LEN, MODIFIED);
+        IgcBinaryCache.Cache cache = IgcBinaryCache.open(f);
+        assertNotNull(cache);
+
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = 0; i < t.size(); i++) {
+            minLat = Math.min(minLat, t.latE7(i)); maxLat = Math.max(maxLat, t.latE7(i));
+            minLon = Math.min(minLon, t.lonE7(i)); maxLon = Math.max(maxLon, t.lonE7(i));
+        }
+        assertEquals(minLat, cache.getMinLatE7());
+        assertEquals(maxLat, cache.getMaxLatE7());
+        assertEquals(minLon, cache.getMinLonE7());
+        assertEquals(maxLon, cache.getMaxLonE7());
+        assertTrue(cache.getMinAltitude() <= cache.getMaxAltitude());
+
+        // a projeção do cabeçalho é a mesma de ProjecaoLocal.origemEm na trilha decodificada
+        ProjecaoLocal esperada = ProjecaoLocal.origemEm(t);
+        ProjecaoLocal p = cache.projecao();
+        assertEquals(esperada.getLatitudeOrigem(), p.getLatitudeOrigem(), 0);
+        assertEquals(esperada.getLongitudeOrigem(), p.getLongitudeOrigem(), 0);
+        int k = t.size() / 2;
+        assertEquals(esperada.xE7(t.lonE7(k)), p.xE7(t.lonE7(k)), 0);
+        assertEquals(esperada.yE7(t.latE7(k)), p.yE7(t.latE7(k)), 0);
+    }
+
+    @Test
+    public void viradaDaMeiaNoitePreservada() throws IOException {
+        FlightTrack t = new FlightTrack();
+        for (int s = 86_390; s < 86_410; s++) t.append(s % 86_400, 455_000_000, 60_000_000 + s, 1000, 1010);
+        File f = pasta.newFile("meia-noite.igcb");
+        IgcBinaryCache.write(t, f, 1, 2);
+
+        FlightTrack lida = IgcBinaryCache.readIfFresh(f, 1, 2);
+        assertNotNull(lida);
+        IgcParallelParserTest.assertMesmaTrilha(t, lida);
+        assertEquals(86_409, lida.time(lida.size() - 1));
+    }
+
+    @Test
+    public void cacheVelhoOuInvalidoEhIgnorado() throws IOException {
+        File f = pasta.newFile("test.igcb");
+        IgcBinaryCache.write(parse(), f, LEN, MODIFIED);
+        assertNull(IgcBinaryCache.readIfFresh(f, LEN + 1, MODIFIED));
+        assertNull(IgcBinaryCache.openIfFresh(f, LEN, MODIFIED + 1));
+
+        assertNull(IgcBinaryCache.open(new File(pasta.getRoot(), "nao-existe.igcb")));
+        File lixo = pasta.newFile("lixo.igcb");
+        try (FileOutputStream out = new FileOutputStream(lixo)) {
+            out.write(new byte[4096]);
+        }
+        assertNull(IgcBinaryCache.open(lixo));
+    }
+
+    @Test
+    public void cacheCortadoOuColunaForaDoArquivoEhIgnorado() throws IOException {
+        File cortado = pasta.newFile("cortado.igcb");
+        IgcBinaryCache.write(parse(), cortado, LEN, MODIFIED);
+        try (RandomAccessFile raf = new RandomAccessFile(cortado, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+        assertNull(IgcBinaryCache.open(cortado));
+        assertNull(IgcBinaryCache.readIfFresh(cortado, LEN, MODIFIED));
+
+        // offset da primeira coluna apontando para dentro do cabeçalho
+        File torto = pasta.newFile("torto.igcb");
+        IgcBinaryCache.write(parse(), torto, LEN, MODIFIED);
+        try (RandomAccessFile raf = new RandomAccessFile(torto, "rw")) {
+            raf.seek(4 + 4 + 8 + 8 + 4 + 4 + 6 * 4 + 2 * 4);
+            raf.write(new byte[] {8, 0, 0, 0});
+        }
+        assertNull(IgcBinaryCache.open(torto));
+    }
+
+    @Test
+    public void sidecar() {
+        File igc = new File("/voos/2023-05-13.igc");
+        assertEquals(new File("/voos/2023-05-13.igcb"), IgcBinaryCache.sidecarFor(igc));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.filamenttestjava.filament.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/** O parse em blocos paralelos tem de dar exatamente a trilha do parse sequencial. */
+public class IgcParallelParserTest {
+
+    /** Diretório de trabalho dos testes JVM do Gradle é o do módulo (app/). */
+    private static final File TEST_IGC = new File("src/main/assets/test.igc");
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void criaPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void fechaPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testIgcIgualAoSequencial() throws IOException {
+        ByteBuffer buf = IgcMappedReader.map(TEST_IGC);
+        try {
+            FlightTrack sequencial = sequencial(buf);
+            FlightTrack paralelo = IgcParallelParser.parse(buf, pool);
+            assertEquals(13572, sequencial.size());
+            assertTrue(sequencial.hasTenths() && sequencial.hasWind() && sequencial.hasGroundAltitude());
+            assertMesmaTrilha(sequencial, paralelo);
+            assertEquals(0, buf.position());
+        } finally {
+            IgcMappedReader.release(buf);
+        }
+    }
+
+    @Test
+    public void viradaDaMeiaNoiteEntreBlocos() {
+        // 6 h de fixos a 1 Hz (~800 kB, vários blocos) começando às 21:00
+        StringBuilder sb = new StringBuilder("AXXX\r\nHFDTE010123\r\n");
+        for (int k = 0; k < 6 * 3600; k++) {
+            int t = (21 * 3600 + k) % 86400;
+            sb.append(String.format(Locale.ROOT, "B%02d%02d%02d%07dN%08dEA%05d%05d\r\n",
+                    t / 3600, t / 60 % 60, t % 60, 4530000 + k % 1000, 600000 + k % 1000, 1000 + k % 50, 1010));
+        }
+        ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.US_ASCII));
+
+        FlightTrack sequencial = sequencial(buf);
+        FlightTrack paralelo = IgcParallelParser.parse(buf, pool);
+        assertEquals(6 * 3600, sequencial.size());
+        assertEquals(21 * 3600 + 6 * 3600 - 1, sequencial.time(sequencial.size() - 1));
+        assertMesmaTrilha(sequencial, paralelo);
+    }
+
+    @Test
+    public void semBRecords() {
+        ByteBuffer buf = ByteBuffer.wrap("AXXX\nHFDTE010123\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(0, IgcParallelParser.parse(buf, pool).size());
+    }
+
+    private static FlightTrack sequencial(ByteBuffer buf) {
+        IgcTrackBuilder b = new IgcTrackBuilder(new FlightTrack());
+        IgcMappedReader.forEachLine(buf, b);
+        assertEquals(0, b.getBadRecords());
+        return b.getTrack();
+    }
+
+    static void assertMesmaTrilha(FlightTrack esperado, FlightTrack atual) {
+        int n = esperado.size();
+        assertEquals(n, atual.size());
+        assertArrayEquals(Arrays.copyOf(esperado.timeColumn(), n), Arrays.copyOf(atual.timeColumn(), n));
+        assertArrayEquals(Arrays.copyOf(esperado.latE7Column(), n), Arrays.copyOf(atual.latE7Column(), n));
+        assertArrayEquals(Arrays.copyOf(esperado.lonE7Column(), n), Arrays.copyOf(atual.lonE7Column(), n));
+        assertArrayEquals(Arrays.copyOf(esperado.pressAltColumn(), n), Arrays.copyOf(atual.pressAltColumn(), n));
+        assertArrayEquals(Arrays.copyOf(esperado.gnssAltColumn(), n), Arrays.copyOf(atual.gnssAltColumn(), n));
+        assertEquals(esperado.hasTenths(), atual.hasTenths());
+        assertEquals(esperado.hasWind(), atual.hasWind());
+        assertEquals(esperado.hasGroundAltitude(), atual.hasGroundAltitude());
+        for (int i = 0; i < n; i++) {
+            if (esperado.hasTenths()) assertEquals(esperado.tenthsOfSecond(i), atual.tenthsOfSecond(i));
+            if (esperado.hasWind()) {
+                assertEquals(esperado.windSpeed(i), atual.windSpeed(i));
+                assertEquals(esperado.windDirection(i), atual.windDirection(i));
+            }
+            if (esperado.hasGroundAltitude()) assertEquals(esperado.groundAltitude(i), atual.groundAltitude(i));
+        }
+    }
+}
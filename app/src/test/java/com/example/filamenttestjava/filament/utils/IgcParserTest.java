@@ -0,0 +1,101 @@
+package com.example.filamenttestjava.filament.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** B-record e extensões do I-record, com linhas tiradas do test.igc. */
+public class IgcParserTest {
+
+    private static final String I_RECORD = "I063637LAD3839LOD4040TDS4142WSP4345WDI4649GND";
+    private static final String B_RECORD = "B1023173745112N00338950WA010400109398020531400919";
+
+    private final int[] out = new int[IgcParser.OUT_SIZE];
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private int parse(String linha) {
+        byte[] b = ascii(linha);
+        return IgcParser.parseBRecord(b, 0, b.length, out);
+    }
+
+    @Test
+    public void leCamposFixos() {
+        assertEquals(IgcParser.STATUS_OK, parse(B_RECORD));
+        assertEquals(10 * 3600 + 23 * 60 + 17, out[IgcParser.OUT_TIME]);
+        // 37°45.112' N e 3°38.950' W em graus * 1e7
+        assertEquals(377_518_667, out[IgcParser.OUT_LAT_E7]);
+        assertEquals(-36_491_667, out[IgcParser.OUT_LON_E7]);
+        assertEquals(1, out[IgcParser.OUT_FIX_VALID]);
+        assertEquals(1040, out[IgcParser.OUT_PRESS_ALT]);
+        assertEquals(1093, out[IgcParser.OUT_GNSS_ALT]);
+        assertEquals(IgcParser.NO_VALUE, out[IgcParser.OUT_TDS]);
+        assertEquals(IgcParser.NO_VALUE, out[IgcParser.OUT_GND]);
+    }
+
+    @Test
+    public void hemisferioSulLesteEAltitudeNegativa() {
+        assertEquals(IgcParser.STATUS_OK, parse("B2359592230500S04312250EV-0012-0003"));
+        assertEquals(86399, out[IgcParser.OUT_TIME]);
+        assertEquals(-225_083_333, out[IgcParser.OUT_LAT_E7]);
+        assertEquals(432_041_667, out[IgcParser.OUT_LON_E7]);
+        assertEquals(0, out[IgcParser.OUT_FIX_VALID]);
+        assertEquals(-12, out[IgcParser.OUT_PRESS_ALT]);
+        assertEquals(-3, out[IgcParser.OUT_GNSS_ALT]);
+    }
+
+    @Test
+    public void extensoesRefinamLatLonELeemTdsVentoESolo() {
+        IgcExtensions ext = new IgcExtensions();
+        byte[] i = ascii(I_RECORD);
+        ext.parseIRecord(ByteBuffer.wrap(i), 0, i.length);
+        assertEquals(6, ext.getDeclaredCount());
+
+        byte[] b = ascii(B_RECORD);
+        assertEquals(IgcParser.STATUS_OK, IgcParser.parseBRecord(b, 0, b.length, out, ext));
+        // LAD/LOD acrescentam duas casas: 45.11298' e 38.95002'
+        assertEquals(377_518_830, out[IgcParser.OUT_LAT_E7]);
+        assertEquals(-36_491_670, out[IgcParser.OUT_LON_E7]);
+        assertEquals(0, out[IgcParser.OUT_TDS]);
+        assertEquals(53, out[IgcParser.OUT_WSP]);
+        assertEquals(140, out[IgcParser.OUT_WDI]);
+        assertEquals(919, out[IgcParser.OUT_GND]);
+    }
+
+    @Test
+    public void byteBufferDiretoIgualAoArray() {
+        byte[] b = ascii("xx" + B_RECORD);
+        int[] esperado = new int[IgcParser.OUT_SIZE];
+        assertEquals(IgcParser.STATUS_OK, IgcParser.parseBRecord(b, 2, B_RECORD.length(), esperado));
+
+        ByteBuffer direto = ByteBuffer.allocateDirect(b.length);
+        direto.put(b).flip();
+        assertEquals(IgcParser.STATUS_OK, IgcParser.parseBRecord(direto, 2, B_RECORD.length(), out));
+        for (int k = 0; k < IgcParser.OUT_SIZE; k++) assertEquals(esperado[k], out[k]);
+        assertEquals(0, direto.position());
+    }
+
+    @Test
+    public void linhasRuins() {
+        assertEquals(IgcParser.STATUS_NOT_B_RECORD, parse(I_RECORD));
+        assertEquals(IgcParser.STATUS_NOT_B_RECORD, parse(""));
+        assertEquals(IgcParser.STATUS_TOO_SHORT, parse(B_RECORD.substring(0, IgcParser.B_RECORD_MIN_LENGTH - 1)));
+        assertEquals(IgcParser.STATUS_BAD_DIGIT, parse(B_RECORD.replace("102317", "10x317")));
+        assertEquals(IgcParser.STATUS_OUT_OF_RANGE, parse(B_RECORD.replace("102317", "242317")));
+        assertEquals(IgcParser.STATUS_OUT_OF_RANGE, parse(B_RECORD.replace("3745112N", "3760000N")));
+        assertEquals(IgcParser.STATUS_BAD_HEMISPHERE, parse(B_RECORD.replace("3745112N", "3745112X")));
+        assertEquals(IgcParser.STATUS_BAD_VALIDITY, parse(B_RECORD.replace("WA0", "WX0")));
+        assertEquals(IgcParser.STATUS_BAD_DIGIT, parse(B_RECORD.replace("A01040", "A01#40")));
+    }
+
+    @Test
+    public void e7ParaGraus() {
+        assertEquals(37.7518667, IgcParser.e7ToDegrees(377_518_667), 1e-12);
+        assertEquals(-3.6491667, IgcParser.e7ToDegrees(-36_491_667), 1e-12);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.filamenttestjava.filament.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/** Interpolação por horário, busca com dica e virada da meia-noite. */
+public class TimeIndexTest {
+
+    private static final double EPS = 1e-6;
+
+    /**
+     * Voo em linha reta para leste a 10 m/s subindo 2 m/s, um fixo a cada {@code passo} s
+     * a partir de {@code inicio} (horário do dia, pode passar da meia-noite).
+     */
+    private static FlightTrack retaParaLeste(int inicio, int passo, int n) {
+        FlightTrack t = new FlightTrack();
+        for (int k = 0; k < n; k++) {
+            int s = k * passo;
+            int i = t.append((inicio + s) % 86400, 455_000_000, 60_000_000, 1000 + 2 * s, 1000 + 2 * s);
+            t.setProjected(i, 10f * s, 0f);
+        }
+        return t;
+    }
+
+    @Test
+    public void exatoNosFixosELinearEntreEles() {
+        FlightTrack t = retaParaLeste(36_000, 2, 50);
+        TimeIndex idx = new TimeIndex(t);
+        double[] p = new double[3];
+
+        for (int i = 0; i < t.size(); i++) {
+            assertTrue(idx.positionAt(idx.timeOf(i), p));
+            assertEquals(t.x(i), p[0], EPS);
+            assertEquals(t.gnssAltitude(i), p[2], EPS);
+        }
+        // movimento uniforme: Hermite com tangentes centradas reproduz a reta
+        assertTrue(idx.positionAt(36_000 + 13.5, p));
+        assertEquals(135, p[0], EPS);
+        assertEquals(0, p[1], EPS);
+        assertEquals(1027, p[2], EPS);
+
+        double[] v = new double[3];
+        assertTrue(idx.velocityAt(36_000 + 31.2, v));
+        assertEquals(10, v[0], EPS);
+        assertEquals(0, v[1], EPS);
+        assertEquals(2, v[2], EPS);
+        assertEquals(90, idx.headingAt(36_000 + 31.2, v), EPS);
+        assertEquals(2, idx.varioAt(36_000 + 31.2, v), EPS);
+    }
+
+    @Test
+    public void curvaPassaPelosFixos() {
+        FlightTrack t = new FlightTrack();
+        int[] dt = {0, 1, 3, 4, 7, 8, 9, 12};
+        for (int k = 0; k < dt.length; k++) {
+            int i = t.append(50_000 + dt[k], 455_000_000, 60_000_000, 900, 900 + k * k);
+            t.setProjected(i, (float) (100 * Math.cos(k)), (float) (100 * Math.sin(k)));
+        }
+        TimeIndex idx = new TimeIndex(t);
+        double[] p = new double[3];
+        for (int i = 0; i < t.size(); i++) {
+            idx.positionAt(idx.timeOf(i), p);
+            assertEquals(t.x(i), p[0], EPS);
+            assertEquals(t.y(i), p[1], EPS);
+            assertEquals(t.gnssAltitude(i), p[2], EPS);
+        }
+        // a curva é contínua nos fixos: dos dois lados de um fixo os valores coincidem
+        double ti = idx.timeOf(3);
+        double[] antes = new double[3], depois = new double[3];
+        idx.positionAt(ti - 1e-7, antes);
+        idx.positionAt(ti + 1e-7, depois);
+        assertEquals(antes[0], depois[0], 1e-4);
+        assertEquals(antes[1], depois[1], 1e-4);
+    }
+
+    @Test
+    public void presoNasPontas() {
+        FlightTrack t = retaParaLeste(36_000, 1, 10);
+        TimeIndex idx = new TimeIndex(t);
+        double[] p = new double[3];
+
+        assertEquals(0, idx.indexAt(0));
+        idx.positionAt(0, p);
+        assertEquals(0, p[0], EPS);
+
+        assertEquals(9, idx.indexAt(1e9));
+        idx.positionAt(1e9, p);
+        assertEquals(90, p[0], EPS);
+    }
+
+    @Test
+    public void buscaParaFrenteEParaTras() {
+        FlightTrack t = retaParaLeste(36_000, 1, 1000);
+        TimeIndex idx = new TimeIndex(t);
+        for (int i = 0; i < 1000; i++) assertEquals(i, idx.indexAt(36_000 + i + 0.5));
+        // seek para trás e saltos para frente (busca binária)
+        assertEquals(10, idx.indexAt(36_010));
+        assertEquals(700, idx.indexAt(36_700.9));
+        assertEquals(3, idx.indexAt(36_003.0));
+    }
+
+    @Test
+    public void viradaDaMeiaNoite() {
+        // 23:59:50 .. 00:00:19
+        FlightTrack t = retaParaLeste(86_390, 1, 30);
+        TimeIndex idx = new TimeIndex(t);
+        assertEquals(86_390, idx.getStartTime(), 0);
+        assertEquals(86_419, idx.getEndTime(), 0);
+
+        // horário do dia depois da meia-noite cai no dia seguinte; antes fica no mesmo
+        assertEquals(86_405, idx.fromTimeOfDay(5), 0);
+        assertEquals(86_395, idx.fromTimeOfDay(86_395), 0);
+
+        double[] p = new double[3];
+        assertEquals(15, idx.indexAt(idx.fromTimeOfDay(5)));
+        assertTrue(idx.positionAt(idx.fromTimeOfDay(5.5), p));
+        assertEquals(155, p[0], EPS);
+        assertEquals(90, idx.headingAt(idx.fromTimeOfDay(0), p), EPS);
+    }
+
+    @Test
+    public void decimosDeSegundo() {
+        FlightTrack t = new FlightTrack();
+        int[] fix = new int[IgcParser.OUT_SIZE];
+        Arrays.fill(fix, IgcParser.NO_VALUE);
+        fix[IgcParser.OUT_LAT_E7] = 455_000_000;
+        fix[IgcParser.OUT_LON_E7] = 60_000_000;
+        fix[IgcParser.OUT_PRESS_ALT] = fix[IgcParser.OUT_GNSS_ALT] = 1000;
+        for (int k = 0; k < 4; k++) {
+            fix[IgcParser.OUT_TIME] = 40_000 + k;
+            fix[IgcParser.OUT_TDS] = 5;
+            t.setProjected(t.appendFix(fix), k, 0);
+        }
+        TimeIndex idx = new TimeIndex(t);
+        assertEquals(40_000.5, idx.timeOf(0), EPS);
+        assertEquals(0, idx.indexAt(40_000.9));
+        assertEquals(1, idx.indexAt(40_001.5));
+    }
+
+    @Test
+    public void trilhaVaziaEUmFixo() {
+        FlightTrack t = new FlightTrack();
+        TimeIndex idx = new TimeIndex(t);
+        double[] p = new double[3];
+        assertEquals(-1, idx.indexAt(10));
+        assertFalse(idx.positionAt(10, p));
+        assertTrue(Double.isNaN(idx.headingAt(10, p)));
+        assertTrue(Double.isNaN(idx.getStartTime()));
+
+        // trilha crescendo (ao vivo): o mesmo índice passa a responder
+        t.setProjected(t.append(1000, 455_000_000, 60_000_000, 500, 510), 7, 8);
+        assertTrue(idx.positionAt(2000, p));
+        assertEquals(7, p[0], EPS);
+        assertEquals(8, p[1], EPS);
+        assertEquals(510, p[2], EPS);
+        assertTrue(idx.velocityAt(2000, p));
+        assertEquals(0, p[0], 0);
+    }
+}
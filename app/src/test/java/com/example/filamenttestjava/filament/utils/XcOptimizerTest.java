@@ -0,0 +1,130 @@
+package com.example.filamenttestjava.filament.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Distância livre e triângulos no test.igc e num triângulo sintético conhecido. */
+public class XcOptimizerTest {
+
+    private static final File TEST_IGC = new File("src/main/assets/test.igc");
+    private static final double RAIO_FAI = 6371000.0;
+
+    private static FlightTrack voo;
+    private static XcOptimizer.Result resultado;
+
+    @BeforeClass
+    public static void otimizaTestIgc() throws IOException {
+        ByteBuffer buf = IgcMappedReader.map(TEST_IGC);
+        try {
+            voo = IgcParallelParser.parse(buf);
+        } finally {
+            IgcMappedReader.release(buf);
+        }
+        ProjecaoLocal.origemEm(voo).projetaParalelo(voo);
+        resultado = new XcOptimizer(voo).optimize();
+    }
+
+    private static double esfera(FlightTrack t, int i, int j) {
+        double la1 = Math.toRadians(t.latitude(i)), la2 = Math.toRadians(t.latitude(j));
+        double dLo = Math.toRadians(t.longitude(j) - t.longitude(i));
+        double s1 = Math.sin((la2 - la1) / 2), s2 = Math.sin(dLo / 2);
+        double h = s1 * s1 + Math.cos(la1) * Math.cos(la2) * s2 * s2;
+        return 2 * RAIO_FAI * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    @Test
+    public void distanciaLivre() {
+        int[] f = resultado.freeFixes;
+        double soma = 0;
+        for (int k = 0; k < 5; k++) {
+            assertTrue(f[k] >= 0 && f[k] < voo.size());
+            if (k > 0) {
+                assertTrue(f[k - 1] <= f[k]);
+                soma += esfera(voo, f[k - 1], f[k]);
+            }
+        }
+        assertEquals(soma, resultado.freeDistance, 1e-6);
+        // ao menos tão longa quanto a reta decolagem → pouso
+        assertTrue(resultado.freeDistance >= esfera(voo, 0, voo.size() - 1));
+        assertTrue(resultado.freeDistance > 100_000);
+    }
+
+    @Test
+    public void trianguloPlano() {
+        int[] f = resultado.flatFixes;
+        assertNotNull(f);
+        assertTriangulo(voo, f, resultado.flatPerimeter, resultado.flatClosing);
+        assertTrue(resultado.flatScore() > 0);
+    }
+
+    @Test
+    public void trianguloFai() {
+        int[] f = resultado.faiFixes;
+        assertNotNull(f);
+        assertTriangulo(voo, f, resultado.faiPerimeter, resultado.faiClosing);
+        double per = resultado.faiPerimeter;
+        assertTrue(esfera(voo, f[0], f[1]) >= XcOptimizer.PERNA_MIN_FAI * per - 1);
+        assertTrue(esfera(voo, f[1], f[2]) >= XcOptimizer.PERNA_MIN_FAI * per - 1);
+        assertTrue(esfera(voo, f[2], f[0]) >= XcOptimizer.PERNA_MIN_FAI * per - 1);
+        assertTrue(resultado.faiScore() > 0);
+    }
+
+    @Test
+    public void trianguloSinteticoFechado() {
+        // triângulo equilátero de ~3 km de lado, 1 fixo a cada ~10 m, volta ao ponto de partida
+        FlightTrack t = new FlightTrack();
+        double lat0 = 45.5, lon0 = 6.0;
+        double kLat = 1 / 111_195.0, kLon = kLat / Math.cos(Math.toRadians(lat0));
+        double[][] v = {{0, 0}, {3000, 0}, {1500, 2598.08}, {0, 0}};
+        int s = 36_000;
+        for (int perna = 0; perna < 3; perna++) {
+            for (int k = 0; k < 300; k++) {
+                double a = k / 300.0;
+                double x = v[perna][0] + a * (v[perna + 1][0] - v[perna][0]);
+                double y = v[perna][1] + a * (v[perna + 1][1] - v[perna][1]);
+                t.append(s++, (int) Math.round((lat0 + y * kLat) * 1e7),
+                        (int) Math.round((lon0 + x * kLon) * 1e7), 1500, 1500);
+            }
+        }
+        t.append(s, (int) Math.round(lat0 * 1e7), (int) Math.round(lon0 * 1e7), 1500, 1500);
+        ProjecaoLocal.origemEm(t).projetaParalelo(t);
+
+        XcOptimizer.Result r = new XcOptimizer(t).optimize();
+        assertNotNull(r.faiFixes);
+        assertEquals(9000, r.faiPerimeter, 90);
+        assertEquals(0, r.faiClosing, 20);
+        assertEquals(r.faiScore(), r.flatScore(), 50);
+    }
+
+    @Test
+    public void trilhaCurtaSemTriangulo() {
+        FlightTrack t = new FlightTrack();
+        t.append(36_000, 455_000_000, 60_000_000, 1000, 1000);
+        t.append(36_001, 455_010_000, 60_000_000, 1000, 1000);
+        ProjecaoLocal.origemEm(t).projetaParalelo(t);
+        XcOptimizer.Result r = new XcOptimizer(t).optimize();
+        assertNull(r.flatFixes);
+        assertNull(r.faiFixes);
+        assertEquals(0, r.flatScore(), 0);
+    }
+
+    /** Viradas a < b < c dentro de [s, e], perímetro/fechamento na esfera e fechamento ≤ 20%. */
+    private static void assertTriangulo(FlightTrack t, int[] f, double perimetro, double fechamento) {
+        assertEquals(5, f.length);
+        for (int i : f) assertTrue(i >= 0 && i < t.size());
+        int a = f[0], b = f[1], c = f[2], s = f[3], e = f[4];
+        assertTrue(s <= a && a < b && b < c && c <= e);
+        assertEquals(esfera(t, a, b) + esfera(t, b, c) + esfera(t, c, a), perimetro, 1e-6);
+        assertEquals(esfera(t, s, e), fechamento, 1e-6);
+        assertTrue(fechamento <= XcOptimizer.FECHAMENTO_MAX * perimetro + 1e-6);
+    }
+}